@@ -0,0 +1,287 @@
+package com.itdragon.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 四则运算表达式编译器，用来替代 ScriptEngine 计算客户端传来的 + - * / 表达式
+ * ScriptEngine 的问题：每次 eval 都要重新解析脚本，分配大量对象，且同一个引擎实例不能被多个线程同时调用。
+ * 编译器的做法：
+ * 第一步：把表达式解析成不可变的语法树（Expression），语法树没有可变状态，可以被多个线程同时使用
+ * 第二步：编译结果放入有界的LRU缓存，相同的表达式只解析一次
+ * 第三步：evaluate() 直接遍历语法树计算结果，不再经过脚本引擎
+ * 语法：
+ * expr   := term (('+' | '-') term)*
+ * term   := factor (('*' | '/') factor)*
+ * factor := ('+' | '-') factor | number | '(' expr ')'
+ * 括号和正负号的嵌套不超过 MAX_DEPTH 层，超过时和其他不合法的表达式一样抛出 IllegalArgumentException，不会栈溢出；
+ * 同一级的一串运算（如 1+2+3+...）编译成一个 Chain 节点循环计算，递归深度只和嵌套层数有关，和表达式长度无关。
+ * @author itdragon
+ *
+ */
+public final class ITDragonCalculator {
+
+	private static final int DEFAULT_CACHE_SIZE = 1024; // 默认缓存的表达式个数
+	private static final int MAX_DEPTH = 256; 			// 括号和正负号最多嵌套的层数
+
+	private final Map<String, Expression> cache;
+
+	public ITDragonCalculator() {
+		this(DEFAULT_CACHE_SIZE);
+	}
+
+	public ITDragonCalculator(final int cacheSize) {
+		if (cacheSize <= 0) {
+			throw new IllegalArgumentException("cacheSize must be positive : " + cacheSize);
+		}
+		// accessOrder 为 true 时 LinkedHashMap 按访问顺序排序，超过容量后淘汰最久未使用的表达式
+		this.cache = Collections.synchronizedMap(new LinkedHashMap<String, Expression>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Expression> eldest) {
+				return size() > cacheSize;
+			}
+		});
+	}
+
+	/**
+	 * 编译表达式，优先从缓存中获取
+	 * @throws IllegalArgumentException 表达式不合法
+	 */
+	public Expression compile(String source) {
+		Expression expression = cache.get(source);
+		if (null == expression) {
+			expression = parse(source);
+			cache.put(source, expression);
+		}
+		return expression;
+	}
+
+	/**
+	 * 解析表达式，不经过缓存
+	 * @throws IllegalArgumentException 表达式不合法
+	 */
+	public static Expression parse(String source) {
+		if (null == source) {
+			throw new IllegalArgumentException("expression is null");
+		}
+		return new Parser(source).parse();
+	}
+
+	/**
+	 * 和 JavaScript 的数字输出保持一致：整数值返回 Integer 或 Long，否则返回 Double
+	 */
+	public static Number toNumber(double value) {
+		if (value == Math.rint(value) && !Double.isInfinite(value)) {
+			if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+				return Integer.valueOf((int) value);
+			}
+			if (value >= Long.MIN_VALUE && value <= Long.MAX_VALUE) {
+				return Long.valueOf((long) value);
+			}
+		}
+		return Double.valueOf(value);
+	}
+
+	/**
+	 * 编译后的表达式，不可变，线程安全
+	 */
+	public interface Expression {
+		double evaluate();
+	}
+
+	private static final class Constant implements Expression {
+		private final double value;
+
+		Constant(double value) {
+			this.value = value;
+		}
+
+		@Override
+		public double evaluate() {
+			return value;
+		}
+	}
+
+	private static final class Negate implements Expression {
+		private final Expression operand;
+
+		Negate(Expression operand) {
+			this.operand = operand;
+		}
+
+		@Override
+		public double evaluate() {
+			return -operand.evaluate();
+		}
+	}
+
+	// 同一级左结合的一串运算 operands[0] operators[0] operands[1] operators[1] ...，从左到右循环计算
+	private static final class Chain implements Expression {
+		private final char[] operators;
+		private final Expression[] operands;
+
+		Chain(char[] operators, Expression[] operands) {
+			this.operators = operators;
+			this.operands = operands;
+		}
+
+		@Override
+		public double evaluate() {
+			double value = operands[0].evaluate();
+			for (int i = 0; i < operators.length; i++) {
+				double r = operands[i + 1].evaluate();
+				switch (operators[i]) {
+				case '+':
+					value += r;
+					break;
+				case '-':
+					value -= r;
+					break;
+				case '*':
+					value *= r;
+					break;
+				default:
+					value /= r;
+				}
+			}
+			return value;
+		}
+	}
+
+	/**
+	 * 递归下降解析器，只在编译时使用，不会被多个线程共享
+	 */
+	private static final class Parser {
+		private final String source;
+		private int pos;
+		private int depth; 	// 当前嵌套的层数
+
+		Parser(String source) {
+			this.source = source;
+		}
+
+		Expression parse() {
+			Expression expression = parseExpr();
+			skipWhitespace();
+			if (pos != source.length()) {
+				throw error("unexpected character '" + source.charAt(pos) + "'");
+			}
+			return expression;
+		}
+
+		private Expression parseExpr() {
+			Expression first = parseTerm();
+			char c = peek();
+			if ('+' != c && '-' != c) {
+				return first;
+			}
+			StringBuilder operators = new StringBuilder();
+			List<Expression> operands = new ArrayList<Expression>();
+			operands.add(first);
+			while ('+' == c || '-' == c) {
+				pos++;
+				operators.append(c);
+				operands.add(parseTerm());
+				c = peek();
+			}
+			return chain(operators, operands);
+		}
+
+		private Expression parseTerm() {
+			Expression first = parseFactor();
+			char c = peek();
+			if ('*' != c && '/' != c) {
+				return first;
+			}
+			StringBuilder operators = new StringBuilder();
+			List<Expression> operands = new ArrayList<Expression>();
+			operands.add(first);
+			while ('*' == c || '/' == c) {
+				pos++;
+				operators.append(c);
+				operands.add(parseFactor());
+				c = peek();
+			}
+			return chain(operators, operands);
+		}
+
+		private static Expression chain(StringBuilder operators, List<Expression> operands) {
+			return new Chain(operators.toString().toCharArray(), operands.toArray(new Expression[operands.size()]));
+		}
+
+		// 括号和正负号都从这里递归，在这里限制嵌套层数
+		private Expression parseFactor() {
+			if (++depth > MAX_DEPTH) {
+				throw error("expression nested deeper than " + MAX_DEPTH);
+			}
+			try {
+				return parseNested();
+			} finally {
+				depth--;
+			}
+		}
+
+		private Expression parseNested() {
+			char c = peek();
+			if ('+' == c) {
+				pos++;
+				return parseFactor();
+			}
+			if ('-' == c) {
+				pos++;
+				return new Negate(parseFactor());
+			}
+			if ('(' == c) {
+				pos++;
+				Expression inner = parseExpr();
+				if (')' != peek()) {
+					throw error("missing ')'");
+				}
+				pos++;
+				return inner;
+			}
+			return parseNumber();
+		}
+
+		private Expression parseNumber() {
+			int start = pos;
+			boolean dot = false;
+			while (pos < source.length()) {
+				char c = source.charAt(pos);
+				if (c >= '0' && c <= '9') {
+					pos++;
+				} else if ('.' == c && !dot) {
+					dot = true;
+					pos++;
+				} else {
+					break;
+				}
+			}
+			if (start == pos || (dot && pos - start == 1)) {
+				throw error("number expected");
+			}
+			return new Constant(Double.parseDouble(source.substring(start, pos)));
+		}
+
+		// 跳过空白字符后返回当前字符，和 String.trim() 一样把小于等于空格的字符都当作空白
+		private char peek() {
+			skipWhitespace();
+			return pos < source.length() ? source.charAt(pos) : 0;
+		}
+
+		private void skipWhitespace() {
+			while (pos < source.length() && source.charAt(pos) <= ' ') {
+				pos++;
+			}
+		}
+
+		private IllegalArgumentException error(String message) {
+			return new IllegalArgumentException(message + " at position " + pos + " : " + source);
+		}
+	}
+
+}
@@ -1,17 +1,14 @@
 package com.itdragon.utils;
 
-import javax.script.ScriptEngine;
-import javax.script.ScriptEngineManager;
-import javax.script.ScriptException;
-
 public class ITDragonUtil {
 	
-	private final static ScriptEngine JSE = new ScriptEngineManager().getEngineByName("JavaScript");
+	// 表达式编译后缓存，替代 ScriptEngine，多线程调用安全
+	private final static ITDragonCalculator CALCULATOR = new ITDragonCalculator();
     
 	public static Object cal(String expression){
         try {
-			return JSE.eval(expression);
-		} catch (ScriptException e) {
+			return ITDragonCalculator.toNumber(CALCULATOR.compile(expression).evaluate());
+		} catch (IllegalArgumentException e) {
 			e.printStackTrace();
 		}
         return null;
@@ -0,0 +1,255 @@
+package com.itdragon.compression;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.handler.codec.compression.Snappy;
+
+/**
+ * 压缩算法，连接建立时由客户端和服务端协商，id 会写在握手消息和每一帧的 flag 中
+ * NONE   : 不压缩，协商结果为 NONE 时压缩处理器会从 pipeline 中移除，没有任何额外开销
+ * ZLIB   : JDK 的 Deflater/Inflater（deflate 格式，不带 zlib 头，压缩级别1），压缩率高，CPU 开销大
+ * SNAPPY : Netty 自带的纯 Java 实现，不需要额外的依赖，压缩率低一些，速度快很多
+ * LZ4 需要额外引入 lz4-java，没有加入。
+ * 每个 Compressor 只属于一个连接的一个方向，内部的 Deflater、缓冲区等都是重复使用的，不是线程安全的。
+ * @author itdragon
+ */
+public enum ITDragonCompression {
+
+	NONE(0) {
+		@Override
+		public Compressor newCompressor() {
+			throw new UnsupportedOperationException("NONE does not compress");
+		}
+	},
+
+	ZLIB(1) {
+		@Override
+		public Compressor newCompressor() {
+			return new ZlibCompressor();
+		}
+	},
+
+	SNAPPY(2) {
+		@Override
+		public Compressor newCompressor() {
+			return new SnappyCompressor();
+		}
+	};
+
+	private final int id;
+
+	private ITDragonCompression(int id) {
+		this.id = id;
+	}
+
+	public int getId() {
+		return id;
+	}
+
+	public abstract Compressor newCompressor();
+
+	/**
+	 * 根据 id 查找压缩算法，不认识的 id 返回 null
+	 */
+	public static ITDragonCompression valueOf(int id) {
+		for (ITDragonCompression compression : values()) {
+			if (compression.id == id) {
+				return compression;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * 解析逗号分隔的算法列表，如 "snappy,zlib"，顺序即优先级。"none" 或空字符串表示不压缩
+	 */
+	public static List<ITDragonCompression> parse(String names) {
+		List<ITDragonCompression> list = new ArrayList<ITDragonCompression>();
+		for (String name : names.split(",")) {
+			name = name.trim();
+			if (name.isEmpty() || "none".equalsIgnoreCase(name)) {
+				continue;
+			}
+			list.add(valueOf(name.toUpperCase()));
+		}
+		return list;
+	}
+
+	/**
+	 * 一帧数据的压缩和解压
+	 */
+	public interface Compressor {
+		/**
+		 * 压缩 in 的可读部分追加到 out 中，读完 in
+		 */
+		void compress(ByteBuf in, ByteBuf out);
+
+		/**
+		 * 解压 in 的可读部分追加到 out 中，解压后的长度必须是 originalLength
+		 * @throws CorruptedFrameException 数据损坏
+		 */
+		void decompress(ByteBuf in, ByteBuf out, int originalLength);
+
+		void close();
+	}
+
+	// JDK8 的 Deflater/Inflater 只接受 byte[]，直接内存要经过重复使用的数组中转，堆内存直接使用底层数组
+	private static final class ZlibCompressor implements Compressor {
+		private Deflater deflater;
+		private Inflater inflater;
+		private byte[] input = new byte[0];
+		private byte[] output = new byte[0];
+
+		@Override
+		public void compress(ByteBuf in, ByteBuf out) {
+			if (null == deflater) {
+				deflater = new Deflater(Deflater.BEST_SPEED, true); // 网络传输更看重速度，级别6的压缩率只高一点，CPU开销是级别1的两三倍
+			}
+			deflater.reset();
+			int length = in.readableBytes();
+			if (in.hasArray()) {
+				deflater.setInput(in.array(), in.arrayOffset() + in.readerIndex(), length);
+			} else {
+				deflater.setInput(copy(in), 0, length);
+			}
+			deflater.finish();
+			while (!deflater.finished()) {
+				out.ensureWritable(Math.max(64, length >> 3));
+				if (out.hasArray()) {
+					int n = deflater.deflate(out.array(), out.arrayOffset() + out.writerIndex(), out.writableBytes());
+					out.writerIndex(out.writerIndex() + n);
+				} else {
+					ensureOutput(out.writableBytes());
+					out.writeBytes(output, 0, deflater.deflate(output, 0, out.writableBytes()));
+				}
+			}
+			in.skipBytes(length);
+		}
+
+		@Override
+		public void decompress(ByteBuf in, ByteBuf out, int originalLength) {
+			if (null == inflater) {
+				inflater = new Inflater(true);
+			}
+			inflater.reset();
+			int length = in.readableBytes();
+			if (in.hasArray()) {
+				inflater.setInput(in.array(), in.arrayOffset() + in.readerIndex(), length);
+			} else {
+				inflater.setInput(copy(in), 0, length);
+			}
+			out.ensureWritable(originalLength);
+			try {
+				int n;
+				if (out.hasArray()) {
+					n = inflater.inflate(out.array(), out.arrayOffset() + out.writerIndex(), originalLength);
+					out.writerIndex(out.writerIndex() + n);
+				} else {
+					ensureOutput(originalLength);
+					n = inflater.inflate(output, 0, originalLength);
+					out.writeBytes(output, 0, n);
+				}
+				// nowrap 模式下 Inflater 可能要多读一个字节才能确认结束，长度对上并且输入读完就认为成功
+				if (n != originalLength || (!inflater.finished() && inflater.getRemaining() > 0)) {
+					throw new CorruptedFrameException("zlib frame length mismatch : " + n + " != " + originalLength);
+				}
+			} catch (DataFormatException e) {
+				throw new CorruptedFrameException(e);
+			}
+			in.skipBytes(length);
+		}
+
+		private byte[] copy(ByteBuf in) {
+			int length = in.readableBytes();
+			if (input.length < length) {
+				input = new byte[length];
+			}
+			in.getBytes(in.readerIndex(), input, 0, length);
+			return input;
+		}
+
+		private void ensureOutput(int length) {
+			if (output.length < length) {
+				output = new byte[length];
+			}
+		}
+
+		@Override
+		public void close() {
+			if (null != deflater) {
+				deflater.end();
+			}
+			if (null != inflater) {
+				inflater.end();
+			}
+		}
+	}
+
+	// Snappy 按 32K 分块压缩，每块前面写4字节的块长度，解压时逐块交给 Snappy.decode
+	// Netty 4.1.20 的 Snappy.encode 在块大于 32K 时偏移量会溢出，所以块不能超过 32K
+	private static final class SnappyCompressor implements Compressor {
+		private static final int BLOCK_SIZE = 32 * 1024;
+		private final Snappy snappy = new Snappy();
+
+		@Override
+		public void compress(ByteBuf in, ByteBuf out) {
+			while (in.isReadable()) {
+				int length = Math.min(BLOCK_SIZE, in.readableBytes());
+				int lengthIndex = out.writerIndex();
+				out.writeInt(0);
+				snappy.encode(in.readSlice(length), out, length); // readerIndex 不为0时 Snappy.encode 不能正确处理，每块单独切片
+				out.setInt(lengthIndex, out.writerIndex() - lengthIndex - 4);
+			}
+		}
+
+		@Override
+		public void decompress(ByteBuf in, ByteBuf out, int originalLength) {
+			int start = out.writerIndex();
+			out.ensureWritable(originalLength);
+			while (in.isReadable()) {
+				if (in.readableBytes() < 4) {
+					throw new CorruptedFrameException("truncated snappy block");
+				}
+				int length = in.readInt();
+				if (length < 0 || length > in.readableBytes()) {
+					throw new CorruptedFrameException("snappy block length out of range : " + length);
+				}
+				ByteBuf block = in.readSlice(length);
+				int preamble = peekPreamble(block);
+				int remaining = originalLength - (out.writerIndex() - start);
+				if (preamble < 0 || preamble > remaining) {
+					throw new CorruptedFrameException("snappy block length out of range : " + preamble + ", remaining " + remaining);
+				}
+				snappy.decode(block, out);
+				snappy.reset();
+			}
+			if (out.writerIndex() - start != originalLength) {
+				throw new CorruptedFrameException("snappy frame length mismatch : " + (out.writerIndex() - start) + " != " + originalLength);
+			}
+		}
+
+		// 不移动 readerIndex 读出块开头 varint 格式的解压后长度，Snappy.decode 会按这个长度先扩容输出缓冲区，不合法时返回 -1
+		private static int peekPreamble(ByteBuf block) {
+			int length = 0;
+			for (int i = 0; i < 4 && i < block.readableBytes(); i++) {
+				int b = block.getUnsignedByte(block.readerIndex() + i);
+				length |= (b & 0x7F) << (7 * i);
+				if (0 == (b & 0x80)) {
+					return length;
+				}
+			}
+			return -1;
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+
+}
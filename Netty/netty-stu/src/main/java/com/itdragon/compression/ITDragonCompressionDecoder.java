@@ -0,0 +1,179 @@
+package com.itdragon.compression;
+
+import java.util.List;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.handler.codec.TooLongFrameException;
+
+/**
+ * 压缩解码器，负责握手和解压，输出的 ByteBuf 就是对方上层编码器写出的原始数据，帧格式见 ITDragonCompressionFactory
+ * 客户端 : 连接建立后发送自己支持的压缩算法（按优先级排序），等待服务端的选择结果
+ * 服务端 : 收到客户端的列表后选择第一个自己也支持的算法并回复，都不支持时选择 NONE
+ * 协商完成后通知 ITDragonCompressionEncoder 写出队列中的消息。协商结果是 NONE 时把自己从 pipeline 中移除，
+ * 剩下的字节由 ByteToMessageDecoder 转交给下一个处理器。
+ * 流帧（FileRegion）的内容不会整个缓存，收到多少就往后传多少，大文件也不占内存。
+ * @author itdragon
+ */
+public class ITDragonCompressionDecoder extends ByteToMessageDecoder {
+
+	private final boolean client;
+	private final List<ITDragonCompression> supported; 	// 客户端：提供给服务端选择的算法；服务端：允许使用的算法
+	private final ITDragonCompressionEncoder encoder;
+	private ITDragonCompression compression;
+	private ITDragonCompression.Compressor compressor;
+	private long streamRemaining; 	// 当前流帧还没有收到的字节数
+
+	public ITDragonCompressionDecoder(boolean client, List<ITDragonCompression> supported, ITDragonCompressionEncoder encoder) {
+		this.client = client;
+		this.supported = supported;
+		this.encoder = encoder;
+	}
+
+	// 不经过握手，直接使用指定的算法
+	ITDragonCompressionDecoder(ITDragonCompression compression) {
+		this.client = false;
+		this.supported = null;
+		this.encoder = null;
+		this.compression = compression;
+		if (ITDragonCompression.NONE != compression) {
+			this.compressor = compression.newCompressor();
+		}
+	}
+
+	@Override
+	public void channelActive(ChannelHandlerContext ctx) throws Exception {
+		if (client) {
+			// 从当前位置写出，不经过后面的压缩编码器
+			ByteBuf hello = ctx.alloc().buffer(3 + supported.size());
+			hello.writeShort(ITDragonCompressionFactory.MAGIC).writeByte(supported.size());
+			for (ITDragonCompression compression : supported) {
+				hello.writeByte(compression.getId());
+			}
+			ctx.writeAndFlush(hello);
+		}
+		ctx.fireChannelActive();
+	}
+
+	@Override
+	protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) throws Exception {
+		if (null == compression) {
+			if (client ? readReply(in) : readHello(ctx, in)) {
+				negotiated(ctx);
+			}
+			return;
+		}
+		if (streamRemaining > 0) {
+			int length = (int) Math.min(streamRemaining, in.readableBytes());
+			out.add(in.readRetainedSlice(length));
+			streamRemaining -= length;
+			return;
+		}
+		if (in.readableBytes() < ITDragonCompressionFactory.RAW_HEADER_LENGTH) {
+			return;
+		}
+		int readerIndex = in.readerIndex();
+		int flag = in.getUnsignedByte(readerIndex);
+		if (ITDragonCompressionFactory.FLAG_STREAM == flag) {
+			if (in.readableBytes() >= ITDragonCompressionFactory.STREAM_HEADER_LENGTH) {
+				in.skipBytes(1);
+				streamRemaining = in.readLong();
+			}
+			return;
+		}
+		int length = in.getInt(readerIndex + 1);
+		if (length < 0 || length > ITDragonCompressionFactory.MAX_FRAME_LENGTH) {
+			throw new TooLongFrameException("compressed frame length out of range : " + length);
+		}
+		if (ITDragonCompressionFactory.FLAG_RAW != flag && length < 4) { // 压缩包的 length 包含 4 字节原始长度
+			throw new CorruptedFrameException("compressed frame shorter than its original length field : " + length);
+		}
+		if (in.readableBytes() < ITDragonCompressionFactory.RAW_HEADER_LENGTH + length) {
+			return;
+		}
+		in.skipBytes(ITDragonCompressionFactory.RAW_HEADER_LENGTH);
+		if (ITDragonCompressionFactory.FLAG_RAW == flag) {
+			out.add(in.readRetainedSlice(length));
+			return;
+		}
+		if (flag != compression.getId()) {
+			throw new CorruptedFrameException("unexpected compression flag : " + flag + ", negotiated " + compression);
+		}
+		int originalLength = in.readInt();
+		if (originalLength < 0 || originalLength > ITDragonCompressionFactory.MAX_FRAME_LENGTH) {
+			throw new TooLongFrameException("original frame length out of range : " + originalLength);
+		}
+		// 最大容量就是声明的原始长度，解压器不能借 ensureWritable 按对方给的长度扩容（解压炸弹）
+		ByteBuf decompressed = ctx.alloc().buffer(originalLength, originalLength);
+		try {
+			compressor.decompress(in.readSlice(length - 4), decompressed, originalLength);
+		} catch (Throwable e) { // 分配失败之类的 Error 也要释放
+			decompressed.release();
+			throw e;
+		}
+		out.add(decompressed);
+	}
+
+	// 服务端：[MAGIC][个数][算法id...]，选择第一个双方都支持的算法并回复 [MAGIC][算法id]
+	private boolean readHello(ChannelHandlerContext ctx, ByteBuf in) {
+		if (in.readableBytes() < 3) {
+			return false;
+		}
+		int count = in.getUnsignedByte(in.readerIndex() + 2);
+		if (in.readableBytes() < 3 + count) {
+			return false;
+		}
+		checkMagic(in.readUnsignedShort());
+		in.skipBytes(1);
+		compression = ITDragonCompression.NONE;
+		for (int i = 0; i < count; i++) {
+			ITDragonCompression offered = ITDragonCompression.valueOf(in.readUnsignedByte());
+			if (ITDragonCompression.NONE == compression && supported.contains(offered)) {
+				compression = offered;
+			}
+		}
+		ctx.writeAndFlush(ctx.alloc().buffer(3).writeShort(ITDragonCompressionFactory.MAGIC).writeByte(compression.getId()));
+		return true;
+	}
+
+	// 客户端：[MAGIC][算法id]
+	private boolean readReply(ByteBuf in) {
+		if (in.readableBytes() < 3) {
+			return false;
+		}
+		checkMagic(in.readUnsignedShort());
+		int id = in.readUnsignedByte();
+		compression = ITDragonCompression.valueOf(id);
+		if (null == compression || (ITDragonCompression.NONE != compression && !supported.contains(compression))) {
+			throw new CorruptedFrameException("server chose an unsupported compression : " + id);
+		}
+		return true;
+	}
+
+	private static void checkMagic(int magic) {
+		if (ITDragonCompressionFactory.MAGIC != magic) {
+			throw new CorruptedFrameException("not a compression handshake, magic : " + Integer.toHexString(magic));
+		}
+	}
+
+	private void negotiated(ChannelHandlerContext ctx) throws Exception {
+		if (ITDragonCompression.NONE != compression) {
+			compressor = compression.newCompressor();
+		}
+		encoder.negotiated(compression);
+		if (ITDragonCompression.NONE == compression) {
+			ctx.pipeline().remove(this);
+		}
+	}
+
+	@Override
+	protected void handlerRemoved0(ChannelHandlerContext ctx) throws Exception {
+		if (null != compressor) {
+			compressor.close();
+			compressor = null;
+		}
+	}
+
+}
@@ -0,0 +1,155 @@
+package com.itdragon.compression;
+
+import java.util.ArrayDeque;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.FileRegion;
+import io.netty.util.ReferenceCountUtil;
+
+/**
+ * 压缩编码器，把上层编码器输出的每一帧 ByteBuf 压缩后加上帧头写出，帧格式见 ITDragonCompressionFactory
+ * 第一步 : 协商完成之前写出的消息先放入队列，由 ITDragonCompressionDecoder 在收到握手消息后调用 negotiated()
+ * 第二步 : 不小于 minSize 的帧才压缩，压缩后没有变小则按原样发送，小消息不浪费 CPU
+ * 第三步 : FileRegion 不能压缩，只写一个流帧头，文件内容仍然走 sendfile 零拷贝
+ * 协商结果是 NONE 时写出队列中的消息后把自己从 pipeline 中移除。
+ * @author itdragon
+ */
+public class ITDragonCompressionEncoder extends ChannelOutboundHandlerAdapter {
+
+	private final int minSize;
+	private final ArrayDeque<PendingWrite> pending = new ArrayDeque<PendingWrite>();
+	private ITDragonCompression compression;
+	private ITDragonCompression.Compressor compressor;
+	private ChannelHandlerContext ctx;
+	private boolean flushPending;
+
+	public ITDragonCompressionEncoder(int minSize) {
+		this.minSize = minSize;
+	}
+
+	// 不经过握手，直接使用指定的算法
+	ITDragonCompressionEncoder(int minSize, ITDragonCompression compression) {
+		this.minSize = minSize;
+		this.compression = compression;
+		if (ITDragonCompression.NONE != compression) {
+			this.compressor = compression.newCompressor();
+		}
+	}
+
+	@Override
+	public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+		this.ctx = ctx;
+	}
+
+	@Override
+	public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+		if (null == compression) {
+			pending.add(new PendingWrite(msg, promise));
+			return;
+		}
+		encode(ctx, msg, promise);
+	}
+
+	@Override
+	public void flush(ChannelHandlerContext ctx) throws Exception {
+		if (null == compression) {
+			flushPending = true;
+			return;
+		}
+		ctx.flush();
+	}
+
+	/**
+	 * 协商完成，由 ITDragonCompressionDecoder 在 EventLoop 线程中调用
+	 */
+	void negotiated(ITDragonCompression compression) throws Exception {
+		this.compression = compression;
+		if (ITDragonCompression.NONE != compression) {
+			compressor = compression.newCompressor();
+		}
+		PendingWrite write;
+		while (null != (write = pending.poll())) {
+			encode(ctx, write.msg, write.promise);
+		}
+		if (flushPending) {
+			ctx.flush();
+		}
+		if (ITDragonCompression.NONE == compression) {
+			ctx.pipeline().remove(this);
+		}
+	}
+
+	private void encode(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+		if (ITDragonCompression.NONE == compression) {
+			ctx.write(msg, promise);
+		} else if (msg instanceof FileRegion) {
+			ByteBuf header = ctx.alloc().buffer(ITDragonCompressionFactory.STREAM_HEADER_LENGTH);
+			header.writeByte(ITDragonCompressionFactory.FLAG_STREAM).writeLong(((FileRegion) msg).count());
+			ctx.write(header, ctx.voidPromise());
+			ctx.write(msg, promise);
+		} else if (msg instanceof ByteBuf) {
+			encodeFrame(ctx, (ByteBuf) msg, promise);
+		} else {
+			ctx.write(msg, promise); 	// 不认识的消息原样传递，和 MessageToByteEncoder 一致
+		}
+	}
+
+	// 压缩后的帧整个放在一个新的 ByteBuf 中；不压缩时只分配帧头，和原来的 ByteBuf 一起写出，不拷贝数据
+	private void encodeFrame(ChannelHandlerContext ctx, ByteBuf in, ChannelPromise promise) {
+		int length = in.readableBytes();
+		if (length >= minSize) {
+			int headerLength = ITDragonCompressionFactory.COMPRESSED_HEADER_LENGTH;
+			ByteBuf out = ctx.alloc().buffer(headerLength + length);
+			try {
+				out.writerIndex(headerLength);
+				compressor.compress(in.duplicate(), out);
+			} catch (RuntimeException e) {
+				out.release();
+				in.release();
+				throw e;
+			}
+			int compressedLength = out.readableBytes() - headerLength;
+			if (compressedLength < length) {
+				out.setByte(0, compression.getId());
+				out.setInt(1, compressedLength + 4); 	// 帧长度包括原始长度字段
+				out.setInt(5, length);
+				in.release();
+				ctx.write(out, promise);
+				return;
+			}
+			out.release(); 	// 压缩后没有变小，按原样发送
+		}
+		ByteBuf header = ctx.alloc().buffer(ITDragonCompressionFactory.RAW_HEADER_LENGTH);
+		header.writeByte(ITDragonCompressionFactory.FLAG_RAW).writeInt(length);
+		ctx.write(header, ctx.voidPromise());
+		ctx.write(in, promise);
+	}
+
+	@Override
+	public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+		// 协商完成前连接断开，队列中的消息写失败
+		PendingWrite write;
+		while (null != (write = pending.poll())) {
+			ReferenceCountUtil.release(write.msg);
+			write.promise.tryFailure(new IllegalStateException("channel closed before compression was negotiated"));
+		}
+		if (null != compressor) {
+			compressor.close();
+			compressor = null;
+		}
+	}
+
+	private static final class PendingWrite {
+		private final Object msg;
+		private final ChannelPromise promise;
+
+		PendingWrite(Object msg, ChannelPromise promise) {
+			this.msg = msg;
+			this.promise = promise;
+		}
+	}
+
+}
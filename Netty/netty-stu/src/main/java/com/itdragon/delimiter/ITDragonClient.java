@@ -6,25 +6,26 @@ import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelFuture;  
 import io.netty.channel.ChannelInitializer;  
 import io.netty.channel.ChannelOption;  
-import io.netty.channel.nio.NioEventLoopGroup;  
+import io.netty.channel.EventLoopGroup;  
 import io.netty.channel.socket.SocketChannel;  
-import io.netty.channel.socket.nio.NioSocketChannel;
 import io.netty.handler.codec.DelimiterBasedFrameDecoder;
 import io.netty.handler.codec.FixedLengthFrameDecoder;
-import io.netty.handler.codec.string.StringDecoder;  
+import io.netty.handler.codec.string.StringDecoder;
+
+import com.itdragon.utils.ITDragonTransport;  
   
 public class ITDragonClient {  
       
     private static final Integer PORT = 8888;  
     private static final String HOST = "127.0.0.1";  
     private static final String DELIMITER = "_$"; // 拆包分隔符  
+    private static final ITDragonTransport TRANSPORT = ITDragonTransport.select(); // -Ditdragon.transport=auto|nio|epoll
       
     public static void main(String[] args) {  
-        NioEventLoopGroup group = new NioEventLoopGroup();  
+        EventLoopGroup group = TRANSPORT.newEventLoopGroup();  
         try {  
             Bootstrap bootstrap = new Bootstrap();  
-            bootstrap.group(group)  
-            .channel(NioSocketChannel.class)  
+            TRANSPORT.configure(bootstrap.group(group))  
             .handler(new ChannelInitializer<SocketChannel>() {  // 设置AbstractBootstrap类里面的 handler属性
                 @Override  
                 protected void initChannel(SocketChannel socketChannel) throws Exception { 
@@ -0,0 +1,108 @@
+package com.itdragon.delimiter;
+
+import java.util.List;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.handler.codec.TooLongFrameException;
+import io.netty.util.ByteProcessor;
+
+/**
+ * "_$" 分隔符拆包解码器，替代 DelimiterBasedFrameDecoder(maxFrameLength, "_$")，行为相同（去掉分隔符，超长立即报错）
+ * DelimiterBasedFrameDecoder 支持多个任意分隔符，每次从 readerIndex 开始用 getByte 逐字节比较，
+ * 半包时下次读到数据又从头扫描，帧越长、拆得越碎，重复扫描的字节越多。
+ * 第一步 : 用 ByteBuf.forEachByte 查找分隔符的第二个字节 '$'，直接内存上是没有边界检查的紧凑循环，找到后再看前一个字节是不是 '_'
+ * 第二步 : 没找到时记下已经扫描过的字节数 offset（相对 readerIndex，累积缓冲区扩容拷贝后依然有效），下次从 offset 继续，每个字节只扫描一次
+ * 第三步 : 找到后返回累积缓冲区的 retainedSlice，不拷贝，由后面的处理器释放
+ * 第四步 : 还没找到分隔符就超过 maxFrameLength 时丢弃已收到的数据并抛出 TooLongFrameException，之后丢弃到下一个分隔符为止
+ * 最大帧长 : -Ditdragon.delimiter.maxFrameLength（默认4096），原来的128放不下稍长的表达式
+ * 每个连接一个实例，不能共享。
+ * @author itdragon
+ */
+public class ITDragonDelimiterDecoder extends ByteToMessageDecoder {
+
+	public static final int MAX_FRAME_LENGTH = Integer.getInteger("itdragon.delimiter.maxFrameLength", 4096);
+	private static final byte FIRST = '_';
+	private static final ByteProcessor FIND_SECOND = new ByteProcessor.IndexOfProcessor((byte) '$');
+
+	private final int maxFrameLength;
+	private int offset; 			// readerIndex 之后已经扫描过的字节数，这些字节中没有完整的分隔符
+	private boolean discarding; 	// 正在丢弃超长的帧
+
+	public ITDragonDelimiterDecoder() {
+		this(MAX_FRAME_LENGTH);
+	}
+
+	public ITDragonDelimiterDecoder(int maxFrameLength) {
+		if (maxFrameLength <= 0) {
+			throw new IllegalArgumentException("maxFrameLength must be a positive integer: " + maxFrameLength);
+		}
+		this.maxFrameLength = maxFrameLength;
+	}
+
+	@Override
+	protected final void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) throws Exception {
+		Object frame = decode(in);
+		if (null != frame) {
+			out.add(frame);
+		}
+	}
+
+	protected Object decode(ByteBuf buffer) {
+		int readerIndex = buffer.readerIndex();
+		int index = indexOf(buffer, readerIndex + Math.max(offset, 1)); 	// 第一个字节不可能是分隔符的结尾
+		if (index >= 0) {
+			int frameLength = index - 1 - readerIndex;
+			offset = 0;
+			buffer.readerIndex(index + 1);
+			if (discarding) { 	// 超长帧的剩余部分，开始丢弃时已经报过错
+				discarding = false;
+				return null;
+			}
+			if (frameLength > maxFrameLength) {
+				throw tooLong(frameLength, "discarded");
+			}
+			return buffer.retainedSlice(readerIndex, frameLength);
+		}
+		int readable = buffer.readableBytes();
+		if (discarding) {
+			discard(buffer, readable);
+			return null;
+		}
+		if (readable > maxFrameLength) {
+			discarding = true;
+			discard(buffer, readable);
+			throw tooLong(readable, "discarding");
+		}
+		offset = readable;
+		return null;
+	}
+
+	// 从 from 开始查找分隔符，返回 '$' 的位置
+	private static int indexOf(ByteBuf buffer, int from) {
+		int writerIndex = buffer.writerIndex();
+		while (from < writerIndex) {
+			int index = buffer.forEachByte(from, writerIndex - from, FIND_SECOND);
+			if (index < 0) {
+				return -1;
+			}
+			if (FIRST == buffer.getByte(index - 1)) {
+				return index;
+			}
+			from = index + 1;
+		}
+		return -1;
+	}
+
+	// 丢弃已收到的数据，保留最后一个字节，它可能是被拆开的分隔符的 '_'
+	private void discard(ByteBuf buffer, int readable) {
+		buffer.skipBytes(readable - 1);
+		offset = 1;
+	}
+
+	private TooLongFrameException tooLong(int frameLength, String action) {
+		return new TooLongFrameException("frame length exceeds " + maxFrameLength + ": " + frameLength + " - " + action);
+	}
+
+}
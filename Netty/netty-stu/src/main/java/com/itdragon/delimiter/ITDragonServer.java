@@ -1,27 +1,30 @@
 package com.itdragon.delimiter;
 
 import io.netty.bootstrap.ServerBootstrap;
-import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
-import io.netty.channel.ChannelFuture;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.Channel;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.EventLoopGroup;
-import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
-import io.netty.handler.codec.DelimiterBasedFrameDecoder;
-import io.netty.handler.codec.FixedLengthFrameDecoder;
-import io.netty.handler.codec.string.StringDecoder;
 import io.netty.handler.logging.LogLevel;
-import io.netty.handler.logging.LoggingHandler;  
+import io.netty.handler.logging.LoggingHandler;
+import io.netty.util.concurrent.EventExecutorGroup;
+
+import com.itdragon.http.ITDragonHttpServer;
+import com.itdragon.instrument.ITDragonInstrumentHandler;
+import com.itdragon.instrument.ITDragonServerMetrics;
+import com.itdragon.utils.ITDragonBusinessExecutor;
+import com.itdragon.utils.ITDragonFlushConsolidation;
+import com.itdragon.utils.ITDragonTransport;  
   
 /** 
  * Netty 服务端启动流程
- * 第一步 : 创建两个线程池NioEventLoopGroup，负责接收事件和处理事件。
+ * 第一步 : 创建两个线程池EventLoopGroup，负责接收事件和处理事件。传输层（NIO 或 Linux epoll）由 ITDragonTransport 在启动时选择。
  * 第二步 : 设置启动类ServerBootstrap参数。
  * 第三步 : 端口绑定，并触发active事件，根据第二步的配置参数启动服务。
  * 第四步 : 关闭资源。
+ * 加上 -Ditdragon.http.port=端口 时在同一组 EventLoopGroup 和业务线程池上同时启动 HTTP 网关（ITDragonHttpServer）。
  * NioEventLoopGroup : 是用来处理I/O操作的多线程事件循环器。 Netty提供了许多不同的EventLoopGroup的实现用来处理不同传输协议。
  * ServerBootstrap : 启动NIO服务的辅助启动类。先配置Netty服务端启动参数，执行bind(PORT)方法才算真正启动服务。
  * group : 配置多线程事务轮询器
@@ -40,35 +43,53 @@ import io.netty.handler.logging.LoggingHandler;
 public class ITDragonServer {  
       
     private static final Integer PORT = 8888; 					// 被监听端口号
-    private static final String DELIMITER = "_$"; 				// 拆包分隔符  
+    private static final ITDragonTransport TRANSPORT = ITDragonTransport.select(); // -Ditdragon.transport=auto|nio|epoll
       
     public static void main(String[] args) {  
-        EventLoopGroup bossGroup = new NioEventLoopGroup(); 	// 用于接收进来的连接
-        EventLoopGroup workerGroup = new NioEventLoopGroup(); 	// 用于处理进来的连接
+        EventLoopGroup bossGroup = TRANSPORT.newBossGroup(); 			// 用于接收进来的连接，每个监听通道一个线程
+        EventLoopGroup workerGroup = TRANSPORT.newEventLoopGroup(); 	// 用于处理进来的连接
+        final EventExecutorGroup businessGroup = ITDragonBusinessExecutor.newGroup(); // 业务处理的线程池，-Ditdragon.business.threads=0 表示在EventLoop中处理
+        final ITDragonServerMetrics metrics = new ITDragonServerMetrics("delimiter"); // 所有连接共用的统计，-Ditdragon.metrics.interval=秒数
+        metrics.monitor(workerGroup); 									// 测量每个 EventLoop 的任务延迟
+        metrics.report(workerGroup, ITDragonServerMetrics.INTERVAL_SECONDS); // 定期打印统计
         try {  
             ServerBootstrap serverbootstrap = new ServerBootstrap(); 	// 启动NIO服务的辅助启动类
-            serverbootstrap.group(bossGroup, workerGroup) 				// 分别设置bossGroup, workerGroup 顺序不能反
-            .channel(NioServerSocketChannel.class) 						// Channel的创建工厂，启动服务时会通过反射的方式来创建一个NioServerSocketChannel对象
+            TRANSPORT.configure(serverbootstrap.group(bossGroup, workerGroup)) 	// 分别设置bossGroup, workerGroup 顺序不能反。configure设置Channel的创建工厂，启动服务时会通过反射的方式来创建一个ServerSocketChannel对象
             .handler(new LoggingHandler(LogLevel.INFO))					// handler在初始化时就会执行，可以设置打印日志级别
             .childHandler(new ChannelInitializer<SocketChannel>() {  	// childHandler会在客户端成功connect后才执行，这里实例化ChannelInitializer
                 @Override  
                 protected void initChannel(SocketChannel socketChannel) throws Exception { 	// initChannel方法执行后删除实例ChannelInitializer，添加以下内容
-                    ByteBuf delimiter = Unpooled.copiedBuffer(DELIMITER.getBytes());  		// 获取特殊分隔符的ByteBuffer
-                    socketChannel.pipeline().addLast(new DelimiterBasedFrameDecoder(128, delimiter)); // 设置特殊分隔符用于拆包 
+                    socketChannel.pipeline().addLast(ITDragonInstrumentHandler.NAME, new ITDragonInstrumentHandler(metrics)); // 统计放在最前面，看到的是网络层的读写
+                    ITDragonFlushConsolidation.add(socketChannel.pipeline(), businessGroup); // 合并 flush，应答从业务线程池回来时也合并，-Ditdragon.flush.consolidate=true|false
+                    socketChannel.pipeline().addLast(new ITDragonDelimiterDecoder()); // "_$" 分隔符拆包，不重复扫描、不拷贝，最大帧长 -Ditdragon.delimiter.maxFrameLength
+//                    socketChannel.pipeline().addLast(new DelimiterBasedFrameDecoder(128, ITDragonServerHandler.DELIMITER));  Netty 自带的通用分隔符拆包，支持多个任意分隔符
 //                    socketChannel.pipeline().addLast(new FixedLengthFrameDecoder(8));  设置指定长度分割  不推荐，两者选其一
-                    socketChannel.pipeline().addLast(new StringDecoder());  				// 设置字符串形式的解码  
-                    socketChannel.pipeline().addLast(new ITDragonServerHandler());			// 自定义的服务器处理类，负责处理事件
+//                    socketChannel.pipeline().addLast(new StringDecoder());  设置字符串形式的解码，每条消息都会创建String，ITDragonServerHandler 直接处理ByteBuf
+                    ITDragonBusinessExecutor.addLast(socketChannel.pipeline(), businessGroup, "handler", new ITDragonServerHandler()); // 自定义的服务器处理类，负责处理事件，积压太多时暂停读
                 }  
             })  
             .option(ChannelOption.SO_BACKLOG, 128) 				// option在初始化时就会执行，设置tcp缓冲区  
-            .childOption(ChannelOption.SO_KEEPALIVE, true); 	// childOption会在客户端成功connect后才执行，设置保持连接  
+            .childOption(ChannelOption.SO_KEEPALIVE, true) 	// childOption会在客户端成功connect后才执行，设置保持连接  
+            .childOption(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT); // 读缓冲区和应答都从内存池中分配，不为每条消息申请新内存
             // 用户调用方法 ServerBootstrap.bind(port) 第一步就是通过反射的方式new一个NioServerSocketChannel对象，并且在new的过程中创建了一系列的核心组件
-            ChannelFuture future = serverbootstrap.bind(PORT).sync(); // 绑定端口， 阻塞等待服务器启动完成，调用sync()方法会一直阻塞等待channel的停止
-            future.channel().closeFuture().sync(); 				// 等待关闭 ，等待服务器套接字关闭
+            Channel[] channels = TRANSPORT.bind(serverbootstrap, PORT); // 绑定端口， 阻塞等待服务器启动完成，epoll模式下同一个端口绑定多个监听通道
+            System.out.println("Netty Server 传输层 : " + TRANSPORT + " 监听通道个数 : " + channels.length);
+            Channel[] httpChannels = new Channel[0];
+            if (null != System.getProperty("itdragon.http.port")) { // HTTP 网关和 TCP 服务共用线程
+                httpChannels = ITDragonHttpServer.bind(TRANSPORT, bossGroup, workerGroup, businessGroup, ITDragonHttpServer.PORT);
+                System.out.println("Netty Http Server 端口 : " + ITDragonHttpServer.PORT);
+            }
+            for (Channel channel : channels) {
+                channel.closeFuture().sync(); 					// 等待关闭 ，等待服务器套接字关闭
+            }
+            for (Channel channel : httpChannels) {
+                channel.closeFuture().sync();
+            }
         } catch (Exception e) {  
             e.printStackTrace();  
         } finally {  
-            workerGroup.shutdownGracefully(); 					// 关闭线程组，先打开的后关闭  
+            ITDragonBusinessExecutor.shutdown(businessGroup); 		// 关闭线程组，先打开的后关闭  
+            workerGroup.shutdownGracefully();
             bossGroup.shutdownGracefully();  
         }  
     }  
@@ -1,10 +1,14 @@
 package com.itdragon.delimiter;
 
+import com.itdragon.utils.ITDragonAsyncLogger;
+import com.itdragon.utils.ITDragonByteCalculator;
 import com.itdragon.utils.ITDragonUtil;
 
+import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.util.CharsetUtil;
 import io.netty.util.ReferenceCountUtil;  
   
 /** 
@@ -16,31 +20,57 @@ import io.netty.util.ReferenceCountUtil;
  * step3 释放ByteBuffer，ByteBuf是一个引用计数对象，这个对象必须显示地调用release()方法来释放 
  * step4 异常处理，即当Netty由于IO错误或者处理器在处理事件时抛出的异常时。在大部分情况下，捕获的异常应该被记录下来并且把关联的channel给关闭掉。 
  * ChannelHandlerContext : ChannelPipeline并不是直接管理ChannelHandler，而是通过ChannelHandlerContext来间接管理
+ * 热点路径不分配对象（-Ditdragon.netty.quiet=true 关闭日志时）：
+ * 1. 不再使用 StringDecoder，直接按字节查找编译好的表达式（ITDragonByteCalculator）
+ * 2. 应答直接写入 ctx.alloc() 分配的池化直接内存，分隔符从共享的常量 DELIMITER 中拷贝，不经过 String 和 getBytes()
+ * 3. 写出时使用 voidPromise，不为每条应答创建 ChannelPromise
+ * 4. 日志交给 ITDragonAsyncLogger 异步打印，不阻塞 EventLoop 线程
+ * 前面配置了 StringDecoder 时收到的是 String，走原来的 ITDragonUtil.cal 路径。
  */  
 public class ITDragonServerHandler extends ChannelInboundHandlerAdapter{  
 	
-	private static final String DELIMITER = "_$"; // 拆包分隔符  
+	/**
+	 * 拆包分隔符 "_$"，只读且不会被释放的直接内存，所有连接共用。拆包解码器和应答都用它
+	 */
+	public static final ByteBuf DELIMITER = Unpooled.unreleasableBuffer(
+			Unpooled.directBuffer(2).writeBytes("_$".getBytes(CharsetUtil.US_ASCII)).asReadOnly());
+	private static final boolean QUIET = Boolean.getBoolean("itdragon.netty.quiet"); // 压测时关闭控制台打印
+	private static final ITDragonByteCalculator CALCULATOR = new ITDragonByteCalculator(); // 所有连接共用的表达式缓存
+	private static final int RESPONSE_CAPACITY = 32; // 应答的初始容量，一般的计算结果都放得下
       
     @Override  
     public void channelRead(ChannelHandlerContext chc, Object msg) {  
         try {  
-        	// 普通读写数据
-        	/* 设置字符串形式的解码 new StringDecoder() 后可以直接使用
-            ByteBuf buf = (ByteBuf) msg;  
-            byte[] req = new byte[buf.readableBytes()];  
-            buf.readBytes(req);  
-            String body = new String(req, "utf-8");  
-            */
-        	System.out.println("Netty Server : " + msg.toString());
-            // 分隔符拆包  
-            String response = ITDragonUtil.cal(msg.toString())+ DELIMITER;  
-            chc.channel().writeAndFlush(Unpooled.copiedBuffer(response.getBytes()));  // 数据是写入到Buffer缓冲中，需要flush一下
+        	if (!QUIET) {
+        		ITDragonAsyncLogger.log("Netty Server : " + (msg instanceof ByteBuf ? ((ByteBuf) msg).toString(CharsetUtil.UTF_8) : msg));
+        	}
+            ByteBuf response = chc.alloc().ioBuffer(RESPONSE_CAPACITY); // 池化的直接内存，写出后由Netty释放
+            if (msg instanceof ByteBuf) {
+            	writeResult(response, (ByteBuf) msg);
+            } else {
+            	response.writeBytes(String.valueOf(ITDragonUtil.cal(msg.toString())).getBytes(CharsetUtil.UTF_8));
+            }
+            response.writeBytes(DELIMITER, DELIMITER.readerIndex(), DELIMITER.readableBytes()); // 分隔符拆包
+            chc.writeAndFlush(response, chc.voidPromise());  // 数据是写入到Buffer缓冲中，需要flush一下。写失败时会触发exceptionCaught
         } catch (Exception e) {  
             e.printStackTrace();  
         } finally {  
             ReferenceCountUtil.release(msg); // 写入方法writeAndFlush ，Netty已经释放了
         }  
     }  
+    
+    // 计算一帧表达式，结果直接写入应答。表达式不合法时应答 null，和 ITDragonUtil.cal 一致
+    private static void writeResult(ByteBuf response, ByteBuf expression) {
+    	double value;
+    	try {
+    		value = CALCULATOR.compile(expression).evaluate();
+    	} catch (IllegalArgumentException e) {
+    		e.printStackTrace();
+    		ITDragonByteCalculator.writeNull(response);
+    		return;
+    	}
+    	ITDragonByteCalculator.writeNumber(response, value);
+    }
       
     // 当出现Throwable对象才会被调用
     @Override  
@@ -0,0 +1,92 @@
+package com.itdragon.http;
+
+import java.util.concurrent.TimeUnit;
+
+import com.itdragon.utils.ITDragonBusinessExecutor;
+import com.itdragon.utils.ITDragonFlushConsolidation;
+import com.itdragon.utils.ITDragonIdleHandler;
+import com.itdragon.utils.ITDragonTransport;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpServerCodec;
+import io.netty.handler.codec.http.HttpServerKeepAliveHandler;
+import io.netty.util.concurrent.EventExecutorGroup;
+
+/**
+ * 计算器服务的 HTTP/1.1 网关，客户端不需要实现 "_$" 分隔符协议，用 curl 就能调用
+ * 第一步 : HttpServerCodec 解析请求、编码应答，HttpObjectAggregator 把请求头和请求体聚合成 FullHttpRequest（最大 -Ditdragon.http.maxContentLength 字节，超过时应答 413）
+ * 第二步 : HttpServerKeepAliveHandler 按请求的 Connection 头和 HTTP 版本决定应答后是否关闭连接，流水线中还有未应答的请求时不会提前关闭
+ * 第三步 : ITDragonHttpServerHandler 计算表达式，应答内容是池化的直接内存；流水线请求的应答由 ITDragonFlushConsolidation 合并 flush，
+ *         有业务线程池时应答在读循环结束后才回到 EventLoop，合并到 EventLoop 执行下一个 flush 任务为止
+ * 第四步 : 和 TCP 服务端一样由 ITDragonBusinessExecutor 切换到业务线程池，一个连接的请求在同一个线程中按顺序处理，流水线的应答顺序不变
+ * 单独启动 : 执行 main 方法，端口 -Ditdragon.http.port（默认8080）
+ * 和 TCP 服务端一起启动 : delimiter 包的 ITDragonServer 加上 -Ditdragon.http.port=8080，两个服务共用 EventLoopGroup 和业务线程池
+ * 调用方式 : curl "http://127.0.0.1:8080/calc?expr=6*7-3/2"
+ *           curl --data-binary $'6*7-3/2\n(1+2)*3' http://127.0.0.1:8080/calc （请求体不做 URL 解码，加号直接写 +）
+ * @author itdragon
+ */
+public class ITDragonHttpServer {
+
+	public static final int PORT = Integer.getInteger("itdragon.http.port", 8080);
+	public static final int MAX_CONTENT_LENGTH = Integer.getInteger("itdragon.http.maxContentLength", 64 * 1024);
+	public static final long IDLE_SECONDS = Long.getLong("itdragon.http.idleSeconds", 60);
+	private static final ITDragonTransport TRANSPORT = ITDragonTransport.select(); // -Ditdragon.transport=auto|nio|epoll
+
+	/**
+	 * HTTP 网关每个连接的 pipeline，businessGroup 为 null 时在 EventLoop 中计算
+	 */
+	public static ChannelInitializer<SocketChannel> newInitializer(final EventExecutorGroup businessGroup) {
+		return new ChannelInitializer<SocketChannel>() {
+			@Override
+			protected void initChannel(SocketChannel socketChannel) throws Exception {
+				ChannelPipeline pipeline = socketChannel.pipeline();
+				pipeline.addLast(ITDragonIdleHandler.readerIdle(IDLE_SECONDS, TimeUnit.SECONDS)); // 空闲的 keep-alive 连接由处理类关闭
+				ITDragonFlushConsolidation.add(pipeline, businessGroup); // 合并流水线请求的应答，应答从业务线程池回来时也合并
+				pipeline.addLast(new HttpServerCodec());
+				pipeline.addLast(new HttpServerKeepAliveHandler());
+				pipeline.addLast(new HttpObjectAggregator(MAX_CONTENT_LENGTH));
+				ITDragonBusinessExecutor.addLast(pipeline, businessGroup, "handler", new ITDragonHttpServerHandler());
+			}
+		};
+	}
+
+	/**
+	 * 在已有的 EventLoopGroup 上绑定 HTTP 网关，和其他服务共用线程
+	 */
+	public static Channel[] bind(ITDragonTransport transport, EventLoopGroup bossGroup, EventLoopGroup workerGroup,
+			EventExecutorGroup businessGroup, int port) throws InterruptedException {
+		ServerBootstrap serverbootstrap = transport.configure(new ServerBootstrap().group(bossGroup, workerGroup))
+				.childHandler(newInitializer(businessGroup))
+				.option(ChannelOption.SO_BACKLOG, 128)
+				.childOption(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT); // 请求和应答都从内存池中分配
+		return transport.bind(serverbootstrap, port);
+	}
+
+	public static void main(String[] args) {
+		EventLoopGroup bossGroup = TRANSPORT.newBossGroup();
+		EventLoopGroup workerGroup = TRANSPORT.newEventLoopGroup();
+		EventExecutorGroup businessGroup = ITDragonBusinessExecutor.newGroup(); // -Ditdragon.business.threads=0 表示在EventLoop中处理
+		try {
+			Channel[] channels = bind(TRANSPORT, bossGroup, workerGroup, businessGroup, PORT);
+			System.out.println("Netty Http Server 传输层 : " + TRANSPORT + " 端口 : " + PORT);
+			for (Channel channel : channels) {
+				channel.closeFuture().sync();
+			}
+		} catch (Exception e) {
+			e.printStackTrace();
+		} finally {
+			ITDragonBusinessExecutor.shutdown(businessGroup);
+			workerGroup.shutdownGracefully();
+			bossGroup.shutdownGracefully();
+		}
+	}
+
+}
@@ -0,0 +1,159 @@
+package com.itdragon.http;
+
+import java.util.List;
+
+import com.itdragon.utils.ITDragonAsyncLogger;
+import com.itdragon.utils.ITDragonByteCalculator;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.QueryStringDecoder;
+import io.netty.handler.timeout.IdleStateEvent;
+import io.netty.util.AsciiString;
+import io.netty.util.ByteProcessor;
+import io.netty.util.CharsetUtil;
+import io.netty.util.ReferenceCountUtil;
+
+/**
+ * HTTP 网关的计算器处理类，和 delimiter 包的 ITDragonServerHandler 一样直接在 ByteBuf 上编译和计算表达式
+ * GET  /calc?expr=表达式 : 应答计算结果，表达式不合法时 400，应答内容是 null。查询参数中的 '+' 会被解码成空格，加号要写成 %2B
+ * POST /calc            : 请求体每行一个表达式（\n 或 \r\n 分隔，空行跳过），应答每行一个结果，顺序和请求一致，不合法的表达式结果是 null
+ * 第一步 : HttpObjectAggregator 已经把请求聚合成 FullHttpRequest，请求体是池化的 ByteBuf，按行切出 slice 直接编译，不拷贝、不创建 String
+ * 第二步 : 所有结果写进同一个 ctx.alloc() 分配的池化直接内存，作为 FullHttpResponse 的内容一次写出，Netty 写完后释放
+ * 第三步 : 每个请求按顺序应答，HTTP 流水线（一次发多个请求不等应答）的应答顺序和请求一致；
+ *         Connection 头由 HttpServerKeepAliveHandler 处理，客户端要求关闭时在最后一个应答写完后关闭
+ * 第四步 : keep-alive 连接读空闲超过 -Ditdragon.http.idleSeconds 秒时关闭
+ * @author itdragon
+ */
+public class ITDragonHttpServerHandler extends ChannelInboundHandlerAdapter {
+
+	public static final String PATH = "/calc";
+	private static final String PARAMETER = "expr";
+	private static final boolean QUIET = Boolean.getBoolean("itdragon.netty.quiet"); // 压测时关闭控制台打印
+	private static final ITDragonByteCalculator CALCULATOR = new ITDragonByteCalculator(); // 所有连接共用的表达式缓存
+	private static final AsciiString TEXT_PLAIN = AsciiString.cached("text/plain; charset=UTF-8");
+	private static final AsciiString ALLOW = AsciiString.cached("GET, POST");
+	private static final int RESPONSE_CAPACITY = 32; // 单个结果的初始容量，批量请求按行数放大
+
+	@Override
+	public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+		if (!(msg instanceof FullHttpRequest)) {
+			ctx.fireChannelRead(msg);
+			return;
+		}
+		FullHttpRequest request = (FullHttpRequest) msg;
+		try {
+			if (!QUIET) {
+				ITDragonAsyncLogger.log("Netty Http Server : " + request.method() + " " + request.uri());
+			}
+			ctx.writeAndFlush(respond(ctx, request));
+		} finally {
+			ReferenceCountUtil.release(msg);
+		}
+	}
+
+	private static FullHttpResponse respond(ChannelHandlerContext ctx, FullHttpRequest request) {
+		if (request.decoderResult().isFailure()) {
+			return error(ctx, request, HttpResponseStatus.BAD_REQUEST, false);
+		}
+		QueryStringDecoder decoder = new QueryStringDecoder(request.uri());
+		if (!PATH.equals(decoder.path())) {
+			return error(ctx, request, HttpResponseStatus.NOT_FOUND, HttpUtil.isKeepAlive(request));
+		}
+		if (HttpMethod.GET.equals(request.method())) {
+			List<String> expressions = decoder.parameters().get(PARAMETER);
+			if (null == expressions || expressions.isEmpty()) {
+				return error(ctx, request, HttpResponseStatus.BAD_REQUEST, HttpUtil.isKeepAlive(request));
+			}
+			ByteBuf content = ctx.alloc().ioBuffer(RESPONSE_CAPACITY);
+			ByteBuf expression = ctx.alloc().buffer(expressions.get(0).length());
+			try {
+				expression.writeCharSequence(expressions.get(0), CharsetUtil.UTF_8);
+				boolean valid = writeResult(content, expression);
+				return response(request, valid ? HttpResponseStatus.OK : HttpResponseStatus.BAD_REQUEST, content,
+						HttpUtil.isKeepAlive(request));
+			} finally {
+				expression.release();
+			}
+		}
+		if (HttpMethod.POST.equals(request.method())) {
+			return response(request, HttpResponseStatus.OK, writeBatch(ctx, request.content()), HttpUtil.isKeepAlive(request));
+		}
+		FullHttpResponse response = error(ctx, request, HttpResponseStatus.METHOD_NOT_ALLOWED, HttpUtil.isKeepAlive(request));
+		response.headers().set(HttpHeaderNames.ALLOW, ALLOW);
+		return response;
+	}
+
+	// 批量计算，body 每行一个表达式，结果每行一个
+	private static ByteBuf writeBatch(ChannelHandlerContext ctx, ByteBuf body) {
+		ByteBuf content = ctx.alloc().ioBuffer(RESPONSE_CAPACITY * 4);
+		int index = body.readerIndex();
+		int end = body.writerIndex();
+		while (index < end) {
+			int lineEnd = body.forEachByte(index, end - index, ByteProcessor.FIND_LF);
+			int next = lineEnd < 0 ? end : lineEnd + 1;
+			int length = (lineEnd < 0 ? end : lineEnd) - index;
+			if (length > 0 && '\r' == body.getByte(index + length - 1)) {
+				length--;
+			}
+			if (length > 0) {
+				writeResult(content, body.slice(index, length));
+				content.writeByte('\n');
+			}
+			index = next;
+		}
+		return content;
+	}
+
+	// 计算一个表达式，结果直接写入应答。表达式不合法时写 null 并返回 false，和 TCP 服务端一致
+	private static boolean writeResult(ByteBuf content, ByteBuf expression) {
+		double value;
+		try {
+			value = CALCULATOR.compile(expression).evaluate();
+		} catch (IllegalArgumentException e) {
+			ITDragonByteCalculator.writeNull(content);
+			return false;
+		}
+		ITDragonByteCalculator.writeNumber(content, value);
+		return true;
+	}
+
+	private static FullHttpResponse error(ChannelHandlerContext ctx, FullHttpRequest request, HttpResponseStatus status,
+			boolean keepAlive) {
+		ByteBuf content = ctx.alloc().ioBuffer(RESPONSE_CAPACITY);
+		content.writeCharSequence(status.toString(), CharsetUtil.US_ASCII);
+		return response(request, status, content, keepAlive);
+	}
+
+	private static FullHttpResponse response(FullHttpRequest request, HttpResponseStatus status, ByteBuf content, boolean keepAlive) {
+		FullHttpResponse response = new DefaultFullHttpResponse(request.protocolVersion(), status, content);
+		response.headers().set(HttpHeaderNames.CONTENT_TYPE, TEXT_PLAIN).setInt(HttpHeaderNames.CONTENT_LENGTH,
+				content.readableBytes());
+		HttpUtil.setKeepAlive(response, keepAlive); // HTTP/1.0 的 keep-alive 请求要在应答中写明，否则 HttpServerKeepAliveHandler 会关闭连接
+		return response;
+	}
+
+	@Override
+	public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+		if (evt instanceof IdleStateEvent) {
+			ctx.close(); // keep-alive 连接空闲太久，释放连接
+			return;
+		}
+		ctx.fireUserEventTriggered(evt);
+	}
+
+	@Override
+	public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
+		cause.printStackTrace();
+		ctx.close();
+	}
+
+}
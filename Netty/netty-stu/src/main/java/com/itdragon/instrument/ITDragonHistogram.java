@@ -0,0 +1,114 @@
+package com.itdragon.instrument;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongBinaryOperator;
+
+/**
+ * HDR 风格的无锁直方图，记录非负的 long 值（如纳秒）
+ * 桶按 "2的幂次 + 每段32个线性子桶" 划分 : 小于32的值各占一个桶，之后每个 [2^e, 2^(e+1)) 区间等分为32个桶，
+ * 相对误差不超过 1/32（约3%），整个 long 范围只需要 1888 个桶，约15KB。
+ * 记录只做一次 AtomicLongArray.incrementAndGet 和三次 LongAdder / LongAccumulator 更新，多个 EventLoop 线程同时记录不需要加锁。
+ * 读取百分位时遍历所有桶，读到的是近似一致的快照，只用于统计报告。
+ * @author itdragon
+ */
+public final class ITDragonHistogram {
+
+	private static final int SUB_BITS = 5;
+	private static final int SUB_COUNT = 1 << SUB_BITS;
+	private static final int BUCKETS = (64 - SUB_BITS) * SUB_COUNT;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private final LongAdder total = new LongAdder();
+	private final LongAdder sum = new LongAdder();
+	private final LongAccumulator max = new LongAccumulator(new LongBinaryOperator() {
+		@Override
+		public long applyAsLong(long left, long right) {
+			return Math.max(left, right);
+		}
+	}, 0);
+
+	public void record(long value) {
+		if (value < 0) {
+			value = 0;
+		}
+		counts.incrementAndGet(index(value));
+		total.increment();
+		sum.add(value);
+		max.accumulate(value);
+	}
+
+	public long count() {
+		return total.sum();
+	}
+
+	public long max() {
+		return max.get();
+	}
+
+	public double mean() {
+		long count = total.sum();
+		return 0 == count ? 0 : (double) sum.sum() / count;
+	}
+
+	/**
+	 * 百分位数，percentile 取 0~100，返回所在桶的中间值
+	 */
+	public long percentile(double percentile) {
+		long count = 0;
+		long[] snapshot = new long[BUCKETS];
+		for (int i = 0; i < BUCKETS; i++) {
+			snapshot[i] = counts.get(i);
+			count += snapshot[i];
+		}
+		if (0 == count) {
+			return 0;
+		}
+		long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+		if (rank >= count) {
+			return max();
+		}
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += snapshot[i];
+			if (seen >= rank) {
+				return Math.min(max(), lowest(i) + (width(i) - 1) / 2);
+			}
+		}
+		return max();
+	}
+
+	public void reset() {
+		for (int i = 0; i < BUCKETS; i++) {
+			counts.set(i, 0);
+		}
+		total.reset();
+		sum.reset();
+		max.reset();
+	}
+
+	static int index(long value) {
+		if (value < SUB_COUNT) {
+			return (int) value;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(value); 	// 最高位，>= SUB_BITS
+		int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_COUNT - 1);
+		return (exponent - SUB_BITS + 1) * SUB_COUNT + sub;
+	}
+
+	// 桶的下界
+	static long lowest(int index) {
+		if (index < SUB_COUNT) {
+			return index;
+		}
+		int exponent = index / SUB_COUNT + SUB_BITS - 1;
+		long sub = index % SUB_COUNT;
+		return (SUB_COUNT + sub) << (exponent - SUB_BITS);
+	}
+
+	static long width(int index) {
+		return index < SUB_COUNT ? 1 : 1L << (index / SUB_COUNT - 1);
+	}
+
+}
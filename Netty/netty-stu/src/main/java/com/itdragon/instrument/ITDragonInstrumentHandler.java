@@ -0,0 +1,82 @@
+package com.itdragon.instrument;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufHolder;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.FileRegion;
+
+/**
+ * 连接级别的统计，放在 pipeline 的最前面（紧挨着 socket），每个连接一个实例，结果汇总到 ITDragonServerMetrics
+ * 读写次数和字节数是网络层的，即每次 channelRead 的 ByteBuf 和每次 write 的 ByteBuf / FileRegion。
+ * flush 次数即到达 socket 的 flush 次数，约等于 write 系统调用次数，用来观察 flush 合并的效果。
+ * 请求到应答的延迟 : 从没有未应答请求时读到的第一个字节，到之后第一次写出应答，包括拆包、解码、业务处理、编码的时间。
+ * 一个连接同一时间只跟踪一个请求，适合一问一答的协议；客户端流水线发送多个请求时只统计每一批的第一个。
+ * 字段只在连接自己的 EventLoop 中访问，不需要同步。
+ * @author itdragon
+ */
+public class ITDragonInstrumentHandler extends ChannelDuplexHandler {
+
+	public static final String NAME = "instrument";
+
+	private final ITDragonServerMetrics metrics;
+	private long requestStart; 	// 0 表示没有未应答的请求
+
+	public ITDragonInstrumentHandler(ITDragonServerMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	@Override
+	public void channelActive(ChannelHandlerContext ctx) throws Exception {
+		metrics.register(ctx.channel());
+		ctx.fireChannelActive();
+	}
+
+	@Override
+	public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+		metrics.unregister(ctx.channel());
+		ctx.fireChannelInactive();
+	}
+
+	@Override
+	public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+		if (0 == requestStart) {
+			requestStart = System.nanoTime();
+		}
+		metrics.messagesIn.increment();
+		metrics.bytesIn.add(size(msg));
+		ctx.fireChannelRead(msg);
+	}
+
+	@Override
+	public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+		metrics.messagesOut.increment();
+		metrics.bytesOut.add(size(msg));
+		if (0 != requestStart) {
+			metrics.latency.record(System.nanoTime() - requestStart);
+			requestStart = 0;
+		}
+		ctx.write(msg, promise);
+	}
+
+	@Override
+	public void flush(ChannelHandlerContext ctx) throws Exception {
+		metrics.flushes.increment();
+		ctx.flush();
+	}
+
+	private static long size(Object msg) {
+		if (msg instanceof ByteBuf) {
+			return ((ByteBuf) msg).readableBytes();
+		}
+		if (msg instanceof ByteBufHolder) {
+			return ((ByteBufHolder) msg).content().readableBytes();
+		}
+		if (msg instanceof FileRegion) {
+			return ((FileRegion) msg).count();
+		}
+		return 0;
+	}
+
+}
@@ -0,0 +1,135 @@
+package com.itdragon.instrument;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.itdragon.utils.ITDragonAsyncLogger;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelOutboundBuffer;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.EventExecutorGroup;
+
+/**
+ * 一个服务端所有连接的统计汇总，由每个连接的 ITDragonInstrumentHandler 写入
+ * 计数器都是 LongAdder，各个 EventLoop 线程写入时不互相竞争，读取时求和
+ * 第一步 : 字节数、读写次数、flush 次数、连接数、请求到应答的延迟直方图
+ * 第二步 : 待发送字节数在报告时遍历在线连接的 ChannelOutboundBuffer 求和，反映客户端读得慢、数据积压在服务端的情况
+ * 第三步 : monitor(group) 在每个 EventLoop 上放一个固定频率的探测任务，任务实际执行时间比预定时间晚多少就是 EventLoop 的任务延迟
+ * 第四步 : report(group, seconds) 定期通过 ITDragonAsyncLogger 打印 dump()，-Ditdragon.metrics.interval=秒数，0 表示不打印
+ * @author itdragon
+ */
+public final class ITDragonServerMetrics {
+
+	public static final long INTERVAL_SECONDS = Long.getLong("itdragon.metrics.interval", 60);
+	private static final long PROBE_MILLIS = 100;
+
+	private final String name;
+	final LongAdder bytesIn = new LongAdder();
+	final LongAdder bytesOut = new LongAdder();
+	final LongAdder messagesIn = new LongAdder();
+	final LongAdder messagesOut = new LongAdder();
+	final LongAdder flushes = new LongAdder();
+	final LongAdder accepted = new LongAdder();
+	final ITDragonHistogram latency = new ITDragonHistogram(); 		// 纳秒
+	private final ITDragonHistogram taskDelay = new ITDragonHistogram(); 	// 纳秒
+	private final Set<Channel> channels = ConcurrentHashMap.newKeySet();
+
+	public ITDragonServerMetrics(String name) {
+		this.name = name;
+	}
+
+	void register(Channel channel) {
+		accepted.increment();
+		channels.add(channel);
+	}
+
+	void unregister(Channel channel) {
+		channels.remove(channel);
+	}
+
+	public ITDragonHistogram getLatency() {
+		return latency;
+	}
+
+	public ITDragonHistogram getTaskDelay() {
+		return taskDelay;
+	}
+
+	public int getConnections() {
+		return channels.size();
+	}
+
+	public long getPendingOutboundBytes() {
+		long pending = 0;
+		for (Channel channel : channels) {
+			ChannelOutboundBuffer buffer = channel.unsafe().outboundBuffer();
+			if (null != buffer) { 	// 连接关闭后为 null
+				pending += buffer.totalPendingWriteBytes();
+			}
+		}
+		return pending;
+	}
+
+	/**
+	 * 在 group 的每个 EventLoop 上测量任务延迟
+	 */
+	public void monitor(EventExecutorGroup group) {
+		for (EventExecutor executor : group) {
+			executor.scheduleAtFixedRate(new Runnable() {
+				private long last = System.nanoTime();
+
+				@Override
+				public void run() {
+					long now = System.nanoTime();
+					taskDelay.record(Math.max(0, now - last - TimeUnit.MILLISECONDS.toNanos(PROBE_MILLIS)));
+					last = now;
+				}
+			}, PROBE_MILLIS, PROBE_MILLIS, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * 每隔 seconds 秒打印一次统计，seconds 不大于0时不打印
+	 */
+	public void report(EventExecutorGroup group, long seconds) {
+		if (seconds <= 0) {
+			return;
+		}
+		group.scheduleAtFixedRate(new Runnable() {
+			@Override
+			public void run() {
+				ITDragonAsyncLogger.log(dump());
+			}
+		}, seconds, seconds, TimeUnit.SECONDS);
+	}
+
+	public String dump() {
+		StringBuilder sb = new StringBuilder(512);
+		sb.append("---------------- ").append(name).append(" 统计 ----------------\n");
+		sb.append("当前连接 : ").append(getConnections()).append("  累计连接 : ").append(accepted.sum()).append('\n');
+		sb.append("读 : ").append(messagesIn.sum()).append(" 次 ").append(bytesIn.sum()).append(" 字节  写 : ")
+				.append(messagesOut.sum()).append(" 次 ").append(bytesOut.sum()).append(" 字节  flush : ").append(flushes.sum()).append(" 次  待发送 : ")
+				.append(getPendingOutboundBytes()).append(" 字节\n");
+		append(sb.append("请求到应答延迟 : "), latency).append('\n');
+		append(sb.append("EventLoop 任务延迟 : "), taskDelay);
+		return sb.toString();
+	}
+
+	private static StringBuilder append(StringBuilder sb, ITDragonHistogram histogram) {
+		return sb.append("count=").append(histogram.count())
+				.append(" mean=").append(micros((long) histogram.mean()))
+				.append(" p50=").append(micros(histogram.percentile(50)))
+				.append(" p90=").append(micros(histogram.percentile(90)))
+				.append(" p99=").append(micros(histogram.percentile(99)))
+				.append(" p99.9=").append(micros(histogram.percentile(99.9)))
+				.append(" max=").append(micros(histogram.max())).append(" (us)");
+	}
+
+	private static String micros(long nanos) {
+		return String.valueOf(nanos / 1000);
+	}
+
+}
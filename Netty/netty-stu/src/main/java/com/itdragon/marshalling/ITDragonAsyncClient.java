@@ -0,0 +1,348 @@
+package com.itdragon.marshalling;
+
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+import com.itdragon.compression.ITDragonCompressionFactory;
+import com.itdragon.utils.ITDragonTimer;
+import com.itdragon.utils.ITDragonTransport;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoop;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.Timeout;
+import io.netty.util.TimerTask;
+
+/**
+ * 异步多路复用客户端，send() 立即返回 CompletableFuture，收到 id 相同的 ITDragonRespData 时完成
+ * 第一步 : 连接池中有 poolSize 个槽位，按轮询选择，优先选择已经连上的槽位
+ * 第二步 : 每个槽位绑定一个 EventLoop，槽位的连接、重连、在途请求都只在这个 EventLoop 中访问，不需要加锁
+ * 第三步 : 槽位没有连接时请求先排队，在 EventLoop 中异步连接，连上后写出。连接失败按 100ms、200ms ... 最长 10s 退避重连
+ * 第四步 : 每个请求有自己的超时，超时、连接断开、写失败都会让 future 异常完成
+ * 调用线程从不阻塞。服务端 5 秒没有请求会断开连接，槽位在下一次被选中时重新连接。
+ * future 在 EventLoop 线程中完成，后续的耗时处理请使用 thenApplyAsync 等方法交给其他线程。
+ * 请求 id 由调用方指定，同一个 id 在途时再次发送会直接失败。
+ * @author itdragon
+ */
+public class ITDragonAsyncClient {
+
+	private static final ITDragonTransport TRANSPORT = ITDragonTransport.select(); // -Ditdragon.transport=auto|nio|epoll
+	private static final long INITIAL_BACKOFF_MILLIS = 100;
+	private static final long MAX_BACKOFF_MILLIS = 10000;
+
+	private final EventLoopGroup group;
+	private final Bootstrap bootstrap;
+	private final Slot[] slots;
+	private final long timeoutMillis;
+	private final AtomicInteger next = new AtomicInteger();
+	private final ConcurrentHashMap<Long, CompletableFuture<ITDragonRespData>> pending = new ConcurrentHashMap<Long, CompletableFuture<ITDragonRespData>>();
+
+	public ITDragonAsyncClient(String host, int port, int poolSize, long timeoutMillis) {
+		this.group = TRANSPORT.newEventLoopGroup(poolSize);
+		this.bootstrap = TRANSPORT.configure(new Bootstrap()).remoteAddress(host, port).option(ChannelOption.TCP_NODELAY, true);
+		this.timeoutMillis = timeoutMillis;
+		this.slots = new Slot[poolSize];
+		for (int i = 0; i < poolSize; i++) {
+			slots[i] = new Slot(group.next());
+		}
+	}
+
+	/**
+	 * 异步发送请求，不会阻塞调用线程
+	 */
+	public CompletableFuture<ITDragonRespData> send(final ITDragonReqData request) {
+		final CompletableFuture<ITDragonRespData> future = new CompletableFuture<ITDragonRespData>();
+		final Long id = request.getId();
+		if (null == id) {
+			future.completeExceptionally(new IllegalArgumentException("request id is null"));
+			return future;
+		}
+		if (null != pending.putIfAbsent(id, future)) {
+			future.completeExceptionally(new IllegalStateException("request id already in flight : " + id));
+			return future;
+		}
+		final Slot slot = select();
+		// 超时放在共用的时间轮上，添加和取消都是 O(1)，不占用 EventLoop 的定时任务队列
+		final Timeout timeout = ITDragonTimer.newTimeout(new TimerTask() {
+			@Override
+			public void run(Timeout t) throws Exception {
+				fail(id, new TimeoutException("no response for request " + id + " in " + timeoutMillis + " ms"));
+				slot.forget(id, future); 	// 服务端不应答时 inFlight 也要清理，否则长连接上会一直增长
+			}
+		}, timeoutMillis, TimeUnit.MILLISECONDS);
+		future.whenComplete(new BiConsumer<ITDragonRespData, Throwable>() {
+			@Override
+			public void accept(ITDragonRespData response, Throwable cause) {
+				timeout.cancel();
+			}
+		});
+		if (slot.loop.inEventLoop()) {
+			slot.send(request, future);
+		} else {
+			try {
+				slot.loop.execute(new Runnable() {
+					@Override
+					public void run() {
+						slot.send(request, future);
+					}
+				});
+			} catch (RejectedExecutionException e) { 	// close() 之后发送，EventLoop 已经关闭
+				pending.remove(id, future);
+				future.completeExceptionally(new ClosedChannelException());
+			}
+		}
+		return future;
+	}
+
+	// 轮询，从轮到的槽位开始找一个已经连上的槽位，都没有连上时用轮到的槽位
+	private Slot select() {
+		int start = next.getAndIncrement() & Integer.MAX_VALUE;
+		for (int i = 0; i < slots.length; i++) {
+			Slot slot = slots[(start + i) % slots.length];
+			if (slot.isActive()) {
+				return slot;
+			}
+		}
+		return slots[start % slots.length];
+	}
+
+	private void fail(Long id, Throwable cause) {
+		CompletableFuture<ITDragonRespData> future = pending.remove(id);
+		if (null != future) {
+			future.completeExceptionally(cause);
+		}
+	}
+
+	/**
+	 * 关闭所有连接，还没有完成的请求异常完成
+	 */
+	public void close() {
+		group.shutdownGracefully().syncUninterruptibly();
+		for (Long id : new ArrayList<Long>(pending.keySet())) {
+			fail(id, new ClosedChannelException());
+		}
+	}
+
+	/**
+	 * 连接池中的一个槽位，除了 channel 字段，其他状态只在 loop 中访问
+	 */
+	private final class Slot {
+		private final EventLoop loop;
+		private final Bootstrap slotBootstrap;
+		private final ArrayDeque<Waiter> waiters = new ArrayDeque<Waiter>(); 	// 等待连接的请求
+		private final Map<Long, CompletableFuture<ITDragonRespData>> inFlight = new HashMap<Long, CompletableFuture<ITDragonRespData>>(); // 已经写出、还没有应答的请求
+		private volatile Channel channel;
+		private boolean connecting;
+		private long backoffMillis = INITIAL_BACKOFF_MILLIS;
+
+		Slot(EventLoop loop) {
+			this.loop = loop;
+			// 连接注册到槽位自己的 EventLoop 上，连接的回调和应答处理都在同一个线程
+			this.slotBootstrap = bootstrap.clone(loop).handler(new ChannelInitializer<SocketChannel>() {
+				@Override
+				protected void initChannel(SocketChannel socketChannel) throws Exception {
+					ITDragonCompressionFactory.addCompression(socketChannel.pipeline(), true);
+					ITDragonMarshallerFactory.addCodec(socketChannel.pipeline());
+					socketChannel.pipeline().addLast(new ResponseHandler(Slot.this));
+				}
+			});
+		}
+
+		boolean isActive() {
+			Channel ch = channel;
+			return null != ch && ch.isActive();
+		}
+
+		void send(ITDragonReqData request, CompletableFuture<ITDragonRespData> future) {
+			if (isActive()) {
+				write(request, future);
+				return;
+			}
+			waiters.add(new Waiter(request, future));
+			if (!connecting) {
+				connect();
+			}
+		}
+
+		private void connect() {
+			// 排队的请求都已经超时，不再重连，等下一个请求再连接
+			while (!waiters.isEmpty() && waiters.peek().future.isDone()) {
+				waiters.poll();
+			}
+			if (waiters.isEmpty()) {
+				connecting = false;
+				return;
+			}
+			connecting = true;
+			slotBootstrap.connect().addListener(new ChannelFutureListener() {
+				@Override
+				public void operationComplete(ChannelFuture f) throws Exception {
+					if (f.isSuccess()) {
+						connected(f.channel());
+					} else {
+						System.out.println("连接失败，" + backoffMillis + " ms 后重连 : " + f.cause());
+						loop.schedule(new Runnable() {
+							@Override
+							public void run() {
+								connect();
+							}
+						}, backoffMillis, TimeUnit.MILLISECONDS);
+						backoffMillis = Math.min(backoffMillis * 2, MAX_BACKOFF_MILLIS);
+					}
+				}
+			});
+		}
+
+		private void connected(Channel ch) {
+			connecting = false;
+			backoffMillis = INITIAL_BACKOFF_MILLIS;
+			channel = ch;
+			ch.closeFuture().addListener(new ChannelFutureListener() {
+				@Override
+				public void operationComplete(ChannelFuture f) throws Exception {
+					closed(f.channel());
+				}
+			});
+			Waiter waiter;
+			while (null != (waiter = waiters.poll())) {
+				write(waiter.request, waiter.future);
+			}
+		}
+
+		// 连接断开，这个连接上还没有应答的请求不会再有应答了
+		private void closed(Channel ch) {
+			if (channel == ch) {
+				channel = null;
+			}
+			for (Long id : inFlight.keySet()) {
+				fail(id, new ClosedChannelException());
+			}
+			inFlight.clear();
+			if (!waiters.isEmpty() && !connecting) {
+				connect();
+			}
+		}
+
+		private void write(ITDragonReqData request, final CompletableFuture<ITDragonRespData> future) {
+			if (future.isDone()) {
+				return; 	// 等待连接时已经超时
+			}
+			final Long id = request.getId();
+			inFlight.put(id, future);
+			channel.writeAndFlush(request).addListener(new ChannelFutureListener() {
+				@Override
+				public void operationComplete(ChannelFuture f) throws Exception {
+					if (!f.isSuccess()) {
+						inFlight.remove(id, future);
+						fail(id, f.cause());
+					}
+				}
+			});
+		}
+
+		// 请求超时，在时间轮线程中调用，转到 loop 中清理。只删除同一个 future，id 重新发送后的新请求不受影响
+		void forget(final Long id, final CompletableFuture<ITDragonRespData> future) {
+			try {
+				loop.execute(new Runnable() {
+					@Override
+					public void run() {
+						inFlight.remove(id, future);
+					}
+				});
+			} catch (RejectedExecutionException e) {
+				// 已经 close()，inFlight 不会再使用
+			}
+		}
+
+		void received(ITDragonRespData response) {
+			inFlight.remove(response.getId());
+			CompletableFuture<ITDragonRespData> future = pending.remove(response.getId());
+			if (null != future) {
+				future.complete(response);
+			}
+		}
+	}
+
+	private static final class Waiter {
+		private final ITDragonReqData request;
+		private final CompletableFuture<ITDragonRespData> future;
+
+		Waiter(ITDragonReqData request, CompletableFuture<ITDragonRespData> future) {
+			this.request = request;
+			this.future = future;
+		}
+	}
+
+	private static final class ResponseHandler extends ChannelInboundHandlerAdapter {
+		private final Slot slot;
+
+		ResponseHandler(Slot slot) {
+			this.slot = slot;
+		}
+
+		@Override
+		public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+			try {
+				if (msg instanceof ITDragonRespData) {
+					slot.received((ITDragonRespData) msg);
+				}
+			} finally {
+				ReferenceCountUtil.release(msg);
+			}
+		}
+
+		@Override
+		public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
+			cause.printStackTrace();
+			ctx.close();
+		}
+	}
+
+	/**
+	 * 4个连接并发发送20个请求，全部应答后关闭客户端
+	 */
+	public static void main(String[] args) throws Exception {
+		ITDragonAsyncClient client = new ITDragonAsyncClient("127.0.0.1", 8888, 4, 3000);
+		List<CompletableFuture<ITDragonRespData>> futures = new ArrayList<CompletableFuture<ITDragonRespData>>();
+		for (long i = 1; i <= 20; i++) {
+			ITDragonReqData reqData = new ITDragonReqData();
+			reqData.setId(i);
+			reqData.setName("ITDragon-" + i);
+			reqData.setRequestMsg("NO." + i + " Request");
+			futures.add(client.send(reqData).whenComplete(new BiConsumer<ITDragonRespData, Throwable>() {
+				@Override
+				public void accept(ITDragonRespData response, Throwable cause) {
+					System.out.println("Netty Client : " + (null != cause ? cause : response));
+				}
+			}));
+		}
+		try {
+			CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[futures.size()])).join();
+		} catch (Exception e) {
+			e.printStackTrace();
+		} finally {
+			client.close();
+		}
+	}
+
+}
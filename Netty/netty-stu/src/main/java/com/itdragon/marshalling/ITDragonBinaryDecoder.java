@@ -0,0 +1,166 @@
+package com.itdragon.marshalling;
+
+import static com.itdragon.marshalling.ITDragonBinaryProtocol.*;
+
+import java.util.HashMap;
+import java.util.List;
+
+import com.itdragon.monitoring.ITDragonHeartbeat;
+import com.itdragon.monitoring.ITDragonRequestInfo;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandler.Sharable;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.handler.codec.MessageToMessageDecoder;
+
+/**
+ * 二进制解码器，放在 LengthFieldBasedFrameDecoder 之后，输入是去掉长度字段的一帧
+ * 版本号不一致或者消息体格式错误时抛出 CorruptedFrameException。没有状态，所有连接可以共用一个实例。
+ * @author itdragon
+ */
+@Sharable
+public class ITDragonBinaryDecoder extends MessageToMessageDecoder<ByteBuf> {
+
+	@Override
+	protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) throws Exception {
+		out.add(decode(in));
+	}
+
+	static Object decode(ByteBuf in) {
+		byte version = in.readByte();
+		if (VERSION != version) {
+			throw new CorruptedFrameException("unsupported version : " + version);
+		}
+		byte type = in.readByte();
+		Object msg;
+		switch (type) {
+		case TYPE_STRING:
+			msg = readString(in);
+			break;
+		case TYPE_REQ_DATA:
+			msg = readReqData(in);
+			break;
+		case TYPE_RESP_DATA:
+			msg = readRespData(in);
+			break;
+		case TYPE_REQUEST_INFO:
+			msg = readRequestInfo(in);
+			break;
+		case TYPE_HEARTBEAT:
+			msg = readHeartbeat(in);
+			break;
+		case TYPE_FILE_HEADER:
+			msg = readFileHeader(in);
+			break;
+		default:
+			throw new CorruptedFrameException("unknown message type : " + type);
+		}
+		if (in.isReadable()) {
+			throw new CorruptedFrameException(in.readableBytes() + " trailing bytes after message type " + type);
+		}
+		return msg;
+	}
+
+	private static ITDragonReqData readReqData(ByteBuf in) {
+		int flags = in.readByte();
+		ITDragonReqData data = ITDragonReqData.newInstance(); 	// 只有服务端收请求，处理完后由 ITDragonServerHandler 放回对象池
+		if (0 != (flags & 1)) {
+			data.setId(readZigZagLong(in));
+		}
+		if (0 != (flags & 2)) {
+			data.setName(readString(in));
+		}
+		if (0 != (flags & 4)) {
+			data.setRequestMsg(readString(in));
+		}
+		if (0 != (flags & 8)) {
+			data.setAttachment(readBytes(in));
+		}
+		return data;
+	}
+
+	private static ITDragonRespData readRespData(ByteBuf in) {
+		int flags = in.readByte();
+		ITDragonRespData data = new ITDragonRespData();
+		if (0 != (flags & 1)) {
+			data.setId(readZigZagLong(in));
+		}
+		if (0 != (flags & 2)) {
+			data.setName(readString(in));
+		}
+		if (0 != (flags & 4)) {
+			data.setResponseMsg(readString(in));
+		}
+		return data;
+	}
+
+	private static ITDragonRequestInfo readRequestInfo(ByteBuf in) {
+		int flags = in.readByte();
+		ITDragonRequestInfo info = new ITDragonRequestInfo();
+		if (0 != (flags & 1)) {
+			info.setIp(readString(in));
+		}
+		if (0 != (flags & 2)) {
+			info.setCpuPercMap(readMap(in));
+		}
+		if (0 != (flags & 4)) {
+			info.setMemoryMap(readMap(in));
+		}
+		return info;
+	}
+
+	private static ITDragonHeartbeat readHeartbeat(ByteBuf in) {
+		int flags = in.readByte();
+		String ip = 0 != (flags & 1) ? readString(in) : null;
+		return new ITDragonHeartbeat(ip, readVarLong(in), in.readDouble(), in.readDouble(), in.readDouble(),
+				in.readDouble(), in.readDouble(), readZigZagLong(in), readZigZagLong(in), readZigZagLong(in));
+	}
+
+	private static ITDragonFileHeader readFileHeader(ByteBuf in) {
+		int flags = in.readByte();
+		ITDragonFileHeader header = new ITDragonFileHeader();
+		if (0 != (flags & 1)) {
+			header.setId(readZigZagLong(in));
+		}
+		if (0 != (flags & 2)) {
+			header.setFileName(readString(in));
+		}
+		header.setLength(readVarLong(in));
+		header.setChecksum(readVarLong(in));
+		return header;
+	}
+
+	private static HashMap<String, Object> readMap(ByteBuf in) {
+		int size = readVarInt(in);
+		if (size < 0 || size > in.readableBytes()) {
+			throw new CorruptedFrameException("map size " + size + " exceeds readable bytes " + in.readableBytes());
+		}
+		HashMap<String, Object> map = new HashMap<String, Object>(size * 4 / 3 + 1);
+		for (int i = 0; i < size; i++) {
+			String key = readString(in);
+			byte valueType = in.readByte();
+			switch (valueType) {
+			case VALUE_NULL:
+				map.put(key, null);
+				break;
+			case VALUE_LONG:
+				map.put(key, readZigZagLong(in));
+				break;
+			case VALUE_INTEGER:
+				map.put(key, (int) readZigZagLong(in));
+				break;
+			case VALUE_DOUBLE:
+				map.put(key, in.readDouble());
+				break;
+			case VALUE_STRING:
+				map.put(key, readString(in));
+				break;
+			default:
+				throw new CorruptedFrameException("unknown map value type : " + valueType);
+			}
+		}
+		return map;
+	}
+
+}
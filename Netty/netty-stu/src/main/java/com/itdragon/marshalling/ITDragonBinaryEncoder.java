@@ -0,0 +1,164 @@
+package com.itdragon.marshalling;
+
+import static com.itdragon.marshalling.ITDragonBinaryProtocol.*;
+
+import java.util.Map;
+
+import com.itdragon.monitoring.ITDragonHeartbeat;
+import com.itdragon.monitoring.ITDragonRequestInfo;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandler.Sharable;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.EncoderException;
+import io.netty.handler.codec.MessageToByteEncoder;
+
+/**
+ * 二进制编码器，把 ITDragonReqData、ITDragonRespData、ITDragonRequestInfo、ITDragonHeartbeat、ITDragonFileHeader 和 String 编码成一帧
+ * 其他类型的消息（如文件传输的 FileRegion）不处理，原样传给下一个处理器
+ * 帧格式见 ITDragonBinaryProtocol。先写4字节的长度占位，消息体写完后再回填长度，不需要提前计算消息大小。
+ * 没有状态，所有连接可以共用一个实例。
+ * @author itdragon
+ */
+@Sharable
+public class ITDragonBinaryEncoder extends MessageToByteEncoder<Object> {
+
+	@Override
+	public boolean acceptOutboundMessage(Object msg) throws Exception {
+		return msg instanceof String || msg instanceof ITDragonReqData || msg instanceof ITDragonRespData
+				|| msg instanceof ITDragonRequestInfo || msg instanceof ITDragonHeartbeat || msg instanceof ITDragonFileHeader;
+	}
+
+	@Override
+	protected void encode(ChannelHandlerContext ctx, Object msg, ByteBuf out) throws Exception {
+		int start = out.writerIndex();
+		out.writeInt(0); // 长度占位
+		out.writeByte(VERSION);
+		if (msg instanceof String) {
+			out.writeByte(TYPE_STRING);
+			writeString(out, (String) msg);
+		} else if (msg instanceof ITDragonReqData) {
+			out.writeByte(TYPE_REQ_DATA);
+			writeReqData(out, (ITDragonReqData) msg);
+		} else if (msg instanceof ITDragonRespData) {
+			out.writeByte(TYPE_RESP_DATA);
+			writeRespData(out, (ITDragonRespData) msg);
+		} else if (msg instanceof ITDragonRequestInfo) {
+			out.writeByte(TYPE_REQUEST_INFO);
+			writeRequestInfo(out, (ITDragonRequestInfo) msg);
+		} else if (msg instanceof ITDragonHeartbeat) {
+			out.writeByte(TYPE_HEARTBEAT);
+			writeHeartbeat(out, (ITDragonHeartbeat) msg);
+		} else {
+			out.writeByte(TYPE_FILE_HEADER);
+			writeFileHeader(out, (ITDragonFileHeader) msg);
+		}
+		out.setInt(start, out.writerIndex() - start - LENGTH_FIELD_LENGTH);
+		if (msg instanceof ITDragonRespData) {
+			((ITDragonRespData) msg).recycle(); 	// 已经写入 ByteBuf，放回对象池
+		}
+	}
+
+	static void writeReqData(ByteBuf out, ITDragonReqData data) {
+		out.writeByte(flags(data.getId(), data.getName(), data.getRequestMsg(), data.getAttachment()));
+		if (null != data.getId()) {
+			writeZigZagLong(out, data.getId());
+		}
+		if (null != data.getName()) {
+			writeString(out, data.getName());
+		}
+		if (null != data.getRequestMsg()) {
+			writeString(out, data.getRequestMsg());
+		}
+		if (null != data.getAttachment()) {
+			writeBytes(out, data.getAttachment());
+		}
+	}
+
+	static void writeRespData(ByteBuf out, ITDragonRespData data) {
+		out.writeByte(flags(data.getId(), data.getName(), data.getResponseMsg(), null));
+		if (null != data.getId()) {
+			writeZigZagLong(out, data.getId());
+		}
+		if (null != data.getName()) {
+			writeString(out, data.getName());
+		}
+		if (null != data.getResponseMsg()) {
+			writeString(out, data.getResponseMsg());
+		}
+	}
+
+	static void writeRequestInfo(ByteBuf out, ITDragonRequestInfo info) {
+		out.writeByte(flags(info.getIp(), info.getCpuPercMap(), info.getMemoryMap(), null));
+		if (null != info.getIp()) {
+			writeString(out, info.getIp());
+		}
+		if (null != info.getCpuPercMap()) {
+			writeMap(out, info.getCpuPercMap());
+		}
+		if (null != info.getMemoryMap()) {
+			writeMap(out, info.getMemoryMap());
+		}
+	}
+
+	// 除 ip 外都是固定的基本类型字段，比 ITDragonRequestInfo 少了所有的 key 和值类型
+	static void writeHeartbeat(ByteBuf out, ITDragonHeartbeat heartbeat) {
+		out.writeByte(flags(heartbeat.getIp(), null, null, null));
+		if (null != heartbeat.getIp()) {
+			writeString(out, heartbeat.getIp());
+		}
+		writeVarLong(out, heartbeat.getTime());
+		out.writeDouble(heartbeat.getCpuCombined());
+		out.writeDouble(heartbeat.getCpuUser());
+		out.writeDouble(heartbeat.getCpuSys());
+		out.writeDouble(heartbeat.getCpuWait());
+		out.writeDouble(heartbeat.getCpuIdle());
+		writeZigZagLong(out, heartbeat.getMemoryTotal());
+		writeZigZagLong(out, heartbeat.getMemoryUsed());
+		writeZigZagLong(out, heartbeat.getMemoryFree());
+	}
+
+	static void writeFileHeader(ByteBuf out, ITDragonFileHeader header) {
+		out.writeByte(flags(header.getId(), header.getFileName(), null, null));
+		if (null != header.getId()) {
+			writeZigZagLong(out, header.getId());
+		}
+		if (null != header.getFileName()) {
+			writeString(out, header.getFileName());
+		}
+		writeVarLong(out, header.getLength());
+		writeVarLong(out, header.getChecksum());
+	}
+
+	// 监控数据的值只有数字和字符串，其他类型抛出异常，避免悄悄丢数据
+	private static void writeMap(ByteBuf out, Map<String, Object> map) {
+		writeVarInt(out, map.size());
+		for (Map.Entry<String, Object> entry : map.entrySet()) {
+			writeString(out, entry.getKey());
+			Object value = entry.getValue();
+			if (null == value) {
+				out.writeByte(VALUE_NULL);
+			} else if (value instanceof Long) {
+				out.writeByte(VALUE_LONG);
+				writeZigZagLong(out, (Long) value);
+			} else if (value instanceof Integer) {
+				out.writeByte(VALUE_INTEGER);
+				writeZigZagLong(out, (Integer) value);
+			} else if (value instanceof Double) {
+				out.writeByte(VALUE_DOUBLE);
+				out.writeDouble((Double) value);
+			} else if (value instanceof String) {
+				out.writeByte(VALUE_STRING);
+				writeString(out, (String) value);
+			} else {
+				throw new EncoderException("unsupported map value type : " + value.getClass().getName());
+			}
+		}
+	}
+
+	// 非 null 字段的位图，第 i 个参数对应第 i 位
+	private static int flags(Object f0, Object f1, Object f2, Object f3) {
+		return (null != f0 ? 1 : 0) | (null != f1 ? 2 : 0) | (null != f2 ? 4 : 0) | (null != f3 ? 8 : 0);
+	}
+
+}
@@ -0,0 +1,151 @@
+package com.itdragon.marshalling;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.util.CharsetUtil;
+
+/**
+ * 二进制编解码的帧格式和基本类型的读写，ITDragonBinaryEncoder 和 ITDragonBinaryDecoder 共用
+ * 帧格式 : 长度(4字节，不含自身) + 版本号(1字节) + 消息类型(1字节) + 消息体
+ * varint : 每个字节低7位是数据，最高位为1表示后面还有字节，小于128的数只占1个字节
+ * 字符串 : varint 字节数 + UTF-8 内容，直接写入 ByteBuf，不经过 byte[]
+ * 可以为 null 的字段在消息体开头用一个字节的位图标记，位为1表示字段不为null
+ * @author itdragon
+ */
+public final class ITDragonBinaryProtocol {
+
+	public static final int LENGTH_FIELD_LENGTH = 4;
+	public static final byte VERSION = 1; 				// 修改消息格式时递增，解码器拒绝不认识的版本
+
+	public static final byte TYPE_STRING = 1;
+	public static final byte TYPE_REQ_DATA = 2;
+	public static final byte TYPE_RESP_DATA = 3;
+	public static final byte TYPE_REQUEST_INFO = 4;
+	public static final byte TYPE_FILE_HEADER = 5;
+	public static final byte TYPE_HEARTBEAT = 6;
+
+	// Map 中值的类型
+	public static final byte VALUE_NULL = 0;
+	public static final byte VALUE_LONG = 1;
+	public static final byte VALUE_DOUBLE = 2;
+	public static final byte VALUE_STRING = 3;
+	public static final byte VALUE_INTEGER = 4;
+
+	private ITDragonBinaryProtocol() {
+	}
+
+	public static void writeVarInt(ByteBuf out, int value) {
+		while ((value & ~0x7F) != 0) {
+			out.writeByte((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte(value);
+	}
+
+	public static int readVarInt(ByteBuf in) {
+		int value = 0;
+		for (int shift = 0; shift < 35; shift += 7) {
+			byte b = in.readByte();
+			value |= (b & 0x7F) << shift;
+			if (b >= 0) {
+				return value;
+			}
+		}
+		throw new CorruptedFrameException("malformed varint");
+	}
+
+	public static void writeVarLong(ByteBuf out, long value) {
+		while ((value & ~0x7FL) != 0) {
+			out.writeByte((int) (value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte((int) value);
+	}
+
+	public static long readVarLong(ByteBuf in) {
+		long value = 0;
+		for (int shift = 0; shift < 70; shift += 7) {
+			byte b = in.readByte();
+			value |= (long) (b & 0x7F) << shift;
+			if (b >= 0) {
+				return value;
+			}
+		}
+		throw new CorruptedFrameException("malformed varlong");
+	}
+
+	// 负数先做 zigzag 变换，绝对值小的负数也只占很少的字节
+	public static void writeZigZagLong(ByteBuf out, long value) {
+		writeVarLong(out, (value << 1) ^ (value >> 63));
+	}
+
+	public static long readZigZagLong(ByteBuf in) {
+		long value = readVarLong(in);
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	// 调用方保证 value 不为 null
+	public static void writeString(ByteBuf out, CharSequence value) {
+		int start = out.writerIndex();
+		int length = utf8Length(value);
+		writeVarInt(out, length);
+		if (ByteBufUtil.writeUtf8(out, value) != length) {
+			// 含有不成对代理字符等特殊情况，退回到先编码成 byte[]
+			out.writerIndex(start);
+			writeBytes(out, value.toString().getBytes(CharsetUtil.UTF_8));
+		}
+	}
+
+	public static String readString(ByteBuf in) {
+		int length = readVarInt(in);
+		checkLength(in, length);
+		String value = in.toString(in.readerIndex(), length, CharsetUtil.UTF_8);
+		in.skipBytes(length);
+		return value;
+	}
+
+	public static void writeBytes(ByteBuf out, byte[] value) {
+		writeVarInt(out, value.length);
+		out.writeBytes(value);
+	}
+
+	public static byte[] readBytes(ByteBuf in) {
+		int length = readVarInt(in);
+		checkLength(in, length);
+		byte[] value = new byte[length];
+		in.readBytes(value);
+		return value;
+	}
+
+	private static void checkLength(ByteBuf in, int length) {
+		if (length < 0 || length > in.readableBytes()) {
+			throw new CorruptedFrameException("length " + length + " exceeds readable bytes " + in.readableBytes());
+		}
+	}
+
+	// UTF-8 编码后的字节数，不成对的代理字符按一个 '?' 计算
+	static int utf8Length(CharSequence value) {
+		int length = value.length();
+		int bytes = 0;
+		for (int i = 0; i < length; i++) {
+			char c = value.charAt(i);
+			if (c < 0x80) {
+				bytes++;
+			} else if (c < 0x800) {
+				bytes += 2;
+			} else if (Character.isSurrogate(c)) {
+				if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+					bytes += 4;
+					i++;
+				} else {
+					bytes++;
+				}
+			} else {
+				bytes += 3;
+			}
+		}
+		return bytes;
+	}
+
+}
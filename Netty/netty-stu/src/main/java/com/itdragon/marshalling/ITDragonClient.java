@@ -1,25 +1,32 @@
 package com.itdragon.marshalling;
 
 import java.io.File;
-import java.io.FileInputStream;
+import java.io.IOException;
 import java.util.concurrent.TimeUnit;
 
+import com.itdragon.compression.ITDragonCompressionFactory;
+import com.itdragon.utils.ITDragonIdleHandler;
+import com.itdragon.utils.ITDragonTransport;
 import com.itdragon.utils.ITDragonUtil;
 
 import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelInboundHandlerAdapter;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelOption;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.DefaultFileRegion;
 import io.netty.channel.EventLoopGroup;
-import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioSocketChannel;
-import io.netty.handler.timeout.ReadTimeoutHandler;
 
 public class ITDragonClient {
 	
 	private static final Integer PORT = 8888;
 	private static final String HOST = "127.0.0.1";
+	private static final String READ_TIMEOUT = "readTimeout";
+	private static final ITDragonTransport TRANSPORT = ITDragonTransport.select(); // -Ditdragon.transport=auto|nio|epoll
 	private EventLoopGroup group = null;
 	private Bootstrap bootstrap = null;
 	private ChannelFuture future = null;
@@ -34,17 +41,16 @@ public class ITDragonClient {
 	}
 	
 	public ITDragonClient() {
-		group = new NioEventLoopGroup();
+		group = TRANSPORT.newEventLoopGroup();
 		bootstrap = new Bootstrap();
 		try {
-			bootstrap.group(group)
-			.channel(NioSocketChannel.class)
+			TRANSPORT.configure(bootstrap.group(group))
 			.handler(new ChannelInitializer<SocketChannel>() {
 				@Override
 				protected void initChannel(SocketChannel socketChannel) throws Exception {
-					socketChannel.pipeline().addLast(ITDragonMarshallerFactory.buildMarshallingDecoder()); // 配置编码器
-					socketChannel.pipeline().addLast(ITDragonMarshallerFactory.builMarshallingEncoder()); // 配置解码器
-					socketChannel.pipeline().addLast(new ReadTimeoutHandler(5));
+					ITDragonCompressionFactory.addCompression(socketChannel.pipeline(), true); // 压缩，连接建立时协商，-Ditdragon.compression=snappy,zlib|none
+					ITDragonMarshallerFactory.addCodec(socketChannel.pipeline()); // 配置编解码器，-Ditdragon.codec=marshalling|binary
+					socketChannel.pipeline().addLast(READ_TIMEOUT, ITDragonIdleHandler.readTimeout(5, TimeUnit.SECONDS)); // 共用的时间轮检测读超时
 					socketChannel.pipeline().addLast(new ITDragonClientHandler());
 				}
 			})
@@ -70,6 +76,32 @@ public class ITDragonClient {
 		return this.future;
 	}
 	
+	/**
+	 * 流式上传文件：先发送 ITDragonFileHeader，再用 FileRegion 发送文件内容
+	 * FileRegion 由操作系统的 sendfile 直接从页缓存发送到 socket（零拷贝），文件内容不会进入堆，几个G的文件也可以传。
+	 * 文件内容发送完之前不能在这个连接上发送其他消息，服务端收完后返回 ITDragonRespData。
+	 */
+	public ChannelFuture sendFile(Long id, File file) throws IOException {
+		ITDragonFileHeader header = new ITDragonFileHeader();
+		header.setId(id);
+		header.setFileName(file.getName());
+		header.setLength(file.length());
+		header.setChecksum(ITDragonUtil.crc32(file)); // 流式计算，不读入整个文件。大文件耗时较长，所以在获取连接之前计算
+		final Channel channel = getChannelFuture().channel();
+		// 上传期间客户端只写不读，暂时用一个空的处理器占住读超时处理器的位置，发送完再换回来
+		final ChannelPipeline pipeline = channel.pipeline();
+		pipeline.replace(READ_TIMEOUT, READ_TIMEOUT, new ChannelInboundHandlerAdapter());
+		channel.write(header);
+		return channel.writeAndFlush(new DefaultFileRegion(file, 0, file.length())).addListener(new ChannelFutureListener() {
+			@Override
+			public void operationComplete(ChannelFuture future) throws Exception {
+				if (channel.isActive()) {
+					pipeline.replace(READ_TIMEOUT, READ_TIMEOUT, ITDragonIdleHandler.readTimeout(5, TimeUnit.SECONDS));
+				}
+			}
+		});
+	}
+	
 	/**
 	 * 特殊长连接：
 	 * 1. 服务器和客户端的通道一直处于开启状态，
@@ -77,7 +109,7 @@ public class ITDragonClient {
 	 * 3. 客户端再次向服务端发送请求则重新建立连接，
 	 * 4. 从而减小服务端资源占用压力。
 	 */
-	public static void main(String[] args) {
+	public static void main(final String[] args) {
 		final ITDragonClient client = ITDragonClient.getInstance(); // 线程调用需要加final
 		try {
 			ChannelFuture future = client.getChannelFuture();
@@ -100,20 +132,9 @@ public class ITDragonClient {
 						ChannelFuture cf = client.getChannelFuture();
 						System.out.println("连接是否活跃  : " + cf.channel().isActive());
 						System.out.println("连接是否打开  : " + cf.channel().isOpen());
-						ITDragonReqData reqData = new ITDragonReqData();
-						reqData.setId(4L);
-						reqData.setName("ITDragon-picture");
-						reqData.setRequestMsg("断开的通道被唤醒了!!!!");
-						// 路径path自定义
-						String path = System.getProperty("user.dir") + File.separatorChar + "sources" +  File.separatorChar + "itdragon.jpg";  
-			            File file = new File(path);  
-			            FileInputStream inputStream = new FileInputStream(file);  
-			            byte[] data = new byte[inputStream.available()];  
-			            inputStream.read(data);  
-			            inputStream.close();  
-			            reqData.setAttachment(ITDragonUtil.gzip(data));
-						cf.channel().writeAndFlush(reqData);					
-						cf.channel().closeFuture().sync();
+						// 路径path自定义，也可以通过启动参数指定要上传的文件
+						String path = args.length > 0 ? args[0] : System.getProperty("user.dir") + File.separatorChar + "sources" +  File.separatorChar + "itdragon.jpg";  
+						client.sendFile(4L, new File(path)).channel().closeFuture().sync();
 					} catch (Exception e) {
 						e.printStackTrace();
 					}
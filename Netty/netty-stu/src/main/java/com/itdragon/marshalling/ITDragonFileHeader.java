@@ -0,0 +1,46 @@
+package com.itdragon.marshalling;
+
+import java.io.Serializable;
+
+/**
+ * 文件传输的头消息，客户端先发送这个消息，紧接着发送 length 个字节的文件原始内容（不经过编码器）
+ * 服务端收到头消息后切换到文件接收模式，收满 length 个字节后再切换回消息模式，用 checksum 校验文件是否完整
+ */
+public class ITDragonFileHeader implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+	private Long id;
+	private String fileName;
+	private long length; 		// 文件字节数
+	private long checksum; 		// 文件内容的 CRC32
+
+	public Long getId() {
+		return id;
+	}
+	public void setId(Long id) {
+		this.id = id;
+	}
+	public String getFileName() {
+		return fileName;
+	}
+	public void setFileName(String fileName) {
+		this.fileName = fileName;
+	}
+	public long getLength() {
+		return length;
+	}
+	public void setLength(long length) {
+		this.length = length;
+	}
+	public long getChecksum() {
+		return checksum;
+	}
+	public void setChecksum(long checksum) {
+		this.checksum = checksum;
+	}
+	@Override
+	public String toString() {
+		return "ITDragonFileHeader [id=" + id + ", fileName=" + fileName + ", length=" + length + ", checksum=" + checksum + "]";
+	}
+
+}
@@ -0,0 +1,156 @@
+package com.itdragon.marshalling;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandler.Sharable;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelPipeline;
+
+/**
+ * 文件接收处理器，收到 ITDragonFileHeader 后由 HEADER_HANDLER 临时替换掉拆包解码器
+ * 第一步 : install() 把本处理器加到拆包解码器的位置上，移除拆包解码器，解码器中剩余的字节会转交给本处理器
+ * 第二步 : 收到的 ByteBuf 直接写入 receive 目录下的 FileChannel，同时计算 CRC32，堆上从不保存整个文件
+ * 第三步 : 收满 length 个字节后关闭文件、校验 CRC32 并应答，换回新的拆包解码器，多出来的字节交给它继续解码
+ * 注意：写文件在 EventLoop 线程中进行，同一个 EventLoop 上的其他连接会受影响，大量上传时应使用单独的 EventLoopGroup
+ */
+public class ITDragonFileReceiver extends ChannelInboundHandlerAdapter {
+
+	private static final String NAME = "fileReceiver";
+
+	/**
+	 * 放在解码器之后、业务处理器之前，收到 ITDragonFileHeader 时切换到文件接收模式，其他消息往后传。
+	 * 必须在 EventLoop 线程中执行：业务处理器在单独的线程池中运行时，替换拆包解码器之前读到的字节会被当成普通消息解码。
+	 */
+	public static final ChannelHandler HEADER_HANDLER = new HeaderHandler();
+
+	private final ITDragonFileHeader header;
+	private final CRC32 crc = new CRC32();
+	private Path path;
+	private FileChannel fileChannel;
+	private long remaining; 	// 还没有收到的字节数
+
+	private ITDragonFileReceiver(ITDragonFileHeader header) {
+		this.header = header;
+		this.remaining = header.getLength();
+	}
+
+	/**
+	 * 在 pipeline 中用文件接收处理器替换拆包解码器，之后收到的 length 个字节都是文件内容
+	 */
+	public static void install(ChannelPipeline pipeline, ITDragonFileHeader header) {
+		ITDragonFileReceiver receiver = new ITDragonFileReceiver(header);
+		pipeline.addAfter(ITDragonMarshallerFactory.FRAME_DECODER, NAME, receiver);
+		pipeline.remove(ITDragonMarshallerFactory.FRAME_DECODER);
+		if (0 == receiver.remaining && null != receiver.fileChannel) {
+			try {
+				receiver.complete(pipeline.context(receiver), null); // 空文件
+			} catch (IOException e) {
+				pipeline.fireExceptionCaught(e);
+			}
+		}
+	}
+
+	@Override
+	public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+		File dir = new File(System.getProperty("user.dir"), "receive");
+		dir.mkdirs();
+		// 只取文件名部分，防止客户端通过 ../ 写到 receive 目录以外
+		String fileName = new File(String.valueOf(header.getFileName())).getName();
+		path = new File(dir, System.currentTimeMillis() + "-" + fileName).toPath();
+		fileChannel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+	}
+
+	@Override
+	public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+		ByteBuf buf = (ByteBuf) msg;
+		try {
+			int length = (int) Math.min(remaining, buf.readableBytes());
+			// 直接把 ByteBuf 底层的 ByteBuffer 写入文件，直接缓冲区不需要拷贝到堆上
+			for (ByteBuffer buffer : buf.nioBuffers(buf.readerIndex(), length)) {
+				crc.update(buffer.duplicate());
+				while (buffer.hasRemaining()) {
+					fileChannel.write(buffer);
+				}
+			}
+			buf.skipBytes(length);
+			remaining -= length;
+			if (0 == remaining) {
+				complete(ctx, buf.isReadable() ? buf.retain() : null);
+			}
+		} finally {
+			buf.release();
+		}
+	}
+
+	// 文件收完，应答客户端并换回拆包解码器，leftover 是文件之后的下一条消息的开头
+	private void complete(ChannelHandlerContext ctx, ByteBuf leftover) throws IOException {
+		closeFile();
+		boolean ok = crc.getValue() == header.getChecksum();
+		ITDragonRespData responseData = ITDragonRespData.newInstance(); // 编码器写完后放回对象池
+		responseData.setId(header.getId());
+		responseData.setName(header.getFileName() + (ok ? "-SUCCESS!" : "-FAILURE!"));
+		responseData.setResponseMsg(ok ? "file upload success , file path is : " + path
+				: "checksum mismatch , expected " + header.getChecksum() + " but was " + crc.getValue());
+		if (!ok) {
+			Files.deleteIfExists(path);
+		}
+		ctx.channel().writeAndFlush(responseData); // 从 pipeline 尾部写出，经过编码器
+		ctx.pipeline().addAfter(NAME, ITDragonMarshallerFactory.FRAME_DECODER, ITDragonMarshallerFactory.buildFrameDecoder());
+		// 先移除自己再转交剩余字节：leftover 里可能紧跟着下一个文件头，install() 要用到 NAME 这个名字
+		// 移除后 ctx 仍然指向新的拆包解码器，和 ByteToMessageDecoder.handlerRemoved 转交剩余字节的方式一样
+		ctx.pipeline().remove(this);
+		if (null != leftover) {
+			ctx.fireChannelRead(leftover);
+		}
+	}
+
+	@Override
+	public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+		// 传输中断，删除不完整的文件
+		if (closeFile() && remaining > 0) {
+			Files.deleteIfExists(path);
+		}
+		ctx.fireChannelInactive();
+	}
+
+	@Override
+	public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
+		cause.printStackTrace();
+		ctx.close();
+	}
+
+	private boolean closeFile() throws IOException {
+		if (null == fileChannel) {
+			return false;
+		}
+		fileChannel.close();
+		fileChannel = null;
+		return true;
+	}
+
+	@Sharable
+	private static final class HeaderHandler extends ChannelInboundHandlerAdapter {
+
+		@Override
+		public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+			if (msg instanceof ITDragonFileHeader) {
+				// 文件传输：切换到文件接收模式，后面的字节流直接写入文件
+				System.out.println("Netty Server : " + msg.toString());
+				install(ctx.pipeline(), (ITDragonFileHeader) msg);
+				return;
+			}
+			ctx.fireChannelRead(msg);
+		}
+	}
+
+}
@@ -1,5 +1,11 @@
 package com.itdragon.marshalling;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.FileRegion;
+import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
 import io.netty.handler.codec.marshalling.DefaultMarshallerProvider;
 import io.netty.handler.codec.marshalling.DefaultUnmarshallerProvider;
 import io.netty.handler.codec.marshalling.MarshallerProvider;
@@ -10,8 +16,18 @@ import org.jboss.marshalling.MarshallerFactory;
 import org.jboss.marshalling.Marshalling;  
 import org.jboss.marshalling.MarshallingConfiguration; 
 
+/**
+ * 编解码器工厂
+ * 启动参数 -Ditdragon.codec=marshalling|binary 选择编解码方式，服务端和客户端要保持一致，默认 marshalling
+ * marshalling : JBoss Marshalling 的 serial，即Java序列化，通用但是慢，而且序列化结果带有类描述信息，体积大
+ * binary      : 手写的二进制编解码（ITDragonBinaryEncoder/ITDragonBinaryDecoder），只支持本项目的消息类型
+ */
 public final class ITDragonMarshallerFactory {
+    public static final String FRAME_DECODER = "frameDecoder"; // 拆包解码器在 pipeline 中的名字，文件传输时会被临时替换
 	private static final String NAME = "serial"; // serial表示创建的是 Java序列化工厂对象.由jboss-marshalling-serial提供 
+    private static final boolean BINARY = "binary".equalsIgnoreCase(System.getProperty("itdragon.codec", "marshalling"));
+    private static final ITDragonBinaryEncoder BINARY_ENCODER = new ITDragonBinaryEncoder(); // 无状态，所有连接共用
+    private static final ITDragonBinaryDecoder BINARY_DECODER = new ITDragonBinaryDecoder();
     private static final Integer VERSION = 5;  
     private static final Integer MAX_OBJECT_SIZE = 1024 * 1024 * 1; // 单个对象最大长度 
       
@@ -42,7 +58,57 @@ public final class ITDragonMarshallerFactory {
         final MarshallingConfiguration configuration = new MarshallingConfiguration();  
         configuration.setVersion(VERSION);  
         MarshallerProvider provider = new DefaultMarshallerProvider(marshallerFactory, configuration);  
-        MarshallingEncoder encoder = new MarshallingEncoder(provider);  
+        MarshallingEncoder encoder = new MarshallingEncoder(provider) {  
+            // 文件内容（FileRegion、ByteBuf）不序列化，原样写出  
+            @Override  
+            public boolean acceptOutboundMessage(Object msg) throws Exception {  
+                return !(msg instanceof FileRegion) && !(msg instanceof ByteBuf);  
+            }  
+            // 应答序列化后放回对象池  
+            @Override  
+            protected void encode(ChannelHandlerContext ctx, Object msg, ByteBuf out) throws Exception {  
+                super.encode(ctx, msg, out);  
+                if (msg instanceof ITDragonRespData) {  
+                    ((ITDragonRespData) msg).recycle();  
+                }  
+            }  
+        };  
         return encoder;  
     }  
+      
+    /** 
+     * 按照 -Ditdragon.codec 在 pipeline 末尾添加解码器和编码器 
+     */  
+    public static void addCodec(ChannelPipeline pipeline) {  
+        pipeline.addLast(FRAME_DECODER, buildFrameDecoder());  
+        if (BINARY) {  
+            pipeline.addLast(BINARY_DECODER);  
+            pipeline.addLast(BINARY_ENCODER);  
+        } else {  
+            pipeline.addLast(builMarshallingEncoder());  
+        }  
+    }  
+      
+    /** 
+     * 按照 -Ditdragon.codec 创建拆包解码器：marshalling 的解码器本身就是拆包器，binary 是长度字段拆包器 
+     */  
+    public static ChannelHandler buildFrameDecoder() {  
+        return BINARY ? buildBinaryFrameDecoder() : buildMarshallingDecoder();  
+    }  
+      
+    /** 
+     * 二进制编解码的拆包器，按4字节长度字段拆包后去掉长度字段，每个连接一个实例 
+     */  
+    public static LengthFieldBasedFrameDecoder buildBinaryFrameDecoder() {  
+        return new LengthFieldBasedFrameDecoder(MAX_OBJECT_SIZE, 0, ITDragonBinaryProtocol.LENGTH_FIELD_LENGTH, 0,  
+                ITDragonBinaryProtocol.LENGTH_FIELD_LENGTH);  
+    }  
+      
+    public static ITDragonBinaryDecoder buildBinaryDecoder() {  
+        return BINARY_DECODER;  
+    }  
+      
+    public static ITDragonBinaryEncoder buildBinaryEncoder() {  
+        return BINARY_ENCODER;  
+    }  
 }
@@ -1,16 +1,52 @@
 package com.itdragon.marshalling;
 
 import java.io.Serializable;
-import java.util.Arrays;
+
+import io.netty.util.Recycler;
 
 public class ITDragonReqData implements Serializable {  
   
 	private static final long serialVersionUID = 1L;
+	private static final Recycler<ITDragonReqData> RECYCLER = new Recycler<ITDragonReqData>() {
+		@Override
+		protected ITDragonReqData newObject(Handle<ITDragonReqData> handle) {
+			return new ITDragonReqData(handle);
+		}
+	};
+	private final transient Recycler.Handle<ITDragonReqData> handle; 	// 不序列化，反序列化得到的对象为 null
 	private Long id;  
     private String name;  
     private String requestMsg;  
     private byte[] attachment;
   
+    public ITDragonReqData() {
+    	this(null);
+    }
+
+    private ITDragonReqData(Recycler.Handle<ITDragonReqData> handle) {
+    	this.handle = handle;
+    }
+
+    /**
+     * 从当前线程的对象池中取一个空的请求，二进制解码器使用，服务端处理完后调用 recycle()
+     */
+    public static ITDragonReqData newInstance() {
+    	return RECYCLER.get();
+    }
+
+    /**
+     * 放回对象池，new 出来的对象什么也不做。附件也一起释放，对象池中不保留大数组
+     */
+    public void recycle() {
+    	if (null != handle) {
+    		id = null;
+    		name = null;
+    		requestMsg = null;
+    		attachment = null;
+    		handle.recycle(this);
+    	}
+    }
+
     public Long getId() {  
         return id;  
     }  
@@ -37,8 +73,9 @@ public class ITDragonReqData implements Serializable {
     }
 	@Override
 	public String toString() {
+		// 附件只打印长度，不把整个字节数组转成字符串
 		return "ITDragonReqData [id=" + id + ", name=" + name + ", requestMsg=" + requestMsg + ", attachment="
-				+ Arrays.toString(attachment) + "]";
+				+ (null == attachment ? "null" : attachment.length + " bytes") + "]";
 	}  
   
 }  
\ No newline at end of file
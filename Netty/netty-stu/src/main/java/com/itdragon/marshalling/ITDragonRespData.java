@@ -2,13 +2,50 @@ package com.itdragon.marshalling;
 
 import java.io.Serializable;
 
+import io.netty.util.Recycler;
+
+/**
+ * 服务端应答。热点路径上用 newInstance() 从 Recycler 中取，编码器写完后调用 recycle() 放回，不为每个请求创建新对象。
+ * new 出来的对象 recycle() 什么也不做，可以重复发送，由GC回收。
+ */
 public class ITDragonRespData implements Serializable {  
   
 	private static final long serialVersionUID = 1L;
+	private static final Recycler<ITDragonRespData> RECYCLER = new Recycler<ITDragonRespData>() {
+		@Override
+		protected ITDragonRespData newObject(Handle<ITDragonRespData> handle) {
+			return new ITDragonRespData(handle);
+		}
+	};
+	private final transient Recycler.Handle<ITDragonRespData> handle; 	// 不序列化，反序列化得到的对象为 null
 	private Long id;  
     private String name;  
     private String responseMsg;  
   
+    public ITDragonRespData() {
+    	this(null);
+    }
+
+    private ITDragonRespData(Recycler.Handle<ITDragonRespData> handle) {
+    	this.handle = handle;
+    }
+
+    /**
+     * 从当前线程的对象池中取一个空的应答，用完后必须调用 recycle()，之后不能再使用
+     */
+    public static ITDragonRespData newInstance() {
+    	return RECYCLER.get();
+    }
+
+    public void recycle() {
+    	if (null != handle) {
+    		id = null;
+    		name = null;
+    		responseMsg = null;
+    		handle.recycle(this);
+    	}
+    }
+
     public Long getId() {  
         return id;  
     }  
@@ -1,16 +1,24 @@
 package com.itdragon.marshalling;
 
+import java.util.concurrent.TimeUnit;
+
 import io.netty.bootstrap.ServerBootstrap;
-import io.netty.channel.ChannelFuture;
+import io.netty.channel.Channel;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.EventLoopGroup;
-import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
 import io.netty.handler.logging.LogLevel;
 import io.netty.handler.logging.LoggingHandler;
-import io.netty.handler.timeout.ReadTimeoutHandler; 
+import io.netty.util.concurrent.EventExecutorGroup;
+
+import com.itdragon.compression.ITDragonCompressionFactory;
+import com.itdragon.instrument.ITDragonInstrumentHandler;
+import com.itdragon.instrument.ITDragonServerMetrics;
+import com.itdragon.utils.ITDragonBusinessExecutor;
+import com.itdragon.utils.ITDragonFlushConsolidation;
+import com.itdragon.utils.ITDragonIdleHandler;
+import com.itdragon.utils.ITDragonTransport; 
 
 /**
  * @author itdragon
@@ -18,31 +26,43 @@ import io.netty.handler.timeout.ReadTimeoutHandler;
 public class ITDragonServer {
 
 	private static final Integer PORT = 8888;
+	private static final ITDragonTransport TRANSPORT = ITDragonTransport.select(); // -Ditdragon.transport=auto|nio|epoll
 
 	public static void main(String[] args) {
-		EventLoopGroup bossGroup = new NioEventLoopGroup();
-		EventLoopGroup workerGroup = new NioEventLoopGroup();
+		EventLoopGroup bossGroup = TRANSPORT.newBossGroup();
+		EventLoopGroup workerGroup = TRANSPORT.newEventLoopGroup();
+		final EventExecutorGroup businessGroup = ITDragonBusinessExecutor.newGroup(); 	// 保存附件是阻塞的文件写入，不放在 EventLoop 中，-Ditdragon.business.threads
+		final ITDragonServerMetrics metrics = new ITDragonServerMetrics("marshalling"); 	// 所有连接共用的统计，-Ditdragon.metrics.interval=秒数
+		metrics.monitor(workerGroup);
+		metrics.report(workerGroup, ITDragonServerMetrics.INTERVAL_SECONDS);
 		try {
 			ServerBootstrap bootstrap = new ServerBootstrap();
-			bootstrap.group(bossGroup, workerGroup).channel(NioServerSocketChannel.class)
+			TRANSPORT.configure(bootstrap.group(bossGroup, workerGroup))
 				.handler(new LoggingHandler(LogLevel.INFO)) 	// 设置打印日志级别
 				.childHandler(new ChannelInitializer<SocketChannel>() {
 					@Override
 					protected void initChannel(SocketChannel socketChannel) throws Exception {
-						socketChannel.pipeline().addLast(ITDragonMarshallerFactory.buildMarshallingDecoder()); 	// 配置解码器
-						socketChannel.pipeline().addLast(ITDragonMarshallerFactory.builMarshallingEncoder()); 	// 配置编码器
-						socketChannel.pipeline().addLast(new ReadTimeoutHandler(5)); // 传入的参数单位是秒，表示5秒内没有连接后断开
-						socketChannel.pipeline().addLast(new ITDragonServerHandler());
+						socketChannel.pipeline().addLast(ITDragonInstrumentHandler.NAME, new ITDragonInstrumentHandler(metrics)); // 统计放在最前面，看到的是网络层的读写
+						ITDragonFlushConsolidation.add(socketChannel.pipeline(), businessGroup); // 合并 flush，应答从业务线程池回来时也合并，-Ditdragon.flush.consolidate=true|false
+						// 5秒内没有读到数据后断开，由共用的时间轮检测。放在解码器之前，文件传输时解码器被替换也能看到读事件
+						socketChannel.pipeline().addLast(ITDragonIdleHandler.readTimeout(5, TimeUnit.SECONDS));
+						ITDragonCompressionFactory.addCompression(socketChannel.pipeline(), false); // 压缩，连接建立时协商，-Ditdragon.compression=snappy,zlib|none
+						ITDragonMarshallerFactory.addCodec(socketChannel.pipeline()); 	// 配置编解码器，-Ditdragon.codec=marshalling|binary
+						socketChannel.pipeline().addLast(ITDragonFileReceiver.HEADER_HANDLER); 	// 文件头在 EventLoop 中处理，立即替换拆包解码器
+						ITDragonBusinessExecutor.addLast(socketChannel.pipeline(), businessGroup, "handler", new ITDragonServerHandler());
 					}
 				})
 				.option(ChannelOption.SO_BACKLOG, 1024)
 				.childOption(ChannelOption.SO_KEEPALIVE, true);
 
-			ChannelFuture future = bootstrap.bind(PORT).sync();
-			future.channel().closeFuture().sync();
+			Channel[] channels = TRANSPORT.bind(bootstrap, PORT);
+			for (Channel channel : channels) {
+				channel.closeFuture().sync();
+			}
 		} catch (Exception e) {
 			e.printStackTrace();
 		} finally {
+			ITDragonBusinessExecutor.shutdown(businessGroup);
 			workerGroup.shutdownGracefully();
 			bossGroup.shutdownGracefully();
 		}
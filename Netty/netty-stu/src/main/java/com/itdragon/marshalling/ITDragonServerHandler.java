@@ -3,14 +3,22 @@ package com.itdragon.marshalling;
 import java.io.File;
 import java.io.FileOutputStream;
 
-import com.itdragon.utils.ITDragonUtil;
+import com.itdragon.utils.ITDragonAsyncLogger;
 
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
 import io.netty.util.ReferenceCountUtil;  
 
+/**
+ * 请求和应答对象都从 Recycler 对象池中取（二进制解码器产生的请求、newInstance() 创建的应答），
+ * 请求在处理完后放回，应答由编码器写完后放回，压测时每个请求不再创建新的消息对象。
+ * 日志交给 ITDragonAsyncLogger 异步打印，-Ditdragon.netty.quiet=true 时不拼接字符串。
+ * 请求放回对象池后字段会被清空，日志字符串必须在放回之前拼好，不能把 requestData 本身交给异步日志。
+ */
 public class ITDragonServerHandler extends ChannelInboundHandlerAdapter {
 
+	private static final boolean QUIET = Boolean.getBoolean("itdragon.netty.quiet"); // 压测时关闭控制台打印
+
 	@Override
 	public void channelActive(ChannelHandlerContext ctx) throws Exception {
 		System.out.println("Netty Server active ......");
@@ -21,15 +29,18 @@ public class ITDragonServerHandler extends ChannelInboundHandlerAdapter {
 		try {
 			// 获取客户端传来的数据
 			ITDragonReqData requestData = (ITDragonReqData) msg;
-			System.out.println("Netty Server : " + requestData.toString());
-			// 处理数据并返回给客户端
-			ITDragonRespData responseData = new ITDragonRespData();
+			if (!QUIET) {
+				ITDragonAsyncLogger.log("Netty Server : " + requestData);
+			}
+			// 处理数据并返回给客户端，应答由编码器写完后放回对象池
+			ITDragonRespData responseData = ITDragonRespData.newInstance();
 			responseData.setId(requestData.getId());
 			responseData.setName(requestData.getName() + "-SUCCESS!");
 			responseData.setResponseMsg(requestData.getRequestMsg() + "-SUCCESS!");
-			// 如果有附件则保存附件
+			// 如果有附件则保存附件，附件整个在内存中，只适合小文件，大文件使用 ITDragonClient.sendFile
+			// 附件不再单独 gzip，传输时的压缩由 pipeline 中的压缩处理器完成
 			if (null != requestData.getAttachment()) {
-				byte[] attachment = ITDragonUtil.ungzip(requestData.getAttachment());
+				byte[] attachment = requestData.getAttachment();
 				String path = System.getProperty("user.dir") + File.separatorChar + "receive" + 
 						File.separatorChar + System.currentTimeMillis() + ".jpg";
 				FileOutputStream outputStream = new FileOutputStream(path);
@@ -41,6 +52,9 @@ public class ITDragonServerHandler extends ChannelInboundHandlerAdapter {
 		} catch (Exception e) {
 			e.printStackTrace();
 		} finally {
+			if (msg instanceof ITDragonReqData) {
+				((ITDragonReqData) msg).recycle(); // 二进制解码器从对象池中取的请求，marshalling 反序列化的请求什么也不做
+			}
 			ReferenceCountUtil.release(msg);
 		}
 	}
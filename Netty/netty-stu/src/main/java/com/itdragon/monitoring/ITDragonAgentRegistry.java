@@ -0,0 +1,192 @@
+package com.itdragon.monitoring;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.util.AttributeKey;
+
+/**
+ * 监控客户端（agent）注册表，替代原来静态的 authMap
+ * 第一步 : 密钥表和在线表都是 ConcurrentHashMap，令牌验证只做一次 get，没有全局锁
+ * 第二步 : 验证通过后 Agent 挂在 Channel 的属性上，心跳直接从属性取出，不再查表
+ * 第三步 : 同一个 ip 重复连接时关闭旧连接；连接关闭时自动注销
+ * 第四步 : 死连接由 pipeline 中的 ITDragonIdleHandler 检测，连续 N 次收不到心跳就关闭连接，关闭后自动注销
+ * 注销时通知时序存储 release()，下线主机的位置可以给新主机复用
+ * @author itdragon
+ */
+public final class ITDragonAgentRegistry {
+
+	private static final AttributeKey<Agent> AGENT = AttributeKey.valueOf("itdragon.agent");
+
+	private final ConcurrentHashMap<String, String> credentials = new ConcurrentHashMap<String, String>(); 	// key为ip地址，value为密钥
+	private final ConcurrentHashMap<String, Agent> agents = new ConcurrentHashMap<String, Agent>(); 		// 在线的agent，key为ip地址
+	private final AtomicInteger rejected = new AtomicInteger();
+	private final AtomicInteger evicted = new AtomicInteger();
+	private final ITDragonMetricsStore store; 	// 可以为 null
+
+	public ITDragonAgentRegistry() {
+		this(null);
+	}
+
+	public ITDragonAgentRegistry(ITDragonMetricsStore store) {
+		this.store = store;
+	}
+
+	public void addCredential(String ip, String saltKey) {
+		credentials.put(ip, saltKey);
+	}
+
+	/**
+	 * 令牌验证，通过后把 channel 登记为这个 ip 的 agent
+	 */
+	public boolean authenticate(Channel channel, String ip, String saltKey) {
+		String expected = credentials.get(ip);
+		if (null == expected || !expected.equals(saltKey)) {
+			rejected.incrementAndGet();
+			return false;
+		}
+		final Agent agent = new Agent(ip, channel, System.currentTimeMillis());
+		channel.attr(AGENT).set(agent);
+		Agent old = agents.put(ip, agent);
+		if (null != old && old.channel != channel) {
+			old.channel.close(); 	// 同一个 ip 重新连接，旧连接作废
+		}
+		channel.closeFuture().addListener(new ChannelFutureListener() {
+			@Override
+			public void operationComplete(ChannelFuture future) throws Exception {
+				// 同一个 ip 已经重新连接时 remove 失败，主机仍然在线
+				if (agents.remove(agent.ip, agent) && null != store) {
+					store.release(agent.ip);
+				}
+			}
+		});
+		return true;
+	}
+
+	/**
+	 * 记录心跳，channel 没有通过验证时返回 null
+	 */
+	public Agent heartbeat(Channel channel) {
+		Agent agent = channel.attr(AGENT).get();
+		if (null != agent) {
+			agent.lastHeartbeat = System.currentTimeMillis();
+			agent.heartbeats++;
+		}
+		return agent;
+	}
+
+	/**
+	 * 连续 N 次收不到心跳，关闭连接
+	 */
+	public void evict(Channel channel) {
+		evicted.incrementAndGet();
+		channel.close();
+	}
+
+	public Agent get(String ip) {
+		return agents.get(ip);
+	}
+
+	/**
+	 * 当前状态的快照，silentMillis 内没有心跳的 agent 计为 silent
+	 */
+	public Snapshot snapshot(long silentMillis) {
+		long now = System.currentTimeMillis();
+		List<Agent> live = new ArrayList<Agent>(agents.values());
+		int silent = 0;
+		for (Agent agent : live) {
+			if (now - agent.lastHeartbeat > silentMillis) {
+				silent++;
+			}
+		}
+		return new Snapshot(live, silent, rejected.get(), evicted.get());
+	}
+
+	/**
+	 * 一个在线的 agent，心跳字段只在 channel 所在的 EventLoop 中写
+	 */
+	public static final class Agent {
+		private final String ip;
+		private final Channel channel;
+		private final long connectedAt;
+		private volatile long lastHeartbeat;
+		private volatile long heartbeats;
+
+		Agent(String ip, Channel channel, long connectedAt) {
+			this.ip = ip;
+			this.channel = channel;
+			this.connectedAt = connectedAt;
+			this.lastHeartbeat = connectedAt;
+		}
+
+		public String getIp() {
+			return ip;
+		}
+
+		public Channel getChannel() {
+			return channel;
+		}
+
+		public long getConnectedAt() {
+			return connectedAt;
+		}
+
+		public long getLastHeartbeat() {
+			return lastHeartbeat;
+		}
+
+		public long getHeartbeats() {
+			return heartbeats;
+		}
+
+		@Override
+		public String toString() {
+			return "Agent [ip=" + ip + ", channel=" + channel + ", heartbeats=" + heartbeats + "]";
+		}
+	}
+
+	public static final class Snapshot {
+		private final List<Agent> agents;
+		private final int silent;
+		private final int rejected;
+		private final int evicted;
+
+		Snapshot(List<Agent> agents, int silent, int rejected, int evicted) {
+			this.agents = agents;
+			this.silent = silent;
+			this.rejected = rejected;
+			this.evicted = evicted;
+		}
+
+		public List<Agent> getAgents() {
+			return agents;
+		}
+
+		public int getLive() {
+			return agents.size();
+		}
+
+		public int getSilent() {
+			return silent;
+		}
+
+		public int getRejected() {
+			return rejected;
+		}
+
+		public int getEvicted() {
+			return evicted;
+		}
+
+		@Override
+		public String toString() {
+			return "在线 " + agents.size() + " 台，其中 " + silent + " 台错过心跳，累计验证失败 " + rejected + " 次，累计踢出 " + evicted + " 台";
+		}
+	}
+
+}
@@ -1,28 +1,30 @@
 package com.itdragon.monitoring;
 
+import com.itdragon.compression.ITDragonCompressionFactory;
 import com.itdragon.marshalling.ITDragonMarshallerFactory;
+import com.itdragon.utils.ITDragonTransport;
 
 import io.netty.bootstrap.Bootstrap;  
 import io.netty.channel.ChannelFuture;  
 import io.netty.channel.ChannelInitializer;  
 import io.netty.channel.ChannelOption;  
-import io.netty.channel.nio.NioEventLoopGroup;  
+import io.netty.channel.EventLoopGroup;  
 import io.netty.channel.socket.SocketChannel;  
-import io.netty.channel.socket.nio.NioSocketChannel;  
   
 public class ITDragonClient {  
       
+    private static final ITDragonTransport TRANSPORT = ITDragonTransport.select(); // -Ditdragon.transport=auto|nio|epoll
+      
     public static void main(String[] args) {  
-        NioEventLoopGroup workerGroup = new NioEventLoopGroup();  
+        EventLoopGroup workerGroup = TRANSPORT.newEventLoopGroup();  
         try {  
             Bootstrap bootstrap = new Bootstrap();  
-            bootstrap.group(workerGroup)  
-            .channel(NioSocketChannel.class)  
+            TRANSPORT.configure(bootstrap.group(workerGroup))  
             .handler(new ChannelInitializer<SocketChannel>() {  
                 @Override  
                 protected void initChannel(SocketChannel socketChannel) throws Exception {  
-                    socketChannel.pipeline().addLast(ITDragonMarshallerFactory.buildMarshallingDecoder());  
-                    socketChannel.pipeline().addLast(ITDragonMarshallerFactory.builMarshallingEncoder());   
+                    ITDragonCompressionFactory.addCompression(socketChannel.pipeline(), true); // 压缩，连接建立时协商，-Ditdragon.compression=snappy,zlib|none
+                    ITDragonMarshallerFactory.addCodec(socketChannel.pipeline()); // -Ditdragon.codec=marshalling|binary
                     socketChannel.pipeline().addLast(new ITDragonClientHandler());  
                 }  
             })  
@@ -1,15 +1,6 @@
 package com.itdragon.monitoring;
 
 import java.net.InetAddress;
-import java.util.HashMap;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.TimeUnit;
-
-import org.hyperic.sigar.CpuPerc;
-import org.hyperic.sigar.Mem;
-import org.hyperic.sigar.Sigar;
 
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
@@ -18,9 +9,6 @@ import io.netty.util.ReferenceCountUtil;
   
 public class ITDragonClientHandler extends ChannelInboundHandlerAdapter{  
       
-    private ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1);  
-      
-    private ScheduledFuture<?> heartBeat;  
     //主动向服务器发送认证信息  
     private InetAddress addr ;  
       
@@ -42,8 +30,8 @@ public class ITDragonClientHandler extends ChannelInboundHandlerAdapter{
             if(msg instanceof String){  
                 String result = (String) msg;  
                 if(ITDragonCoreParam.AUTH_SUCCESS.getValue().equals(result)){  
-                    // 验证成功，每隔10秒，主动发送心跳消息  
-                    this.heartBeat = this.scheduler.scheduleWithFixedDelay(new HeartBeatTask(ctx), 0, 10, TimeUnit.SECONDS);  
+                    // 验证成功，交给进程内共用的采样器，每隔10秒主动发送心跳消息，连接关闭时自动停止  
+                    ITDragonSystemSampler.getInstance().register(ctx.channel());  
                     System.out.println(msg);                  
                 }  
                 else {  
@@ -57,50 +45,8 @@ public class ITDragonClientHandler extends ChannelInboundHandlerAdapter{
       
     public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {  
         cause.printStackTrace();  
-        if (heartBeat != null) {  
-            heartBeat.cancel(true);  
-            heartBeat = null;  
-        }  
         ctx.fireExceptionCaught(cause);  
     }  
   
   
-}  
-class HeartBeatTask implements Runnable {  
-	
-	private final ChannelHandlerContext ctx;  
-	
-	public HeartBeatTask(final ChannelHandlerContext ctx) {  
-		this.ctx = ctx;  
-	}  
-	
-	public void run() {  
-		try {  
-			// 采用sigar 获取本机数据，放入实体类中  
-			ITDragonRequestInfo info = new ITDragonRequestInfo();  
-			info.setIp(InetAddress.getLocalHost().getHostAddress()); // ip  
-			Sigar sigar = new Sigar();  
-			
-			CpuPerc cpuPerc = sigar.getCpuPerc();  
-			HashMap<String, Object> cpuPercMap = new HashMap<String, Object>();  
-			cpuPercMap.put(ITDragonCoreParam.COMBINED.getValue(), cpuPerc.getCombined());  
-			cpuPercMap.put(ITDragonCoreParam.USER.getValue(), cpuPerc.getUser());  
-			cpuPercMap.put(ITDragonCoreParam.SYS.getValue(), cpuPerc.getSys());  
-			cpuPercMap.put(ITDragonCoreParam.WAIT.getValue(), cpuPerc.getWait());  
-			cpuPercMap.put(ITDragonCoreParam.IDLE.getValue(), cpuPerc.getIdle());  
-			
-			Mem mem = sigar.getMem();  
-			HashMap<String, Object> memoryMap = new HashMap<String, Object>();  
-			memoryMap.put(ITDragonCoreParam.TOTAL.getValue(), mem.getTotal() / 1024L);  
-			memoryMap.put(ITDragonCoreParam.USED.getValue(), mem.getUsed() / 1024L);  
-			memoryMap.put(ITDragonCoreParam.FREE.getValue(), mem.getFree() / 1024L);  
-			info.setCpuPercMap(cpuPercMap);  
-			info.setMemoryMap(memoryMap);  
-			ctx.writeAndFlush(info);  
-			
-		} catch (Exception e) {  
-			e.printStackTrace();  
-		}  
-	}  
-	
-}  
+}
@@ -11,6 +11,7 @@ public enum ITDragonCoreParam {
     AUTH_SUCCESS ("auth_success"),  
     AUTH_ERROR ("auth_error"),  
     SALT_KEY ("ITDragon"),  
+    HEARTBEAT_SECONDS ("10"),       // 心跳间隔，单位秒  
     COMBINED ("combined"),          // cpu总使用率  
     USER ("user"),                  // cpu用户使用率  
     SYS ("sys"),                    // cpu系统使用率  
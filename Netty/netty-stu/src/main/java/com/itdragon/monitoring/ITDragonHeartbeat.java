@@ -0,0 +1,85 @@
+package com.itdragon.monitoring;
+
+import java.io.Serializable;
+
+/**
+ * 心跳消息，固定的基本类型字段，替代 ITDragonRequestInfo 中的两个 HashMap<String, Object>
+ * 不可变，同一个采样结果由所有连接共用。cpu 为 0~1 的比例，内存单位为KB。
+ * @author itdragon
+ */
+public final class ITDragonHeartbeat implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+	private final String ip;
+	private final long time; 			// 采样时间，毫秒
+	private final double cpuCombined; 	// cpu总使用率
+	private final double cpuUser; 		// cpu用户使用率
+	private final double cpuSys; 		// cpu系统使用率
+	private final double cpuWait; 		// cpu等待率
+	private final double cpuIdle; 		// cpu空闲率
+	private final long memoryTotal; 	// 内存总量
+	private final long memoryUsed; 		// 当前内存使用量
+	private final long memoryFree; 		// 当前内存剩余量
+
+	public ITDragonHeartbeat(String ip, long time, double cpuCombined, double cpuUser, double cpuSys, double cpuWait,
+			double cpuIdle, long memoryTotal, long memoryUsed, long memoryFree) {
+		this.ip = ip;
+		this.time = time;
+		this.cpuCombined = cpuCombined;
+		this.cpuUser = cpuUser;
+		this.cpuSys = cpuSys;
+		this.cpuWait = cpuWait;
+		this.cpuIdle = cpuIdle;
+		this.memoryTotal = memoryTotal;
+		this.memoryUsed = memoryUsed;
+		this.memoryFree = memoryFree;
+	}
+
+	public String getIp() {
+		return ip;
+	}
+
+	public long getTime() {
+		return time;
+	}
+
+	public double getCpuCombined() {
+		return cpuCombined;
+	}
+
+	public double getCpuUser() {
+		return cpuUser;
+	}
+
+	public double getCpuSys() {
+		return cpuSys;
+	}
+
+	public double getCpuWait() {
+		return cpuWait;
+	}
+
+	public double getCpuIdle() {
+		return cpuIdle;
+	}
+
+	public long getMemoryTotal() {
+		return memoryTotal;
+	}
+
+	public long getMemoryUsed() {
+		return memoryUsed;
+	}
+
+	public long getMemoryFree() {
+		return memoryFree;
+	}
+
+	@Override
+	public String toString() {
+		return "ITDragonHeartbeat [ip=" + ip + ", time=" + time + ", cpuCombined=" + cpuCombined + ", cpuUser=" + cpuUser
+				+ ", cpuSys=" + cpuSys + ", cpuWait=" + cpuWait + ", cpuIdle=" + cpuIdle + ", memoryTotal=" + memoryTotal
+				+ ", memoryUsed=" + memoryUsed + ", memoryFree=" + memoryFree + "]";
+	}
+
+}
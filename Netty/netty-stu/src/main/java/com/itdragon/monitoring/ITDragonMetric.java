@@ -0,0 +1,57 @@
+package com.itdragon.monitoring;
+
+import java.util.HashMap;
+
+/**
+ * 时序存储中保存的指标，ordinal() 即数组下标
+ * @author itdragon
+ */
+public enum ITDragonMetric {
+
+	CPU (ITDragonCoreParam.COMBINED),       // cpu总使用率
+	CPU_USER (ITDragonCoreParam.USER),      // cpu用户使用率
+	CPU_SYS (ITDragonCoreParam.SYS),        // cpu系统使用率
+	CPU_WAIT (ITDragonCoreParam.WAIT),      // cpu等待率
+	MEMORY_USED (ITDragonCoreParam.USED),   // 当前内存使用量，单位KB
+	MEMORY_FREE (ITDragonCoreParam.FREE);   // 当前内存剩余量，单位KB
+
+	public static final int COUNT = values().length;
+	private static final ITDragonMetric[] CPU_METRICS = { CPU, CPU_USER, CPU_SYS, CPU_WAIT };
+	private static final ITDragonMetric[] MEMORY_METRICS = { MEMORY_USED, MEMORY_FREE };
+
+	private final ITDragonCoreParam key;
+
+	private ITDragonMetric(ITDragonCoreParam key) {
+		this.key = key;
+	}
+
+	/**
+	 * 把心跳中的 cpu 和内存 map 取到 values 中，values 由调用方重复使用，缺少的指标为 NaN
+	 */
+	public static double[] fill(ITDragonRequestInfo info, double[] values) {
+		fill(info.getCpuPercMap(), CPU_METRICS, values);
+		fill(info.getMemoryMap(), MEMORY_METRICS, values);
+		return values;
+	}
+
+	/**
+	 * 把固定字段的心跳取到 values 中
+	 */
+	public static double[] fill(ITDragonHeartbeat heartbeat, double[] values) {
+		values[CPU.ordinal()] = heartbeat.getCpuCombined();
+		values[CPU_USER.ordinal()] = heartbeat.getCpuUser();
+		values[CPU_SYS.ordinal()] = heartbeat.getCpuSys();
+		values[CPU_WAIT.ordinal()] = heartbeat.getCpuWait();
+		values[MEMORY_USED.ordinal()] = heartbeat.getMemoryUsed();
+		values[MEMORY_FREE.ordinal()] = heartbeat.getMemoryFree();
+		return values;
+	}
+
+	private static void fill(HashMap<String, Object> map, ITDragonMetric[] metrics, double[] values) {
+		for (ITDragonMetric metric : metrics) {
+			Object value = null == map ? null : map.get(metric.key.getValue());
+			values[metric.ordinal()] = value instanceof Number ? ((Number) value).doubleValue() : Double.NaN;
+		}
+	}
+
+}
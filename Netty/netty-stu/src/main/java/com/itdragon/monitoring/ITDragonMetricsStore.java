@@ -0,0 +1,369 @@
+package com.itdragon.monitoring;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 内存时序存储，保存每个主机每个指标的心跳样本
+ * 第一步 : 主机注册时分到一个编号，每 128 台主机一个 Block，Block 创建时分配好所有数组，之后写入样本不再分配任何对象
+ * 第二步 : 原始样本写入环形数组，10秒一个样本保留最近 15 分钟
+ * 第三步 : 同时累加到 1 分钟和 1 小时的汇总环（sum、max、count），分别保留 2 小时和 3 天
+ * 第四步 : 查询按时间窗口选择精度，1 分钟以内查原始样本，2 小时以内查分钟汇总，再长查小时汇总，汇总按桶对齐
+ * 数组按列存放 : [指标][槽位][主机]，同一个时间桶内一个 Block 所有主机的同一个指标是连续的，
+ * top 查询只需顺序扫描几段连续数组，5000 台主机查最近 5 分钟只读约 5 * 5000 个 double。
+ * 每台主机约 22KB，一个 Block 约 2.8MB。
+ * 同一台主机的写入用 Host 上的锁串行化，不同主机之间没有锁；查询不加锁，可能读到正在写入的那一个样本的一部分，对监控统计没有影响。
+ * 主机下线时调用 release()，数据保留，同一台主机重新上线时继续写入原来的位置；
+ * 新主机注册时优先复用最早下线的主机的位置（清空旧数据），只有没有下线的主机时才扩容，主机数不超过同时在线的最大数量。
+ * @author itdragon
+ */
+public final class ITDragonMetricsStore {
+
+	public static final long SECOND = 1000L;
+	public static final long MINUTE = 60 * SECOND;
+	public static final long HOUR = 60 * MINUTE;
+
+	private static final int BLOCK = 128; 			// 每个 Block 的主机数
+	private static final int RAW_SLOTS = 90; 		// 10秒一个心跳，保留15分钟
+	private static final int MINUTE_SLOTS = 120; 	// 保留2小时
+	private static final int HOUR_SLOTS = 72; 		// 保留3天
+	private static final int COUNT = ITDragonMetric.COUNT;
+
+	private final ConcurrentHashMap<String, Host> index = new ConcurrentHashMap<String, Host>();
+	private volatile Block[] blocks = new Block[0];
+	private volatile int size;
+	private final ArrayDeque<Host> released = new ArrayDeque<Host>(); 	// 已下线的主机，按下线的先后排列，用 this 加锁
+
+	/**
+	 * 写入一个主机的一次心跳，values 按 ITDragonMetric.ordinal() 排列，NaN 表示没有这个指标
+	 */
+	public void record(String host, long timeMillis, double[] values) {
+		while (true) {
+			Host h = index.get(host);
+			if (null == h || h.released) {
+				h = register(host);
+			}
+			synchronized (h) {
+				if (!h.retired) { 	// 拿到 h 之后位置可能刚被别的主机复用，重新查找
+					h.block.record(h.offset, timeMillis, values);
+					return;
+				}
+			}
+		}
+	}
+
+	/**
+	 * 主机下线，位置可以被新主机复用。复用之前数据仍然可以查询，主机重新上线时继续使用
+	 */
+	public synchronized void release(String host) {
+		Host h = index.get(host);
+		if (null != h && !h.released) {
+			h.released = true;
+			released.add(h);
+		}
+	}
+
+	private synchronized Host register(String host) {
+		Host h = index.get(host);
+		if (null != h) {
+			if (h.released) { 	// 重新上线
+				h.released = false;
+				released.remove(h);
+			}
+			return h;
+		}
+		Host old = released.poll();
+		if (null != old) { 	// 复用最早下线的主机的位置
+			synchronized (old) {
+				old.retired = true;
+				index.remove(old.block.names[old.offset], old);
+				old.block.clear(old.offset);
+			}
+			h = new Host(old.block, old.offset);
+			h.block.names[h.offset] = host;
+			index.put(host, h);
+			return h;
+		}
+		int number = size;
+		if (number / BLOCK == blocks.length) {
+			Block[] copy = Arrays.copyOf(blocks, blocks.length + 1);
+			copy[blocks.length] = new Block();
+			blocks = copy;
+		}
+		h = new Host(blocks[number / BLOCK], number % BLOCK);
+		h.block.names[h.offset] = host;
+		index.put(host, h);
+		size = number + 1; 	// 最后更新，查询线程看到 size 时主机已经就绪
+		return h;
+	}
+
+	/**
+	 * 主机在 [fromMillis, toMillis) 内的平均值，没有数据时返回 NaN
+	 */
+	public double average(String host, ITDragonMetric metric, long fromMillis, long toMillis) {
+		return aggregate(host, metric, fromMillis, toMillis, false);
+	}
+
+	/**
+	 * 主机在 [fromMillis, toMillis) 内的最大值，没有数据时返回 NaN
+	 */
+	public double max(String host, ITDragonMetric metric, long fromMillis, long toMillis) {
+		return aggregate(host, metric, fromMillis, toMillis, true);
+	}
+
+	private double aggregate(String host, ITDragonMetric metric, long fromMillis, long toMillis, boolean max) {
+		Host h = index.get(host);
+		if (null == h) {
+			return Double.NaN;
+		}
+		Aggregation aggregation = new Aggregation(max);
+		h.block.aggregate(metric.ordinal(), fromMillis, toMillis, h.offset, h.offset + 1, aggregation);
+		return aggregation.result(h.offset);
+	}
+
+	/**
+	 * [fromMillis, toMillis) 内平均值最大的 n 台主机，从大到小排列
+	 * 例如最近 5 分钟 cpu 最高的 10 台主机 : top(ITDragonMetric.CPU, now - 5 * MINUTE, now, 10)
+	 */
+	public List<HostValue> top(ITDragonMetric metric, long fromMillis, long toMillis, int n) {
+		int hosts = size;
+		Block[] snapshot = blocks;
+		double[] best = new double[n];
+		String[] owners = new String[n];
+		int found = 0;
+		Aggregation aggregation = new Aggregation(false);
+		for (int b = 0; b * BLOCK < hosts; b++) {
+			int end = Math.min(BLOCK, hosts - b * BLOCK);
+			Block block = snapshot[b];
+			aggregation.reset();
+			block.aggregate(metric.ordinal(), fromMillis, toMillis, 0, end, aggregation);
+			for (int offset = 0; offset < end; offset++) {
+				double value = aggregation.result(offset);
+				if (Double.isNaN(value) || (found == n && value <= best[n - 1])) {
+					continue;
+				}
+				int i = found < n ? found++ : n - 1; 	// 插入排序，n 很小
+				while (i > 0 && best[i - 1] < value) {
+					best[i] = best[i - 1];
+					owners[i] = owners[i - 1];
+					i--;
+				}
+				best[i] = value;
+				owners[i] = block.names[offset];
+			}
+		}
+		List<HostValue> result = new ArrayList<HostValue>(found);
+		for (int i = 0; i < found; i++) {
+			result.add(new HostValue(owners[i], best[i]));
+		}
+		return result;
+	}
+
+	/**
+	 * 占用的位置数，包括已下线但还没有被复用的主机
+	 */
+	public int size() {
+		return size;
+	}
+
+	public static final class HostValue {
+		private final String host;
+		private final double value;
+
+		HostValue(String host, double value) {
+			this.host = host;
+			this.value = value;
+		}
+
+		public String getHost() {
+			return host;
+		}
+
+		public double getValue() {
+			return value;
+		}
+
+		@Override
+		public String toString() {
+			return host + "=" + value;
+		}
+	}
+
+	/**
+	 * 主机在 Block 中的位置，也作为这台主机的写锁
+	 */
+	private static final class Host {
+		private final Block block;
+		private final int offset;
+		private volatile boolean released; 	// 已下线，位置可以复用，用 store 加锁修改
+		private boolean retired; 			// 位置已经被别的主机复用，用 Host 加锁读写
+
+		Host(Block block, int offset) {
+			this.block = block;
+			this.offset = offset;
+		}
+	}
+
+	/**
+	 * 一次查询中一个 Block 各主机的累加结果
+	 */
+	private static final class Aggregation {
+		private final boolean max;
+		private final double[] values = new double[BLOCK]; 	// max 时为最大值，否则为总和
+		private final int[] counts = new int[BLOCK];
+
+		Aggregation(boolean max) {
+			this.max = max;
+			reset();
+		}
+
+		void reset() {
+			Arrays.fill(values, max ? Double.NEGATIVE_INFINITY : 0);
+			Arrays.fill(counts, 0);
+		}
+
+		double result(int offset) {
+			int count = counts[offset];
+			return 0 == count ? Double.NaN : max ? values[offset] : values[offset] / count;
+		}
+	}
+
+	/**
+	 * BLOCK 台主机的全部数据
+	 */
+	private static final class Block {
+		private final String[] names = new String[BLOCK];
+		private final int[] rawNext = new int[BLOCK]; 					// 每台主机下一个写入的槽位
+		private final long[] rawTime = new long[RAW_SLOTS * BLOCK]; 	// [槽位][主机]
+		private final float[] raw = new float[COUNT * RAW_SLOTS * BLOCK]; 	// [指标][槽位][主机]
+		private final Rollup minutes = new Rollup(MINUTE, MINUTE_SLOTS);
+		private final Rollup hours = new Rollup(HOUR, HOUR_SLOTS);
+
+		Block() {
+			Arrays.fill(rawTime, Long.MIN_VALUE);
+		}
+
+		void record(int offset, long timeMillis, double[] values) {
+			int slot = rawNext[offset];
+			for (int metric = 0; metric < COUNT; metric++) {
+				raw[(metric * RAW_SLOTS + slot) * BLOCK + offset] = (float) values[metric];
+			}
+			rawTime[slot * BLOCK + offset] = timeMillis;
+			rawNext[offset] = (slot + 1) % RAW_SLOTS;
+			minutes.add(offset, timeMillis, values);
+			hours.add(offset, timeMillis, values);
+		}
+
+		// 位置被新主机复用前清空旧主机的数据，原始样本和汇总都标记为无效
+		void clear(int offset) {
+			rawNext[offset] = 0;
+			for (int slot = 0; slot < RAW_SLOTS; slot++) {
+				rawTime[slot * BLOCK + offset] = Long.MIN_VALUE;
+			}
+			minutes.clear(offset);
+			hours.clear(offset);
+		}
+
+		void aggregate(int metric, long fromMillis, long toMillis, int from, int to, Aggregation aggregation) {
+			long window = toMillis - fromMillis;
+			if (window <= 0) {
+				return;
+			}
+			if (window < MINUTE) {
+				aggregateRaw(metric, fromMillis, toMillis, from, to, aggregation);
+			} else if (window <= MINUTE_SLOTS * MINUTE) {
+				minutes.aggregate(metric, fromMillis, toMillis, from, to, aggregation);
+			} else {
+				hours.aggregate(metric, fromMillis, toMillis, from, to, aggregation);
+			}
+		}
+
+		private void aggregateRaw(int metric, long fromMillis, long toMillis, int from, int to, Aggregation aggregation) {
+			for (int slot = 0; slot < RAW_SLOTS; slot++) {
+				int times = slot * BLOCK;
+				int base = (metric * RAW_SLOTS + slot) * BLOCK;
+				for (int offset = from; offset < to; offset++) {
+					long time = rawTime[times + offset];
+					float value = raw[base + offset];
+					if (time >= fromMillis && time < toMillis && !Float.isNaN(value)) {
+						aggregation.values[offset] = aggregation.max ? Math.max(aggregation.values[offset], value)
+								: aggregation.values[offset] + value;
+						aggregation.counts[offset]++;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * 固定宽度的汇总环，每台主机的槽位中记录桶号，桶号不一致说明是一圈之前的旧数据
+	 */
+	private static final class Rollup {
+		private final long width;
+		private final int slots;
+		private final long[] bucket; 	// [槽位][主机]
+		private final double[] sum; 	// [指标][槽位][主机]
+		private final float[] max;
+		private final int[] count;
+
+		Rollup(long width, int slots) {
+			this.width = width;
+			this.slots = slots;
+			this.bucket = new long[slots * BLOCK];
+			this.sum = new double[COUNT * slots * BLOCK];
+			this.max = new float[COUNT * slots * BLOCK];
+			this.count = new int[COUNT * slots * BLOCK];
+			Arrays.fill(bucket, -1);
+		}
+
+		void add(int offset, long timeMillis, double[] values) {
+			long number = timeMillis / width;
+			int slot = (int) (number % slots);
+			boolean stale = bucket[slot * BLOCK + offset] != number;
+			for (int metric = 0; metric < COUNT; metric++) {
+				int i = (metric * slots + slot) * BLOCK + offset;
+				if (stale) {
+					sum[i] = 0;
+					max[i] = Float.NEGATIVE_INFINITY;
+					count[i] = 0;
+				}
+				double value = values[metric];
+				if (!Double.isNaN(value)) {
+					sum[i] += value;
+					max[i] = Math.max(max[i], (float) value);
+					count[i]++;
+				}
+			}
+			bucket[slot * BLOCK + offset] = number; 	// 最后更新桶号
+		}
+
+		void clear(int offset) {
+			for (int slot = 0; slot < slots; slot++) {
+				bucket[slot * BLOCK + offset] = -1;
+			}
+		}
+
+		// 包含 [fromMillis, toMillis) 覆盖到的所有桶，最多查一圈
+		void aggregate(int metric, long fromMillis, long toMillis, int from, int to, Aggregation aggregation) {
+			long last = (toMillis - 1) / width;
+			long first = Math.max(fromMillis / width, last - slots + 1);
+			for (long number = first; number <= last; number++) {
+				int slot = (int) (number % slots);
+				int buckets = slot * BLOCK;
+				int base = (metric * slots + slot) * BLOCK;
+				for (int offset = from; offset < to; offset++) {
+					int i = base + offset;
+					if (bucket[buckets + offset] == number && count[i] > 0) {
+						aggregation.values[offset] = aggregation.max ? Math.max(aggregation.values[offset], max[i])
+								: aggregation.values[offset] + sum[i];
+						aggregation.counts[offset] += count[i];
+					}
+				}
+			}
+		}
+	}
+
+}
@@ -1,41 +1,74 @@
 package com.itdragon.monitoring;
 
+import java.util.concurrent.TimeUnit;
+
+import com.itdragon.compression.ITDragonCompressionFactory;
+import com.itdragon.instrument.ITDragonInstrumentHandler;
+import com.itdragon.instrument.ITDragonServerMetrics;
 import com.itdragon.marshalling.ITDragonMarshallerFactory;
+import com.itdragon.utils.ITDragonFlushConsolidation;
+import com.itdragon.utils.ITDragonIdleHandler;
+import com.itdragon.utils.ITDragonTransport;
 
 import io.netty.bootstrap.ServerBootstrap;
-import io.netty.channel.ChannelFuture;
+import io.netty.channel.Channel;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.EventLoopGroup;
-import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
 import io.netty.handler.logging.LogLevel;
 import io.netty.handler.logging.LoggingHandler;
 
 public class ITDragonServer {
+
+	private static final ITDragonTransport TRANSPORT = ITDragonTransport.select(); // -Ditdragon.transport=auto|nio|epoll
+	static final int MISSED_HEARTBEATS = Integer.getInteger("itdragon.monitoring.missedHeartbeats", 3); // 连续错过几次心跳后关闭连接
 	
 	public static void main(String[] args) {  
-        EventLoopGroup bossGroup = new NioEventLoopGroup();  
-        EventLoopGroup workerGroup = new NioEventLoopGroup();  
+        EventLoopGroup bossGroup = TRANSPORT.newBossGroup();  
+        EventLoopGroup workerGroup = TRANSPORT.newEventLoopGroup();  
+        final ITDragonServerMetrics metrics = new ITDragonServerMetrics("monitoring"); // 所有连接共用的统计，-Ditdragon.metrics.interval=秒数
+        metrics.monitor(workerGroup);
+        metrics.report(workerGroup, ITDragonServerMetrics.INTERVAL_SECONDS);
+        final ITDragonMetricsStore store = new ITDragonMetricsStore(); // 所有连接共用的时序存储
+        final ITDragonAgentRegistry registry = new ITDragonAgentRegistry(store); // 所有连接共用的 agent 注册表，注销时释放时序存储中的位置
+        // 模拟数据库查询
+        registry.addCredential("xxx.xxx.x.x", "xxx");
+        registry.addCredential(ITDragonCoreParam.CLIENT_HOST.getValue(), ITDragonCoreParam.SALT_KEY.getValue());
+        final long heartbeatSeconds = Long.parseLong(ITDragonCoreParam.HEARTBEAT_SECONDS.getValue());
+        // 每分钟打印在线 agent 数量和最近5分钟 cpu 最高的10台主机
+        workerGroup.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                long now = System.currentTimeMillis();
+                System.out.println(registry.snapshot(heartbeatSeconds * 1000));
+                System.out.println("最近5分钟 cpu 最高的主机(" + store.size() + "台): "
+                        + store.top(ITDragonMetric.CPU, now - 5 * ITDragonMetricsStore.MINUTE, now, 10));
+            }
+        }, 1, 1, TimeUnit.MINUTES);
         try {  
             ServerBootstrap bootstrap = new ServerBootstrap();  
-            bootstrap.group(bossGroup, workerGroup)  
-            .channel(NioServerSocketChannel.class)  
+            TRANSPORT.configure(bootstrap.group(bossGroup, workerGroup))  
             .handler(new LoggingHandler(LogLevel.INFO))  
             .childHandler(new ChannelInitializer<SocketChannel>() {  
                 @Override  
                 protected void initChannel(SocketChannel socketChannel) throws Exception {  
-                    socketChannel.pipeline().addLast(ITDragonMarshallerFactory.buildMarshallingDecoder());  
-                    socketChannel.pipeline().addLast(ITDragonMarshallerFactory.builMarshallingEncoder());   
-                    socketChannel.pipeline().addLast(new ITDragonServerHandler());  
+                    socketChannel.pipeline().addLast(ITDragonInstrumentHandler.NAME, new ITDragonInstrumentHandler(metrics)); // 统计放在最前面，看到的是网络层的读写
+                    ITDragonFlushConsolidation.add(socketChannel.pipeline()); // 合并一次读循环中的 flush，-Ditdragon.flush.consolidate=true|false
+                    // 任何读事件都算活跃，验证之前的连接同样适用
+                    socketChannel.pipeline().addLast(ITDragonIdleHandler.readerIdle(heartbeatSeconds * MISSED_HEARTBEATS, TimeUnit.SECONDS)); // 共用的时间轮检测，触发 IdleStateEvent
+                    ITDragonCompressionFactory.addCompression(socketChannel.pipeline(), false); // 压缩，连接建立时协商，-Ditdragon.compression=snappy,zlib|none
+                    ITDragonMarshallerFactory.addCodec(socketChannel.pipeline()); // -Ditdragon.codec=marshalling|binary
+                    socketChannel.pipeline().addLast(new ITDragonServerHandler(registry, store));  
                 }  
             })  
             .option(ChannelOption.SO_BACKLOG, 128)  
             .childOption(ChannelOption.SO_KEEPALIVE, true);  
               
-            ChannelFuture future = bootstrap.bind(Integer.parseInt(ITDragonCoreParam.PORT.getValue())).sync();  
-            future.channel().closeFuture().sync();  
+            Channel[] channels = TRANSPORT.bind(bootstrap, Integer.parseInt(ITDragonCoreParam.PORT.getValue()));  
+            for (Channel channel : channels) {  
+                channel.closeFuture().sync();  
+            }  
         } catch (Exception e) {  
             e.printStackTrace();  
         } finally {  
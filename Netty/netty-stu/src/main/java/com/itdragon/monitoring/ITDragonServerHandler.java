@@ -1,19 +1,24 @@
 package com.itdragon.monitoring;
 
-import java.util.HashMap;
+import com.itdragon.monitoring.ITDragonAgentRegistry.Agent;
+import com.itdragon.utils.ITDragonAsyncLogger;
 
 import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.handler.timeout.IdleStateEvent;
 
 public class ITDragonServerHandler extends ChannelInboundHandlerAdapter {
 
-	// 令牌验证的map，key为ip地址，value为密钥
-	private static HashMap<String, String> authMap = new HashMap<String, String>();
-	// 模拟数据库查询
-	static {
-		authMap.put("xxx.xxx.x.x", "xxx");
-		authMap.put(ITDragonCoreParam.CLIENT_HOST.getValue(), ITDragonCoreParam.SALT_KEY.getValue());
+	private static final boolean QUIET = Boolean.getBoolean("itdragon.netty.quiet"); // 压测时关闭控制台打印
+
+	private final ITDragonAgentRegistry registry;
+	private final ITDragonMetricsStore store;
+	private final double[] values = new double[ITDragonMetric.COUNT];
+
+	public ITDragonServerHandler(ITDragonAgentRegistry registry, ITDragonMetricsStore store) {
+		this.registry = registry;
+		this.store = store;
 	}
 
 	@Override
@@ -25,10 +30,8 @@ public class ITDragonServerHandler extends ChannelInboundHandlerAdapter {
 	private boolean auth(ChannelHandlerContext ctx, Object msg) {
 		System.out.println("令牌验证...............");
 		String[] ret = ((String) msg).split(",");
-		String clientIp = ret[0]; 	// 客户端ip地址
-		String saltKey = ret[1]; 	// 数据库保存的客户端密钥
-		String auth = authMap.get(clientIp); // 客户端传来的密钥
-		if (null != auth && auth.equals(saltKey)) {
+		// ret[0] 客户端ip地址，ret[1] 客户端传来的密钥
+		if (ret.length == 2 && registry.authenticate(ctx.channel(), ret[0], ret[1])) {
 			ctx.writeAndFlush(ITDragonCoreParam.AUTH_SUCCESS.getValue());
 			return true;
 		} else {
@@ -39,25 +42,25 @@ public class ITDragonServerHandler extends ChannelInboundHandlerAdapter {
 
 	@Override
 	public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
-		// 如果传来的消息是字符串，则先验证
+		// 如果传来的消息是字符串，则先验证；没有通过验证的连接发来的心跳直接拒绝
+		Agent agent = null;
 		if (msg instanceof String) {
 			auth(ctx, msg);
-		} else if (msg instanceof ITDragonRequestInfo) {
-			ITDragonRequestInfo info = (ITDragonRequestInfo) msg;
-			System.out.println("--------------------------------------------");
-			System.out.println("当前主机ip为: " + info.getIp());
-			HashMap<String, Object> cpu = info.getCpuPercMap();
-			System.out.println("cpu 总使用率: " + cpu.get(ITDragonCoreParam.COMBINED.getValue()));
-			System.out.println("cpu 用户使用率: " + cpu.get(ITDragonCoreParam.USER.getValue()));
-			System.out.println("cpu 系统使用率: " + cpu.get(ITDragonCoreParam.SYS.getValue()));
-			System.out.println("cpu 等待率: " + cpu.get(ITDragonCoreParam.WAIT.getValue()));
-			System.out.println("cpu 空闲率: " + cpu.get(ITDragonCoreParam.IDLE.getValue()));
-
-			HashMap<String, Object> memory = info.getMemoryMap();
-			System.out.println("内存总量: " + memory.get(ITDragonCoreParam.TOTAL.getValue()));
-			System.out.println("当前内存使用量: " + memory.get(ITDragonCoreParam.USED.getValue()));
-			System.out.println("当前内存剩余量: " + memory.get(ITDragonCoreParam.FREE.getValue()));
-			System.out.println("--------------------------------------------");
+		} else if ((msg instanceof ITDragonHeartbeat || msg instanceof ITDragonRequestInfo)
+				&& null != (agent = registry.heartbeat(ctx.channel()))) {
+			// 写入时序存储，values 每个连接一份，重复使用。ITDragonRequestInfo 是老版本客户端的心跳
+			// 按验证通过的 agent 的 ip 记录，不信任心跳内容中的 ip，一台主机不能写入其他主机的数据
+			String ip = agent.getIp();
+			if (msg instanceof ITDragonHeartbeat) {
+				ITDragonMetric.fill((ITDragonHeartbeat) msg, values);
+			} else {
+				ITDragonMetric.fill((ITDragonRequestInfo) msg, values);
+			}
+			store.record(ip, System.currentTimeMillis(), values);
+			if (!QUIET) {
+				ITDragonAsyncLogger.log("当前主机ip为: " + ip + " cpu 总使用率: " + values[ITDragonMetric.CPU.ordinal()]
+						+ " 当前内存使用量: " + values[ITDragonMetric.MEMORY_USED.ordinal()]);
+			}
 
 			ctx.writeAndFlush("info received!");
 		} else {
@@ -65,6 +68,17 @@ public class ITDragonServerHandler extends ChannelInboundHandlerAdapter {
 		}
 	}
 
+	// ITDragonIdleHandler 触发，连续几次没有收到心跳
+	@Override
+	public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+		if (evt instanceof IdleStateEvent) {
+			System.out.println("连续 " + ITDragonServer.MISSED_HEARTBEATS + " 次没有收到心跳，关闭连接 : " + ctx.channel().remoteAddress());
+			registry.evict(ctx.channel());
+		} else {
+			ctx.fireUserEventTriggered(evt);
+		}
+	}
+
 	@Override
 	public void channelReadComplete(ChannelHandlerContext ctx) throws Exception {
 	}
@@ -0,0 +1,236 @@
+package com.itdragon.monitoring;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.TimeUnit;
+
+import org.hyperic.sigar.CpuPerc;
+import org.hyperic.sigar.Mem;
+import org.hyperic.sigar.Sigar;
+
+import com.itdragon.utils.ITDragonTimer;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.util.Timeout;
+import io.netty.util.TimerTask;
+
+/**
+ * 进程内共用的系统指标采样器，替代每个连接一个的 HeartBeatTask
+ * 第一步 : 由进程内共用的时间轮 ITDragonTimer 定时采样，不单独占用线程，所有连接共用，采样一次发给所有已验证的连接
+ * 第二步 : Linux 下直接读 /proc/stat 和 /proc/meminfo，文件只打开一次，每次从位置0重新读入同一个 byte[]，按字节解析数字
+ * 第三步 : cpu 使用率由两次采样之间 /proc/stat 的差值计算，和 Sigar 的 CpuPerc 含义相同
+ * 第四步 : 采样结果是固定字段的 ITDragonHeartbeat，不再使用 HashMap，不装箱
+ * 没有 /proc 的系统（如 windows）退回到 Sigar，Sigar 实例只创建一次。
+ * @author itdragon
+ */
+public final class ITDragonSystemSampler {
+
+	private static final File PROC_STAT = new File("/proc/stat");
+	private static final File PROC_MEMINFO = new File("/proc/meminfo");
+	private static final byte[] CPU = "cpu ".getBytes();
+	private static final byte[] MEM_TOTAL = "MemTotal:".getBytes();
+	private static final byte[] MEM_FREE = "MemFree:".getBytes();
+
+	private static volatile ITDragonSystemSampler instance;
+
+	private final CopyOnWriteArraySet<Channel> channels = new CopyOnWriteArraySet<Channel>();
+	private final long intervalSeconds;
+	private final String ip;
+	// 以下字段只在时间轮线程中访问
+	private final byte[] bytes = new byte[4096]; 	// 只需要文件开头几行
+	private final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+	private final long[] cpuTicks = new long[8]; 	// user nice system idle iowait irq softirq steal
+	private FileChannel stat;
+	private FileChannel meminfo;
+	private Sigar sigar;
+	private long lastTotal, lastIdle, lastUser, lastSys, lastWait;
+	private volatile ITDragonHeartbeat latest;
+
+	private ITDragonSystemSampler(long intervalSeconds) throws IOException {
+		this.ip = InetAddress.getLocalHost().getHostAddress();
+		if (PROC_STAT.canRead() && PROC_MEMINFO.canRead()) {
+			stat = FileChannel.open(PROC_STAT.toPath(), StandardOpenOption.READ);
+			meminfo = FileChannel.open(PROC_MEMINFO.toPath(), StandardOpenOption.READ);
+			readCpu(); 	// 第一次读取作为基准
+			lastUser = cpuTicks[0] + cpuTicks[1];
+			lastSys = cpuTicks[2] + cpuTicks[5] + cpuTicks[6];
+			lastIdle = cpuTicks[3];
+			lastWait = cpuTicks[4];
+			lastTotal = total();
+		} else {
+			sigar = new Sigar();
+		}
+		this.intervalSeconds = intervalSeconds;
+		ITDragonTimer.newTimeout(task, 1, TimeUnit.SECONDS); 	// 第一次采样和基准间隔1秒
+	}
+
+	// 每次采样后重新放入时间轮，相当于 scheduleWithFixedDelay。读 /proc 只需要几十微秒，不会拖慢时间轮上的其他任务
+	private final TimerTask task = new TimerTask() {
+		@Override
+		public void run(Timeout timeout) throws Exception {
+			tick();
+			ITDragonTimer.newTimeout(this, intervalSeconds, TimeUnit.SECONDS);
+		}
+	};
+
+	public static ITDragonSystemSampler getInstance() throws IOException {
+		if (null == instance) {
+			synchronized (ITDragonSystemSampler.class) {
+				if (null == instance) {
+					instance = new ITDragonSystemSampler(Long.parseLong(ITDragonCoreParam.HEARTBEAT_SECONDS.getValue()));
+				}
+			}
+		}
+		return instance;
+	}
+
+	/**
+	 * 验证成功后登记连接，之后每次采样都发给它，连接关闭时自动注销
+	 */
+	public void register(Channel channel) {
+		channels.add(channel);
+		channel.closeFuture().addListener(new ChannelFutureListener() {
+			@Override
+			public void operationComplete(ChannelFuture future) throws Exception {
+				channels.remove(future.channel());
+			}
+		});
+		ITDragonHeartbeat heartbeat = latest;
+		if (null != heartbeat) {
+			channel.writeAndFlush(heartbeat, channel.voidPromise()); 	// 立即发送一次，不用等下一次采样
+		}
+	}
+
+	public ITDragonHeartbeat getLatest() {
+		return latest;
+	}
+
+	private void tick() {
+		try {
+			ITDragonHeartbeat heartbeat = null != sigar ? sampleSigar() : sampleProc();
+			latest = heartbeat;
+			for (Channel channel : channels) {
+				if (channel.isActive()) {
+					channel.writeAndFlush(heartbeat, channel.voidPromise());
+				}
+			}
+		} catch (Exception e) {
+			e.printStackTrace(); 	// 不能抛出，否则定时任务会停止
+		}
+	}
+
+	private ITDragonHeartbeat sampleProc() throws IOException {
+		readCpu();
+		long user = cpuTicks[0] + cpuTicks[1];
+		long sys = cpuTicks[2] + cpuTicks[5] + cpuTicks[6];
+		long idle = cpuTicks[3];
+		long wait = cpuTicks[4];
+		long total = total();
+		double delta = Math.max(1, total - lastTotal);
+		double cpuUser = (user - lastUser) / delta;
+		double cpuSys = (sys - lastSys) / delta;
+		double cpuWait = (wait - lastWait) / delta;
+		double cpuIdle = (idle - lastIdle) / delta;
+		lastUser = user;
+		lastSys = sys;
+		lastIdle = idle;
+		lastWait = wait;
+		lastTotal = total;
+
+		int length = read(meminfo);
+		long memoryTotal = field(length, MEM_TOTAL);
+		long memoryFree = field(length, MEM_FREE);
+		return new ITDragonHeartbeat(ip, System.currentTimeMillis(), 1 - cpuIdle, cpuUser, cpuSys, cpuWait, cpuIdle,
+				memoryTotal, memoryTotal - memoryFree, memoryFree);
+	}
+
+	private ITDragonHeartbeat sampleSigar() throws Exception {
+		CpuPerc cpuPerc = sigar.getCpuPerc();
+		Mem mem = sigar.getMem();
+		return new ITDragonHeartbeat(ip, System.currentTimeMillis(), cpuPerc.getCombined(), cpuPerc.getUser(),
+				cpuPerc.getSys(), cpuPerc.getWait(), cpuPerc.getIdle(), mem.getTotal() / 1024L, mem.getUsed() / 1024L,
+				mem.getFree() / 1024L);
+	}
+
+	private long total() {
+		long total = 0;
+		for (long ticks : cpuTicks) {
+			total += ticks;
+		}
+		return total;
+	}
+
+	// /proc/stat 第一行 : cpu  user nice system idle iowait irq softirq steal guest guest_nice
+	private void readCpu() throws IOException {
+		int length = read(stat);
+		if (!startsWith(0, length, CPU)) {
+			throw new IOException("unexpected /proc/stat format");
+		}
+		int i = CPU.length;
+		for (int n = 0; n < cpuTicks.length; n++) {
+			while (i < length && bytes[i] == ' ') {
+				i++;
+			}
+			long value = 0;
+			boolean digits = false;
+			while (i < length && bytes[i] >= '0' && bytes[i] <= '9') {
+				value = value * 10 + (bytes[i++] - '0');
+				digits = true;
+			}
+			cpuTicks[n] = digits ? value : 0; 	// 老内核没有 steal 等列
+		}
+	}
+
+	// 从位置0读入文件开头，procfs 每次读都会重新生成内容
+	private int read(FileChannel channel) throws IOException {
+		buffer.clear();
+		int length = 0;
+		int n;
+		while (buffer.hasRemaining() && (n = channel.read(buffer, length)) > 0) {
+			length += n;
+		}
+		return length;
+	}
+
+	// /proc/meminfo 中 "key:   123 kB" 这一行的数字，没有时返回 -1
+	private long field(int length, byte[] key) {
+		for (int line = 0; line < length;) {
+			if (startsWith(line, length, key)) {
+				int i = line + key.length;
+				while (i < length && bytes[i] == ' ') {
+					i++;
+				}
+				long value = 0;
+				while (i < length && bytes[i] >= '0' && bytes[i] <= '9') {
+					value = value * 10 + (bytes[i++] - '0');
+				}
+				return value;
+			}
+			while (line < length && bytes[line] != '\n') {
+				line++;
+			}
+			line++;
+		}
+		return -1;
+	}
+
+	private boolean startsWith(int offset, int length, byte[] prefix) {
+		if (offset + prefix.length > length) {
+			return false;
+		}
+		for (int i = 0; i < prefix.length; i++) {
+			if (bytes[offset + i] != prefix[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+}
@@ -0,0 +1,50 @@
+package com.itdragon.utils;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 异步控制台日志，EventLoop 线程只负责把日志放入有界队列，由后台守护线程打印
+ * System.out.println 是同步加锁的，直接在 EventLoop 线程中打印时，控制台的速度会拖慢所有连接。
+ * 队列满时丢弃日志并计数，不阻塞 IO 线程，下一条打印出来的日志会带上丢弃的条数。
+ * @author itdragon
+ */
+public final class ITDragonAsyncLogger {
+
+	private static final int CAPACITY = 8192;
+	private static final BlockingQueue<String> QUEUE = new ArrayBlockingQueue<String>(CAPACITY);
+	private static final AtomicLong DROPPED = new AtomicLong();
+
+	static {
+		Thread printer = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					while (true) {
+						String line = QUEUE.take();
+						long dropped = DROPPED.getAndSet(0);
+						if (dropped > 0) {
+							System.out.println("...... 队列已满，丢弃了 " + dropped + " 条日志");
+						}
+						System.out.println(line);
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}, "itdragon-async-logger");
+		printer.setDaemon(true);
+		printer.start();
+	}
+
+	private ITDragonAsyncLogger() {
+	}
+
+	public static void log(String line) {
+		if (!QUEUE.offer(line)) {
+			DROPPED.incrementAndGet();
+		}
+	}
+
+}
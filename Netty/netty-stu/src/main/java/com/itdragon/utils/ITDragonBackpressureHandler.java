@@ -0,0 +1,84 @@
+package com.itdragon.utils;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.util.concurrent.EventExecutor;
+
+/**
+ * 业务线程池的背压，放在业务处理器前面，在连接自己的 EventLoop 中执行，每个连接一个实例
+ * 第一步 : channelRead 把消息交给业务处理器所在的线程（一个连接固定一个线程，消息按顺序处理），未处理的消息数加一
+ * 第二步 : 紧跟着向同一个线程提交 done 任务，线程按提交顺序执行，done 执行时这条消息已经处理完，未处理数减一
+ * 第三步 : 未处理数达到 high 时关闭 autoRead，不再从 socket 读数据，数据积压在内核缓冲区，TCP 流控让客户端慢下来
+ * 第四步 : 未处理数降到 low 时回到 EventLoop 重新打开 autoRead。开关都在 EventLoop 中进行，打开前再检查一次，不会和关闭交错
+ * 每个连接积压的消息不超过 high 加上一次读到的字节拆出的消息数（消息很小时一次读可能拆出上千条），慢的连接只影响自己，EventLoop 始终不阻塞。
+ * @author itdragon
+ */
+public class ITDragonBackpressureHandler extends ChannelInboundHandlerAdapter {
+
+	public static final String NAME = "backpressure";
+
+	private final String business; 	// 业务处理器在 pipeline 中的名字
+	private final int high;
+	private final int low;
+	private final AtomicInteger pending = new AtomicInteger(); 	// 已交给业务线程、还没有处理完的消息数
+	private volatile boolean paused;
+	private EventExecutor executor;
+	private Runnable done;
+	private Runnable resume;
+
+	public ITDragonBackpressureHandler(String business, int high, int low) {
+		if (low < 0 || low >= high) {
+			throw new IllegalArgumentException("low water mark " + low + " must be in [0, " + high + ")");
+		}
+		this.business = business;
+		this.high = high;
+		this.low = low;
+	}
+
+	@Override
+	public void handlerAdded(final ChannelHandlerContext ctx) throws Exception {
+		done = new Runnable() {
+			@Override
+			public void run() {
+				if (pending.decrementAndGet() == low && paused) {
+					ctx.channel().eventLoop().execute(resume);
+				}
+			}
+		};
+		resume = new Runnable() {
+			@Override
+			public void run() {
+				if (paused && pending.get() <= low) {
+					paused = false;
+					ctx.channel().config().setAutoRead(true);
+				}
+			}
+		};
+	}
+
+	@Override
+	public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+		if (null == executor) {
+			executor = ctx.pipeline().context(business).executor();
+		}
+		int count = pending.incrementAndGet();
+		ctx.fireChannelRead(msg);
+		executor.execute(done);
+		if (count >= high && !paused) {
+			paused = true;
+			ctx.channel().config().setAutoRead(false);
+			resume.run(); 	// 设置 paused 之前业务线程可能已经处理完了，这时 done 不会再触发恢复
+		}
+	}
+
+	public int getPending() {
+		return pending.get();
+	}
+
+	public boolean isPaused() {
+		return paused;
+	}
+
+}
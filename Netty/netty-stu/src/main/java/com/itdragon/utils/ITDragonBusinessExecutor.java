@@ -0,0 +1,53 @@
+package com.itdragon.utils;
+
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelPipeline;
+import io.netty.util.concurrent.DefaultEventExecutorGroup;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import io.netty.util.concurrent.EventExecutorGroup;
+
+/**
+ * 业务处理器的线程池，计算和阻塞的文件读写不占用 I/O 的 EventLoop 线程
+ * 第一步 : newGroup() 创建 DefaultEventExecutorGroup，线程数 -Ditdragon.business.threads（默认CPU核数*2），0 表示不切换线程
+ * 第二步 : addLast() 把业务处理器绑定到线程池，一个连接的所有事件固定在同一个线程中按顺序执行，处理器不需要考虑并发
+ * 第三步 : 业务处理器前面加上 ITDragonBackpressureHandler，每个连接积压 -Ditdragon.business.high（默认64）条消息时暂停读，
+ *         降到 -Ditdragon.business.low（默认16）条时恢复。线程池的积压和连接数成正比，不会随客户端发送速度无限增长，I/O 延迟不受业务处理速度影响
+ * 业务处理器中 writeAndFlush 会作为任务提交给连接的 EventLoop，编码和写 socket 仍然在 EventLoop 中进行。
+ * 这些 flush 发生在读循环之外，合并 flush 要用 ITDragonFlushConsolidation.add(pipeline, group)。
+ * @author itdragon
+ */
+public final class ITDragonBusinessExecutor {
+
+	public static final int THREADS = Integer.getInteger("itdragon.business.threads", Runtime.getRuntime().availableProcessors() * 2);
+	public static final int HIGH_WATER_MARK = Integer.getInteger("itdragon.business.high", 64);
+	public static final int LOW_WATER_MARK = Integer.getInteger("itdragon.business.low", 16);
+
+	private ITDragonBusinessExecutor() {
+	}
+
+	/**
+	 * 业务线程池，THREADS 不大于0时返回 null，业务处理器直接在 EventLoop 中执行
+	 */
+	public static EventExecutorGroup newGroup() {
+		return THREADS > 0 ? new DefaultEventExecutorGroup(THREADS, new DefaultThreadFactory("itdragon-business")) : null;
+	}
+
+	/**
+	 * 把业务处理器加到 pipeline 的最后，group 为 null 时不切换线程，也不需要背压
+	 */
+	public static void addLast(ChannelPipeline pipeline, EventExecutorGroup group, String name, ChannelHandler handler) {
+		if (null == group) {
+			pipeline.addLast(name, handler);
+			return;
+		}
+		pipeline.addLast(ITDragonBackpressureHandler.NAME, new ITDragonBackpressureHandler(name, HIGH_WATER_MARK, LOW_WATER_MARK));
+		pipeline.addLast(group, name, handler);
+	}
+
+	public static void shutdown(EventExecutorGroup group) {
+		if (null != group) {
+			group.shutdownGracefully();
+		}
+	}
+
+}
@@ -0,0 +1,130 @@
+package com.itdragon.utils;
+
+import com.itdragon.utils.ITDragonCalculator.Expression;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.util.CharsetUtil;
+
+/**
+ * 直接处理 ByteBuf 的计算器，给 delimiter 服务端的热点路径使用，命中缓存时每条消息不分配任何对象
+ * 第一步 : compile(ByteBuf) 按表达式的字节查找编译结果，不需要先把 ByteBuf 解码成 String
+ * 第二步 : writeNumber() 把计算结果按 JavaScript 的数字格式直接写入 ByteBuf，不经过 String 和 byte[]
+ * 缓存是直接映射的数组，每个槽位放一个不可变的 Entry，哈希冲突时直接覆盖。
+ * Entry 的字段都是 final 的，多个线程不加锁读写数组也能看到完整的对象，最坏情况只是重复编译一次。
+ * @author itdragon
+ */
+public final class ITDragonByteCalculator {
+
+	private static final int DEFAULT_CACHE_SIZE = 1024; 	// 槽位个数，必须是2的幂
+	private static final long MAX_PLAIN = 1000000000000000L; // 1e15 以内的整数直接逐位写出
+	private static final long[] POW10 = { 1L, 10L, 100L, 1000L, 10000L, 100000L, 1000000L };
+	private static final byte[] NULL = { 'n', 'u', 'l', 'l' };
+
+	private final Entry[] table;
+
+	public ITDragonByteCalculator() {
+		this(DEFAULT_CACHE_SIZE);
+	}
+
+	public ITDragonByteCalculator(int cacheSize) {
+		if (cacheSize <= 0 || Integer.bitCount(cacheSize) != 1) {
+			throw new IllegalArgumentException("cacheSize must be a power of two : " + cacheSize);
+		}
+		this.table = new Entry[cacheSize];
+	}
+
+	/**
+	 * 编译 source 中可读部分的表达式，不改变 source 的读写索引
+	 * @throws IllegalArgumentException 表达式不合法，不合法的表达式不缓存
+	 */
+	public Expression compile(ByteBuf source) {
+		int hash = ByteBufUtil.hashCode(source);
+		int index = hash & (table.length - 1);
+		Entry entry = table[index];
+		if (null != entry && entry.hash == hash && entry.matches(source)) {
+			return entry.expression;
+		}
+		byte[] key = ByteBufUtil.getBytes(source);
+		Expression expression = ITDragonCalculator.parse(new String(key, CharsetUtil.UTF_8));
+		table[index] = new Entry(hash, key, expression);
+		return expression;
+	}
+
+	/**
+	 * 和 ITDragonCalculator.toNumber(value).toString() 的输出一致：
+	 * 整数不带小数点；[0.001, 1e7) 之间最多6位小数的值直接写出；其他情况（很少见）才退回 Double.toString
+	 */
+	public static void writeNumber(ByteBuf out, double value) {
+		double rounded = Math.rint(value);
+		if (value == rounded && Math.abs(value) < MAX_PLAIN) {
+			writeLong(out, (long) value);
+			return;
+		}
+		double abs = Math.abs(value);
+		if (abs >= 1e-3 && abs < 1e7) {
+			for (int scale = 1; scale < POW10.length; scale++) {
+				double scaled = Math.rint(value * POW10[scale]);
+				if (scaled / POW10[scale] == value) {
+					writeDecimal(out, (long) scaled, scale);
+					return;
+				}
+			}
+		}
+		ByteBufUtil.writeAscii(out, ITDragonCalculator.toNumber(value).toString());
+	}
+
+	/**
+	 * 表达式不合法时的应答，和 ITDragonUtil.cal 返回 null 时一致
+	 */
+	public static void writeNull(ByteBuf out) {
+		out.writeBytes(NULL);
+	}
+
+	private static void writeLong(ByteBuf out, long value) {
+		if (value < 0) {
+			out.writeByte('-');
+			value = -value;
+		}
+		long divisor = 1;
+		while (divisor <= value / 10) {
+			divisor *= 10;
+		}
+		for (; divisor > 0; divisor /= 10) {
+			out.writeByte((int) ('0' + value / divisor % 10));
+		}
+	}
+
+	// unscaled / 10^scale，小数部分补足 scale 位
+	private static void writeDecimal(ByteBuf out, long unscaled, int scale) {
+		if (unscaled < 0) {
+			out.writeByte('-');
+			unscaled = -unscaled;
+		}
+		writeLong(out, unscaled / POW10[scale]);
+		out.writeByte('.');
+		long fraction = unscaled % POW10[scale];
+		for (long divisor = POW10[scale - 1]; divisor > 0; divisor /= 10) {
+			out.writeByte((int) ('0' + fraction / divisor % 10));
+		}
+	}
+
+	private static final class Entry {
+		private final int hash;
+		private final ByteBuf key; 	// 只读的堆缓冲区，比较时不需要分配对象
+		private final Expression expression;
+
+		Entry(int hash, byte[] key, Expression expression) {
+			this.hash = hash;
+			this.key = Unpooled.wrappedBuffer(key);
+			this.expression = expression;
+		}
+
+		boolean matches(ByteBuf source) {
+			int length = source.readableBytes();
+			return length == key.capacity() && ByteBufUtil.equals(source, source.readerIndex(), key, 0, length);
+		}
+	}
+
+}
@@ -0,0 +1,51 @@
+package com.itdragon.utils;
+
+import io.netty.channel.ChannelPipeline;
+import io.netty.handler.flush.FlushConsolidationHandler;
+import io.netty.util.concurrent.EventExecutorGroup;
+
+/**
+ * 合并一次读循环中的 flush，减少系统调用
+ * 处理器在 channelRead 中 writeAndFlush 应答，客户端流水线发送多个请求时，一次读到的每个请求都会触发一次 write 系统调用。
+ * FlushConsolidationHandler 在读循环进行中拦下 flush，到 channelReadComplete 时统一 flush 一次；
+ * 连续拦下 EXPLICIT_FLUSH_AFTER 次后也会 flush 一次，避免一次读到太多请求时应答堆积。
+ * 不在读循环中的 flush（如定时任务发出的消息）直接放行，不增加延迟。
+ * 业务处理器在 ITDragonBusinessExecutor 的线程池中执行时，应答的 writeAndFlush 作为任务回到 EventLoop，
+ * 这时读循环已经结束（channelReadComplete 已经执行），按上面的规则每条应答都会 flush 一次，合并失效。
+ * 所以有业务线程池时用 add(pipeline, businessGroup)，打开 consolidateWhenNoReadInProgress：
+ * 读循环之外的 flush 不立即执行，而是向 EventLoop 提交一个 flush 任务，任务执行前到达的应答一起 flush。
+ * 开关 : -Ditdragon.flush.consolidate=true|false（默认 true），阈值 : -Ditdragon.flush.explicit（默认 256）
+ * 放在 pipeline 的最前面，在它之后的所有处理器发出的 flush 都会被合并。
+ * @author itdragon
+ */
+public final class ITDragonFlushConsolidation {
+
+	public static final String NAME = "flushConsolidation";
+	public static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("itdragon.flush.consolidate", "true"));
+	public static final int EXPLICIT_FLUSH_AFTER = Integer.getInteger("itdragon.flush.explicit", 256);
+
+	private ITDragonFlushConsolidation() {
+	}
+
+	public static void add(ChannelPipeline pipeline) {
+		add(pipeline, ENABLED);
+	}
+
+	/**
+	 * 业务处理器由 businessGroup 执行时（不为 null），读循环之外的 flush 也要合并
+	 */
+	public static void add(ChannelPipeline pipeline, EventExecutorGroup businessGroup) {
+		add(pipeline, ENABLED, null != businessGroup);
+	}
+
+	public static void add(ChannelPipeline pipeline, boolean enabled) {
+		add(pipeline, enabled, false);
+	}
+
+	public static void add(ChannelPipeline pipeline, boolean enabled, boolean consolidateWhenNoReadInProgress) {
+		if (enabled) {
+			pipeline.addLast(NAME, new FlushConsolidationHandler(EXPLICIT_FLUSH_AFTER, consolidateWhenNoReadInProgress));
+		}
+	}
+
+}
@@ -0,0 +1,143 @@
+package com.itdragon.utils;
+
+import java.util.concurrent.TimeUnit;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.handler.timeout.IdleStateEvent;
+import io.netty.handler.timeout.ReadTimeoutException;
+import io.netty.util.Timeout;
+import io.netty.util.TimerTask;
+
+/**
+ * 读空闲检测，用共用的时间轮 ITDragonTimer 代替 IdleStateHandler / ReadTimeoutHandler 的 EventLoop 定时任务
+ * readerIdle(seconds) : 和 IdleStateHandler(seconds, 0, 0) 一样，空闲时触发 IdleStateEvent（第一次 FIRST_READER_IDLE_STATE_EVENT），由后面的处理器决定怎么处理
+ * readTimeout(seconds) : 和 ReadTimeoutHandler(seconds) 一样，空闲时触发 ReadTimeoutException 并关闭连接
+ * 第一步 : 连接激活时在时间轮上放一个 timeout 后到期的任务，读数据只记录 channelReadComplete 的时间，不重新放任务
+ * 第二步 : 任务到期时转交给连接的 EventLoop，检查最后一次读的时间，没有超时就按剩余时间重新放任务，超时了就触发事件并放下一轮
+ * 第三步 : 连接关闭或处理器移除时取消任务，O(1)
+ * 精度是时间轮的一格（默认100毫秒）。每个连接一个实例，字段只在连接的 EventLoop 中访问。
+ * @author itdragon
+ */
+public class ITDragonIdleHandler extends ChannelInboundHandlerAdapter {
+
+	private final long timeoutNanos;
+	private final boolean close; 	// true : 读超时，触发异常并关闭连接
+	private ChannelHandlerContext ctx;
+	private Timeout timeout;
+	private long lastReadTime;
+	private boolean reading;
+	private boolean first = true;
+	private boolean destroyed;
+
+	// 时间轮线程中执行，只负责转交给 EventLoop
+	private final TimerTask expire = new TimerTask() {
+		@Override
+		public void run(Timeout t) throws Exception {
+			ctx.executor().execute(check);
+		}
+	};
+
+	private final Runnable check = new Runnable() {
+		@Override
+		public void run() {
+			if (destroyed || !ctx.channel().isOpen()) {
+				return;
+			}
+			long delay = reading ? timeoutNanos : timeoutNanos - (System.nanoTime() - lastReadTime);
+			if (delay > 0) {
+				schedule(delay);
+				return;
+			}
+			schedule(timeoutNanos);
+			idle();
+		}
+	};
+
+	private ITDragonIdleHandler(long timeout, TimeUnit unit, boolean close) {
+		this.timeoutNanos = Math.max(unit.toNanos(timeout), TimeUnit.MILLISECONDS.toNanos(1));
+		this.close = close;
+	}
+
+	public static ITDragonIdleHandler readerIdle(long timeout, TimeUnit unit) {
+		return new ITDragonIdleHandler(timeout, unit, false);
+	}
+
+	public static ITDragonIdleHandler readTimeout(long timeout, TimeUnit unit) {
+		return new ITDragonIdleHandler(timeout, unit, true);
+	}
+
+	@Override
+	public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+		this.ctx = ctx;
+		if (ctx.channel().isActive() && ctx.channel().isRegistered()) {
+			initialize();
+		}
+	}
+
+	@Override
+	public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+		destroy();
+	}
+
+	@Override
+	public void channelActive(ChannelHandlerContext ctx) throws Exception {
+		initialize();
+		ctx.fireChannelActive();
+	}
+
+	@Override
+	public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+		destroy();
+		ctx.fireChannelInactive();
+	}
+
+	@Override
+	public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+		reading = true;
+		first = true;
+		ctx.fireChannelRead(msg);
+	}
+
+	@Override
+	public void channelReadComplete(ChannelHandlerContext ctx) throws Exception {
+		if (reading) {
+			lastReadTime = System.nanoTime();
+			reading = false;
+		}
+		ctx.fireChannelReadComplete();
+	}
+
+	private void initialize() {
+		if (null != timeout || destroyed) {
+			return;
+		}
+		lastReadTime = System.nanoTime();
+		schedule(timeoutNanos);
+	}
+
+	private void destroy() {
+		destroyed = true;
+		if (null != timeout) {
+			timeout.cancel();
+			timeout = null;
+		}
+	}
+
+	private void schedule(long delayNanos) {
+		timeout = ITDragonTimer.newTimeout(expire, delayNanos, TimeUnit.NANOSECONDS);
+	}
+
+	private void idle() {
+		if (close) {
+			destroy(); 	// 只报一次
+			ctx.fireExceptionCaught(ReadTimeoutException.INSTANCE);
+			ctx.close();
+			return;
+		}
+		IdleStateEvent event = first ? IdleStateEvent.FIRST_READER_IDLE_STATE_EVENT : IdleStateEvent.READER_IDLE_STATE_EVENT;
+		first = false;
+		ctx.fireUserEventTriggered(event);
+	}
+
+}
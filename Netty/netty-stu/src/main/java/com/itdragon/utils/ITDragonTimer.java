@@ -0,0 +1,41 @@
+package com.itdragon.utils;
+
+import java.util.concurrent.TimeUnit;
+
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timeout;
+import io.netty.util.Timer;
+import io.netty.util.TimerTask;
+import io.netty.util.concurrent.DefaultThreadFactory;
+
+/**
+ * 进程内共用的时间轮，驱动心跳发送、读空闲检测、读超时和请求超时
+ * 第一步 : HashedWheelTimer 把时间分成 ticksPerWheel 个格子，每格 tickMillis，定时任务按到期时间放进对应格子的链表，添加和取消都是 O(1)
+ * 第二步 : 一个守护线程每 tickMillis 走一格，执行这一格中到期的任务，精度是一格（默认100毫秒），适合秒级的超时
+ * 第三步 : 任务在时间轮线程中执行，必须很短；要操作 Channel 的任务应该转交给 Channel 的 EventLoop
+ * 和 EventLoop.schedule 相比，不占用 EventLoop 的定时任务队列（优先队列，添加 O(log n)），几万个连接也只有一个线程。
+ * 参数 : -Ditdragon.timer.tickMillis（默认100），-Ditdragon.timer.ticksPerWheel（默认512，一圈约51秒，超过一圈的任务多转几圈）
+ * @author itdragon
+ */
+public final class ITDragonTimer {
+
+	public static final long TICK_MILLIS = Long.getLong("itdragon.timer.tickMillis", 100);
+	public static final int TICKS_PER_WHEEL = Integer.getInteger("itdragon.timer.ticksPerWheel", 512);
+
+	private ITDragonTimer() {
+	}
+
+	private static class SingletonHolder {
+		static final Timer timer = new HashedWheelTimer(new DefaultThreadFactory("itdragon-timer", true),
+				TICK_MILLIS, TimeUnit.MILLISECONDS, TICKS_PER_WHEEL);
+	}
+
+	public static Timer getTimer() {
+		return SingletonHolder.timer;
+	}
+
+	public static Timeout newTimeout(TimerTask task, long delay, TimeUnit unit) {
+		return SingletonHolder.timer.newTimeout(task, delay, unit);
+	}
+
+}
@@ -0,0 +1,125 @@
+package com.itdragon.utils;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollChannelOption;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollMode;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+
+/**
+ * 传输层实现，启动时通过 -Ditdragon.transport=auto|nio|epoll 选择，默认 auto
+ * NIO   : JDK 的 Selector，所有平台都可以用
+ * EPOLL : Linux 原生 epoll（JNI），边缘触发，系统调用和对象分配比 JDK NIO 少。
+ *         开启 SO_REUSEPORT，同一个端口绑定多个监听通道（-Ditdragon.transport.acceptors，默认CPU核数），
+ *         由内核把新连接分散到各个监听通道，每个监听通道在 boss 线程组中有自己的线程，accept 不再是单线程瓶颈。
+ * auto  : native 库可以加载时用 EPOLL，否则用 NIO
+ * @author itdragon
+ */
+public enum ITDragonTransport {
+
+	NIO {
+		@Override
+		public EventLoopGroup newEventLoopGroup(int threads) {
+			return new NioEventLoopGroup(threads);
+		}
+
+		@Override
+		public ServerBootstrap configure(ServerBootstrap bootstrap) {
+			return bootstrap.channel(NioServerSocketChannel.class);
+		}
+
+		@Override
+		public Bootstrap configure(Bootstrap bootstrap) {
+			return bootstrap.channel(NioSocketChannel.class);
+		}
+
+		@Override
+		public int acceptors() {
+			return 1;
+		}
+	},
+
+	EPOLL {
+		@Override
+		public EventLoopGroup newEventLoopGroup(int threads) {
+			return new EpollEventLoopGroup(threads);
+		}
+
+		@Override
+		public ServerBootstrap configure(ServerBootstrap bootstrap) {
+			return bootstrap.channel(EpollServerSocketChannel.class)
+					.option(EpollChannelOption.SO_REUSEPORT, true) 						// 多个监听通道绑定同一个端口
+					.option(EpollChannelOption.EPOLL_MODE, EpollMode.EDGE_TRIGGERED)
+					.childOption(EpollChannelOption.EPOLL_MODE, EpollMode.EDGE_TRIGGERED);
+		}
+
+		@Override
+		public Bootstrap configure(Bootstrap bootstrap) {
+			return bootstrap.channel(EpollSocketChannel.class)
+					.option(EpollChannelOption.EPOLL_MODE, EpollMode.EDGE_TRIGGERED);
+		}
+
+		@Override
+		public int acceptors() {
+			return Integer.getInteger("itdragon.transport.acceptors", Runtime.getRuntime().availableProcessors());
+		}
+	};
+
+	// 线程数为0时使用Netty的默认值（CPU核数*2）
+	public abstract EventLoopGroup newEventLoopGroup(int threads);
+
+	// 设置服务端通道类型和该传输层特有的参数
+	public abstract ServerBootstrap configure(ServerBootstrap bootstrap);
+
+	// 设置客户端通道类型和该传输层特有的参数
+	public abstract Bootstrap configure(Bootstrap bootstrap);
+
+	// 同一个端口上的监听通道个数
+	public abstract int acceptors();
+
+	public EventLoopGroup newEventLoopGroup() {
+		return newEventLoopGroup(0);
+	}
+
+	// boss 线程组，每个监听通道一个线程
+	public EventLoopGroup newBossGroup() {
+		return newEventLoopGroup(acceptors());
+	}
+
+	/**
+	 * 绑定端口，EPOLL 模式下绑定 acceptors() 次，返回所有监听通道
+	 */
+	public Channel[] bind(ServerBootstrap bootstrap, int port) throws InterruptedException {
+		Channel[] channels = new Channel[acceptors()];
+		for (int i = 0; i < channels.length; i++) {
+			channels[i] = bootstrap.bind(port).sync().channel();
+		}
+		return channels;
+	}
+
+	/**
+	 * 根据 -Ditdragon.transport 选择传输层，指定 epoll 但 native 库不可用时退回 NIO
+	 */
+	public static ITDragonTransport select() {
+		String name = System.getProperty("itdragon.transport", "auto");
+		if ("nio".equalsIgnoreCase(name)) {
+			return NIO;
+		}
+		if (Epoll.isAvailable()) {
+			return EPOLL;
+		}
+		if ("epoll".equalsIgnoreCase(name)) {
+			System.out.println("epoll 不可用，使用 NIO : " + Epoll.unavailabilityCause());
+		}
+		return NIO;
+	}
+
+}
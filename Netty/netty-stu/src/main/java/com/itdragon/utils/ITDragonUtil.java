@@ -1,64 +1,40 @@
 package com.itdragon.utils;
 
-import javax.script.ScriptEngine;
-import javax.script.ScriptEngineManager;
-import javax.script.ScriptException;
-import java.io.ByteArrayInputStream;  
-import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
-import java.util.zip.GZIPInputStream;  
-import java.util.zip.GZIPOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
 
 public class ITDragonUtil {
 	
-	private final static ScriptEngine jse = new ScriptEngineManager().getEngineByName("JavaScript");
+	// 表达式编译后缓存，替代 ScriptEngine，多线程调用安全
+	private final static ITDragonCalculator calculator = new ITDragonCalculator();
     public static Object cal(String expression){
         try {
-			return jse.eval(expression);
-		} catch (ScriptException e) {
+			return ITDragonCalculator.toNumber(calculator.compile(expression).evaluate());
+		} catch (IllegalArgumentException e) {
 			e.printStackTrace();
 		}
         return null;
     }
     
-    public static byte[] gzip(byte[] data){  
-        ByteArrayOutputStream bos = new ByteArrayOutputStream();  
-        GZIPOutputStream gzip;
-		try {
-			gzip = new GZIPOutputStream(bos);
-			gzip.write(data);  
-			gzip.finish();  
-			gzip.close();  
-			byte[] ret = bos.toByteArray();  
-			bos.close();  
-			return ret;  
-		} catch (IOException e) {
-			e.printStackTrace();
-		}  
-		return null;
-    }  
-      
-    public static byte[] ungzip(byte[] data){  
-        ByteArrayInputStream bis = new ByteArrayInputStream(data);  
-        GZIPInputStream gzip;
-		try {
-			gzip = new GZIPInputStream(bis);
-			byte[] buf = new byte[1024];  
-			int num = -1;  
-			ByteArrayOutputStream bos = new ByteArrayOutputStream();  
-			while((num = gzip.read(buf, 0 , buf.length)) != -1 ){  
-				bos.write(buf, 0, num);  
-			}  
-			gzip.close();  
-			bis.close();  
-			byte[] ret = bos.toByteArray();  
-			bos.flush();  
-			bos.close();  
-			return ret;  
-		} catch (IOException e) {
-			e.printStackTrace();
-		} 
-		return null;
-    }  
+    // 流式计算文件的 CRC32，每次只读取 64K，不会把整个文件读入内存
+    public static long crc32(File file) throws IOException {
+        CRC32 crc = new CRC32();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                crc.update(buffer);
+                buffer.clear();
+            }
+        } finally {
+            channel.close();
+        }
+        return crc.getValue();
+    }
 
 }
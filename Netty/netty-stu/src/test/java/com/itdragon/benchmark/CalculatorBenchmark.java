@@ -0,0 +1,77 @@
+package com.itdragon.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineManager;
+import javax.script.ScriptException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.itdragon.utils.ITDragonCalculator;
+
+/**
+ * ScriptEngine 和 ITDragonCalculator 计算表达式的性能对比
+ * scriptEngine : 之前 ITDragonUtil.cal 的实现，引擎不是线程安全的，所以只能单线程测试
+ * compile      : 每次都重新解析，表示缓存未命中的情况
+ * cached       : 从LRU缓存中获取编译结果后计算，表示服务器的常见情况
+ * 运行方式：mvn test-compile 后执行 main 方法，加上 -prof gc 可以看到每次计算分配的字节数
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CalculatorBenchmark {
+
+	@Param({ "1+1", "6*7-3/2", "(1.5+2)*(3-4/5)-(6+7*8)/9" })
+	private String expression;
+
+	private ScriptEngine scriptEngine;
+	private ITDragonCalculator calculator;
+
+	@Setup
+	public void setup() {
+		scriptEngine = new ScriptEngineManager().getEngineByName("JavaScript");
+		if (null == scriptEngine) {
+			throw new IllegalStateException("JavaScript ScriptEngine not found, JDK15+ needs nashorn-core on the classpath");
+		}
+		calculator = new ITDragonCalculator();
+		calculator.compile(expression);
+	}
+
+	@Benchmark
+	public Object scriptEngine() throws ScriptException {
+		return scriptEngine.eval(expression);
+	}
+
+	@Benchmark
+	public double compile() {
+		return ITDragonCalculator.parse(expression).evaluate();
+	}
+
+	@Benchmark
+	public double cached() {
+		return calculator.compile(expression).evaluate();
+	}
+
+	public static void main(String[] args) throws Exception {
+		Options options = new OptionsBuilder().include(CalculatorBenchmark.class.getSimpleName()).build();
+		new Runner(options).run();
+	}
+
+}
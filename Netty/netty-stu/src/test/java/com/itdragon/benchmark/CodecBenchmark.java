@@ -0,0 +1,162 @@
+package com.itdragon.benchmark;
+
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.itdragon.marshalling.ITDragonMarshallerFactory;
+import com.itdragon.marshalling.ITDragonReqData;
+import com.itdragon.monitoring.ITDragonCoreParam;
+import com.itdragon.monitoring.ITDragonHeartbeat;
+import com.itdragon.monitoring.ITDragonRequestInfo;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.embedded.EmbeddedChannel;
+
+/**
+ * JBoss Marshalling（Java序列化） 和 二进制编解码 的对比
+ * encode : 消息经过编码器变成 ByteBuf
+ * decode : 一帧数据经过拆包器和解码器变成消息
+ * 编码后的字节数在 Setup 时打印。使用 EmbeddedChannel，测到的是 pipeline 中编解码器的实际开销，不包括网络IO。
+ * 运行方式：mvn test-compile 后执行 main 方法，加上 -prof gc 可以看到每条消息分配的字节数。
+ * 在JDK9+上用命令行运行时需要加上 -jvmArgsAppend "--add-opens java.base/java.io=ALL-UNNAMED ..."，见 main 方法
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodecBenchmark {
+
+	@Param({ "marshalling", "binary" })
+	private String codec;
+
+	@Param({ "reqData", "requestInfo", "heartbeat" })
+	private String message;
+
+	private Object msg;
+	private EmbeddedChannel encoderChannel;
+	private EmbeddedChannel decoderChannel;
+	private ByteBuf encoded; 	// 编码结果，decode 时每次使用它的副本
+
+	@Setup
+	public void setup() {
+		msg = "reqData".equals(message) ? newReqData() : "heartbeat".equals(message) ? newHeartbeat() : newRequestInfo();
+		if ("binary".equals(codec)) {
+			encoderChannel = new EmbeddedChannel(ITDragonMarshallerFactory.buildBinaryEncoder());
+			decoderChannel = new EmbeddedChannel(ITDragonMarshallerFactory.buildBinaryFrameDecoder(),
+					ITDragonMarshallerFactory.buildBinaryDecoder());
+		} else {
+			encoderChannel = new EmbeddedChannel(ITDragonMarshallerFactory.builMarshallingEncoder());
+			decoderChannel = new EmbeddedChannel(ITDragonMarshallerFactory.buildMarshallingDecoder());
+		}
+		encoded = doEncode();
+		System.out.println();
+		System.out.println(codec + " " + message + " 编码后字节数 : " + encoded.readableBytes());
+		if (!sameMessage(msg, doDecode())) {
+			throw new IllegalStateException("decoded message differs from the original");
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		encoded.release();
+		encoderChannel.finishAndReleaseAll();
+		decoderChannel.finishAndReleaseAll();
+	}
+
+	@Benchmark
+	public int encode() {
+		ByteBuf buf = doEncode();
+		int size = buf.readableBytes();
+		buf.release();
+		return size;
+	}
+
+	@Benchmark
+	public Object decode() {
+		return doDecode();
+	}
+
+	private ByteBuf doEncode() {
+		encoderChannel.writeOutbound(msg);
+		return (ByteBuf) encoderChannel.readOutbound();
+	}
+
+	private Object doDecode() {
+		decoderChannel.writeInbound(encoded.retainedDuplicate());
+		return decoderChannel.readInbound();
+	}
+
+	// HashMap 的 toString 和遍历顺序有关，ITDragonRequestInfo 逐个字段比较
+	private static boolean sameMessage(Object expected, Object actual) {
+		if (expected instanceof ITDragonRequestInfo && actual instanceof ITDragonRequestInfo) {
+			ITDragonRequestInfo e = (ITDragonRequestInfo) expected;
+			ITDragonRequestInfo a = (ITDragonRequestInfo) actual;
+			return e.getIp().equals(a.getIp()) && e.getCpuPercMap().equals(a.getCpuPercMap())
+					&& e.getMemoryMap().equals(a.getMemoryMap());
+		}
+		return expected.toString().equals(actual.toString());
+	}
+
+	private static ITDragonReqData newReqData() {
+		ITDragonReqData data = new ITDragonReqData();
+		data.setId(42L);
+		data.setName("ITDragon-42");
+		data.setRequestMsg("NO.42 Request");
+		return data;
+	}
+
+	// 和 newRequestInfo 相同的数据，固定字段的格式
+	private static ITDragonHeartbeat newHeartbeat() {
+		return new ITDragonHeartbeat("192.168.1.52", 1500000000000L, 0.253, 0.181, 0.062, 0.01, 0.747,
+				16L * 1024 * 1024, 9L * 1024 * 1024, 7L * 1024 * 1024);
+	}
+
+	private static ITDragonRequestInfo newRequestInfo() {
+		ITDragonRequestInfo info = new ITDragonRequestInfo();
+		info.setIp("192.168.1.52");
+		HashMap<String, Object> cpu = new HashMap<String, Object>();
+		cpu.put(ITDragonCoreParam.COMBINED.getValue(), 0.253);
+		cpu.put(ITDragonCoreParam.USER.getValue(), 0.181);
+		cpu.put(ITDragonCoreParam.SYS.getValue(), 0.062);
+		cpu.put(ITDragonCoreParam.WAIT.getValue(), 0.01);
+		cpu.put(ITDragonCoreParam.IDLE.getValue(), 0.747);
+		HashMap<String, Object> memory = new HashMap<String, Object>();
+		memory.put(ITDragonCoreParam.TOTAL.getValue(), 16L * 1024 * 1024);
+		memory.put(ITDragonCoreParam.USED.getValue(), 9L * 1024 * 1024);
+		memory.put(ITDragonCoreParam.FREE.getValue(), 7L * 1024 * 1024);
+		info.setCpuPercMap(cpu);
+		info.setMemoryMap(memory);
+		return info;
+	}
+
+	public static void main(String[] args) throws Exception {
+		OptionsBuilder builder = new OptionsBuilder();
+		builder.include(CodecBenchmark.class.getSimpleName());
+		if (!System.getProperty("java.specification.version").startsWith("1.")) {
+			// JDK9+ 上 JBoss Marshalling 需要反射访问 java.base 的内部类
+			builder.jvmArgsAppend("--add-opens", "java.base/java.io=ALL-UNNAMED", "--add-opens",
+					"java.base/java.lang=ALL-UNNAMED", "--add-opens", "java.base/java.util=ALL-UNNAMED");
+		}
+		Options options = builder.build();
+		new Runner(options).run();
+	}
+
+}
@@ -0,0 +1,190 @@
+package com.itdragon.benchmark;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.itdragon.compression.ITDragonCompression;
+import com.itdragon.compression.ITDragonCompressionFactory;
+import com.itdragon.marshalling.ITDragonMarshallerFactory;
+import com.itdragon.marshalling.ITDragonReqData;
+import com.itdragon.monitoring.ITDragonCoreParam;
+import com.itdragon.monitoring.ITDragonRequestInfo;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.embedded.EmbeddedChannel;
+
+/**
+ * 各压缩算法在本项目常见消息上的压缩率和 CPU 开销
+ * compress   : 一帧数据经过压缩编码器，得到压缩帧
+ * decompress : 一个压缩帧经过压缩解码器，还原成原始数据
+ * 消息：reqData / requestInfo 是 JBoss Marshalling 编码后的业务消息，jpg 是 sources/itdragon.jpg，
+ * text 是 64K 的监控日志文本。压缩后的字节数在 Setup 时打印，单线程的 ns/op 就是每帧消耗的 CPU 时间。
+ * 运行方式：mvn test-compile 后在 netty-stu 目录下执行 main 方法
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompressionBenchmark {
+
+	private static final int MIN_SIZE = 256;
+
+	@Param({ "NONE", "SNAPPY", "ZLIB" })
+	private ITDragonCompression compression;
+
+	@Param({ "reqData", "requestInfo", "jpg", "text" })
+	private String payload;
+
+	private EmbeddedChannel encoderChannel;
+	private EmbeddedChannel decoderChannel;
+	private ByteBuf original;
+	private ByteBuf compressed; 	// 压缩帧，decompress 时每次使用它的副本
+
+	@Setup
+	public void setup() throws Exception {
+		original = newPayload(payload);
+		if (ITDragonCompression.NONE == compression) {
+			encoderChannel = new EmbeddedChannel();
+			decoderChannel = new EmbeddedChannel();
+		} else {
+			ChannelHandler[] handlers = ITDragonCompressionFactory.newHandlers(compression, MIN_SIZE);
+			encoderChannel = new EmbeddedChannel(handlers[1]);
+			decoderChannel = new EmbeddedChannel(handlers[0]);
+		}
+		compressed = doCompress();
+		System.out.println();
+		System.out.println(compression + " " + payload + " : " + original.readableBytes() + " -> " + compressed.readableBytes() + " 字节");
+		ByteBuf decompressed = doDecompress();
+		if (!ByteBufUtil.equals(original, decompressed)) {
+			throw new IllegalStateException("decompressed payload differs from the original");
+		}
+		decompressed.release();
+	}
+
+	@TearDown
+	public void tearDown() {
+		original.release();
+		compressed.release();
+		encoderChannel.finishAndReleaseAll();
+		decoderChannel.finishAndReleaseAll();
+	}
+
+	@Benchmark
+	public int compress() {
+		ByteBuf buf = doCompress();
+		int size = buf.readableBytes();
+		buf.release();
+		return size;
+	}
+
+	@Benchmark
+	public int decompress() {
+		ByteBuf buf = doDecompress();
+		int size = buf.readableBytes();
+		buf.release();
+		return size;
+	}
+
+	// 帧头和数据可能分两次写出，合并成一个 ByteBuf
+	private ByteBuf doCompress() {
+		encoderChannel.writeOutbound(original.retainedDuplicate());
+		ByteBuf frame = (ByteBuf) encoderChannel.readOutbound();
+		ByteBuf next = (ByteBuf) encoderChannel.readOutbound();
+		if (null == next) {
+			return frame;
+		}
+		ByteBuf merged = PooledByteBufAllocator.DEFAULT.buffer(frame.readableBytes() + next.readableBytes());
+		merged.writeBytes(frame).writeBytes(next);
+		frame.release();
+		next.release();
+		return merged;
+	}
+
+	private ByteBuf doDecompress() {
+		decoderChannel.writeInbound(compressed.retainedDuplicate());
+		return (ByteBuf) decoderChannel.readInbound();
+	}
+
+	private static ByteBuf newPayload(String payload) throws Exception {
+		if ("jpg".equals(payload)) {
+			byte[] bytes = Files.readAllBytes(new File("sources", "itdragon.jpg").toPath());
+			return PooledByteBufAllocator.DEFAULT.buffer(bytes.length).writeBytes(bytes);
+		}
+		if ("text".equals(payload)) {
+			Random random = new Random(42);
+			ByteBuf buf = PooledByteBufAllocator.DEFAULT.buffer(64 * 1024);
+			while (buf.readableBytes() < 64 * 1024 - 200) {
+				buf.writeBytes(newRequestInfo(random).toString().getBytes("UTF-8")).writeByte('\n');
+			}
+			return buf;
+		}
+		EmbeddedChannel channel = new EmbeddedChannel(ITDragonMarshallerFactory.builMarshallingEncoder());
+		channel.writeOutbound("reqData".equals(payload) ? newReqData() : newRequestInfo(new Random(42)));
+		ByteBuf buf = (ByteBuf) channel.readOutbound();
+		channel.finishAndReleaseAll();
+		return buf;
+	}
+
+	private static ITDragonReqData newReqData() {
+		ITDragonReqData data = new ITDragonReqData();
+		data.setId(42L);
+		data.setName("ITDragon-42");
+		data.setRequestMsg("NO.42 Request");
+		return data;
+	}
+
+	private static ITDragonRequestInfo newRequestInfo(Random random) {
+		ITDragonRequestInfo info = new ITDragonRequestInfo();
+		info.setIp("192.168.1." + random.nextInt(256));
+		HashMap<String, Object> cpu = new HashMap<String, Object>();
+		cpu.put(ITDragonCoreParam.COMBINED.getValue(), random.nextDouble());
+		cpu.put(ITDragonCoreParam.USER.getValue(), random.nextDouble());
+		cpu.put(ITDragonCoreParam.SYS.getValue(), random.nextDouble());
+		cpu.put(ITDragonCoreParam.WAIT.getValue(), random.nextDouble());
+		cpu.put(ITDragonCoreParam.IDLE.getValue(), random.nextDouble());
+		HashMap<String, Object> memory = new HashMap<String, Object>();
+		memory.put(ITDragonCoreParam.TOTAL.getValue(), 16L * 1024 * 1024);
+		memory.put(ITDragonCoreParam.USED.getValue(), (long) random.nextInt(16 * 1024 * 1024));
+		memory.put(ITDragonCoreParam.FREE.getValue(), (long) random.nextInt(16 * 1024 * 1024));
+		info.setCpuPercMap(cpu);
+		info.setMemoryMap(memory);
+		return info;
+	}
+
+	public static void main(String[] args) throws Exception {
+		OptionsBuilder builder = new OptionsBuilder();
+		builder.include(CompressionBenchmark.class.getSimpleName());
+		if (!System.getProperty("java.specification.version").startsWith("1.")) {
+			// JDK9+ 上 JBoss Marshalling 需要反射访问 java.base 的内部类
+			builder.jvmArgsAppend("--add-opens", "java.base/java.io=ALL-UNNAMED", "--add-opens",
+					"java.base/java.lang=ALL-UNNAMED", "--add-opens", "java.base/java.util=ALL-UNNAMED");
+		}
+		Options options = builder.build();
+		new Runner(options).run();
+	}
+
+}
@@ -0,0 +1,180 @@
+package com.itdragon.benchmark;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.itdragon.delimiter.ITDragonDelimiterDecoder;
+import com.itdragon.delimiter.ITDragonServerHandler;
+import com.itdragon.utils.ITDragonBusinessExecutor;
+import com.itdragon.utils.ITDragonFlushConsolidation;
+import com.itdragon.utils.ITDragonTransport;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.handler.codec.DelimiterBasedFrameDecoder;
+import io.netty.util.concurrent.EventExecutorGroup;
+
+/**
+ * flush 合并的效果，服务端使用 delimiter 包下的 "_$" 分隔符计算器服务
+ * 每个测试线程一个连接，每次流水线发送 batch 个请求（一次 flush），等 batch 个应答全部收到，吞吐量单位是每秒批次数
+ * 服务端在 pipeline 最前面统计到达 socket 的 flush 次数（约等于 write 系统调用次数），结束时打印每个请求的 flush 次数
+ * executor :
+ *   eventLoop : 处理器在 EventLoop 中执行（-Ditdragon.business.threads=0）
+ *   business  : 和 delimiter 服务端一样由 ITDragonBusinessExecutor 的线程池执行，应答在读循环结束后才回到 EventLoop
+ * 运行方式：mvn test-compile 后执行 main 方法
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(value = 1, jvmArgsAppend = "-Ditdragon.netty.quiet=true")
+public class FlushBenchmark {
+
+	private static final int PORT = 9401;
+	private static final String DELIMITER = "_$";
+
+	@Param({ "false", "true" })
+	private boolean consolidate;
+
+	@Param({ "1", "16" })
+	private int batch;
+
+	@Param({ "eventLoop", "business" })
+	private String executor;
+
+	private final LongAdder flushes = new LongAdder();
+	private final LongAdder requests = new LongAdder();
+	private EventLoopGroup bossGroup;
+	private EventLoopGroup workerGroup;
+	private EventLoopGroup clientGroup;
+	private EventExecutorGroup businessGroup;
+	private Channel[] serverChannels;
+
+	@Setup(Level.Trial)
+	public void startServer() throws InterruptedException {
+		ITDragonTransport transport = ITDragonTransport.NIO;
+		bossGroup = transport.newBossGroup();
+		workerGroup = transport.newEventLoopGroup();
+		clientGroup = transport.newEventLoopGroup();
+		businessGroup = "business".equals(executor) ? ITDragonBusinessExecutor.newGroup() : null;
+		ServerBootstrap bootstrap = transport.configure(new ServerBootstrap().group(bossGroup, workerGroup))
+				.childOption(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT)
+				.childHandler(new ChannelInitializer<SocketChannel>() {
+					@Override
+					protected void initChannel(SocketChannel socketChannel) throws Exception {
+						socketChannel.pipeline().addLast(new ChannelOutboundHandlerAdapter() {
+							@Override
+							public void flush(ChannelHandlerContext ctx) throws Exception {
+								flushes.increment();
+								ctx.flush();
+							}
+						});
+						ITDragonFlushConsolidation.add(socketChannel.pipeline(), consolidate, null != businessGroup);
+						socketChannel.pipeline().addLast(new ITDragonDelimiterDecoder());
+						ITDragonBusinessExecutor.addLast(socketChannel.pipeline(), businessGroup, "handler", new ITDragonServerHandler());
+					}
+				});
+		serverChannels = transport.bind(bootstrap, PORT);
+	}
+
+	@TearDown(Level.Trial)
+	public void stopServer() {
+		System.out.println();
+		System.out.println("consolidate=" + consolidate + " batch=" + batch + " executor=" + executor + " 每个请求的 flush 次数 : "
+				+ String.format("%.3f", (double) flushes.sum() / Math.max(1, requests.sum())));
+		for (Channel channel : serverChannels) {
+			channel.close().syncUninterruptibly();
+		}
+		clientGroup.shutdownGracefully().syncUninterruptibly();
+		if (null != businessGroup) {
+			businessGroup.shutdownGracefully().syncUninterruptibly();
+		}
+		workerGroup.shutdownGracefully().syncUninterruptibly();
+		bossGroup.shutdownGracefully().syncUninterruptibly();
+	}
+
+	/**
+	 * 每个测试线程一个客户端连接，每收到一个应答释放一个许可
+	 */
+	@State(Scope.Thread)
+	public static class Client {
+
+		private final Semaphore responses = new Semaphore(0);
+		private ByteBuf requests;
+		private Channel channel;
+
+		@Setup(Level.Trial)
+		public void connect(FlushBenchmark server) throws InterruptedException {
+			StringBuilder sb = new StringBuilder();
+			for (int i = 0; i < server.batch; i++) {
+				sb.append("6*7-3/2").append(DELIMITER);
+			}
+			requests = Unpooled.unreleasableBuffer(Unpooled.directBuffer().writeBytes(sb.toString().getBytes()));
+			Bootstrap bootstrap = ITDragonTransport.NIO.configure(new Bootstrap().group(server.clientGroup))
+					.handler(new ChannelInitializer<SocketChannel>() {
+						@Override
+						protected void initChannel(SocketChannel socketChannel) throws Exception {
+							ByteBuf delimiter = Unpooled.copiedBuffer(DELIMITER.getBytes());
+							socketChannel.pipeline().addLast(new DelimiterBasedFrameDecoder(128, delimiter));
+							socketChannel.pipeline().addLast(new SimpleChannelInboundHandler<ByteBuf>() {
+								@Override
+								protected void channelRead0(ChannelHandlerContext ctx, ByteBuf msg) {
+									responses.release();
+								}
+							});
+						}
+					});
+			channel = bootstrap.connect("127.0.0.1", PORT).sync().channel();
+		}
+
+		@TearDown(Level.Trial)
+		public void close() {
+			channel.close().syncUninterruptibly();
+		}
+	}
+
+	@Benchmark
+	public void pipelined(Client client) throws InterruptedException {
+		client.channel.writeAndFlush(client.requests.duplicate());
+		client.responses.acquire(batch);
+		requests.add(batch);
+	}
+
+	public static void main(String[] args) throws Exception {
+		Options options = new OptionsBuilder().include(FlushBenchmark.class.getSimpleName()).build();
+		new Runner(options).run();
+	}
+
+}
@@ -0,0 +1,207 @@
+package com.itdragon.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.itdragon.delimiter.ITDragonDelimiterDecoder;
+import com.itdragon.delimiter.ITDragonServerHandler;
+import com.itdragon.marshalling.ITDragonMarshallerFactory;
+import com.itdragon.marshalling.ITDragonReqData;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.DelimiterBasedFrameDecoder;
+import io.netty.handler.codec.FixedLengthFrameDecoder;
+import io.netty.handler.codec.string.StringDecoder;
+import io.netty.util.CharsetUtil;
+import io.netty.util.ReferenceCountUtil;
+
+/**
+ * 服务端各种拆包 + 解码配置的基线，每次操作把 MESSAGES 条消息送进 EmbeddedChannel 并取出全部解码结果
+ * pipeline :
+ *   delimiter       : DelimiterBasedFrameDecoder，"_$" 分隔符，得到 ByteBuf
+ *   itdragonDelimiter : ITDragonDelimiterDecoder，delimiter 包服务端现在的配置，得到 ByteBuf
+ *   delimiterString : 再加上 StringDecoder，得到 String（delimiter 包原来的配置）
+ *   fixedLength     : FixedLengthFrameDecoder（delimiter 包中注释掉的配置），帧长就是消息长度
+ *   marshalling     : JBoss Marshalling 解码器（自带长度字段拆包），消息是 ITDragonReqData
+ *   binary          : 长度字段拆包 + 二进制解码器，消息是 ITDragonReqData
+ * size  : 消息体的字节数，delimiter / fixedLength 是表达式文本的长度，marshalling / binary 是 requestMsg 的长度
+ * input : 数据到达的方式
+ *   single    : 每次读正好一条消息
+ *   coalesced : 一次读到 MESSAGES 条消息（客户端流水线发送，TCP 合包）
+ *   split     : 每条消息被拆成3段左右到达，段的边界和消息边界不对齐（TCP 拆包，解码器需要累积）
+ * 每次读的数据是内存池中同一块数据的 retainedSlice，和 socket 读到的池化 ByteBuf 一样由解码器释放。
+ * 吞吐量单位是每秒操作数，每次操作 MESSAGES 条消息；-prof gc 的 gc.alloc.rate.norm 是每次操作分配的字节数，除以 MESSAGES 是每条消息。
+ * 编码器的开销见 CodecBenchmark。
+ * 运行方式：mvn test-compile 后执行 main 方法，main 中已经加上了 -prof gc 和 JDK9+ 需要的 --add-opens
+ * DelimiterBasedFrameDecoder 原来的最大帧长是128，这里取 max(128, size)，大消息也能拆出来
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FrameDecoderBenchmark {
+
+	private static final int MESSAGES = 16;
+	private static final String EXPRESSION = "6*7-3/2+"; 	// 填充表达式的文本
+
+	@Param({ "delimiter", "itdragonDelimiter", "delimiterString", "fixedLength", "marshalling", "binary" })
+	private String pipeline;
+
+	@Param({ "8", "100", "1000" })
+	private int size;
+
+	@Param({ "single", "coalesced", "split" })
+	private String input;
+
+	private EmbeddedChannel channel;
+	private ByteBuf stream; 	// MESSAGES 条消息连在一起的字节流
+	private int[] offsets; 		// 每次读的起始位置，最后一个是 stream 的长度
+
+	@Setup
+	public void setup() {
+		channel = newChannel();
+		stream = PooledByteBufAllocator.DEFAULT.directBuffer();
+		List<Integer> frames = new ArrayList<Integer>();
+		for (int i = 0; i < MESSAGES; i++) {
+			frames.add(stream.writerIndex());
+			writeMessage(stream);
+		}
+		frames.add(stream.writerIndex());
+		offsets = toOffsets(frames);
+		System.out.println();
+		System.out.println(pipeline + " size=" + size + " input=" + input + " 每条消息字节数 : " + stream.readableBytes() / MESSAGES
+				+ " 每次操作读 " + (offsets.length - 1) + " 次");
+		int decoded = decode();
+		if (MESSAGES != decoded) {
+			throw new IllegalStateException("decoded " + decoded + " messages, expected " + MESSAGES);
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		stream.release();
+		channel.finishAndReleaseAll();
+	}
+
+	@Benchmark
+	public int decode() {
+		for (int i = 1; i < offsets.length; i++) {
+			channel.writeInbound(stream.retainedSlice(offsets[i - 1], offsets[i] - offsets[i - 1]));
+		}
+		int count = 0;
+		Object msg;
+		while (null != (msg = channel.readInbound())) {
+			ReferenceCountUtil.release(msg);
+			count++;
+		}
+		return count;
+	}
+
+	private EmbeddedChannel newChannel() {
+		if ("delimiter".equals(pipeline)) {
+			return new EmbeddedChannel(new DelimiterBasedFrameDecoder(Math.max(128, size), ITDragonServerHandler.DELIMITER));
+		}
+		if ("itdragonDelimiter".equals(pipeline)) {
+			return new EmbeddedChannel(new ITDragonDelimiterDecoder(Math.max(128, size)));
+		}
+		if ("delimiterString".equals(pipeline)) {
+			return new EmbeddedChannel(new DelimiterBasedFrameDecoder(Math.max(128, size), ITDragonServerHandler.DELIMITER),
+					new StringDecoder());
+		}
+		if ("fixedLength".equals(pipeline)) {
+			return new EmbeddedChannel(new FixedLengthFrameDecoder(size));
+		}
+		if ("binary".equals(pipeline)) {
+			return new EmbeddedChannel(ITDragonMarshallerFactory.buildBinaryFrameDecoder(),
+					ITDragonMarshallerFactory.buildBinaryDecoder());
+		}
+		return new EmbeddedChannel(ITDragonMarshallerFactory.buildMarshallingDecoder());
+	}
+
+	// 按 pipeline 的格式写一条 size 字节的消息
+	private void writeMessage(ByteBuf out) {
+		byte[] text = text(size).getBytes(CharsetUtil.US_ASCII);
+		if ("fixedLength".equals(pipeline)) {
+			out.writeBytes(text);
+		} else if (pipeline.startsWith("delimiter") || "itdragonDelimiter".equals(pipeline)) {
+			out.writeBytes(text);
+			out.writeBytes(ITDragonServerHandler.DELIMITER, ITDragonServerHandler.DELIMITER.readerIndex(),
+					ITDragonServerHandler.DELIMITER.readableBytes());
+		} else {
+			EmbeddedChannel encoder = new EmbeddedChannel("binary".equals(pipeline) ? ITDragonMarshallerFactory.buildBinaryEncoder()
+					: ITDragonMarshallerFactory.builMarshallingEncoder());
+			ITDragonReqData data = new ITDragonReqData();
+			data.setId(42L);
+			data.setName("ITDragon-42");
+			data.setRequestMsg(text(size));
+			encoder.writeOutbound(data);
+			ByteBuf encoded = (ByteBuf) encoder.readOutbound();
+			out.writeBytes(encoded);
+			encoded.release();
+			encoder.finishAndReleaseAll();
+		}
+	}
+
+	// frames 是每条消息的起始位置，按 input 换算成每次读的起始位置
+	private int[] toOffsets(List<Integer> frames) {
+		int total = frames.get(frames.size() - 1);
+		List<Integer> reads = new ArrayList<Integer>();
+		if ("coalesced".equals(input)) {
+			reads.add(0);
+		} else if ("single".equals(input)) {
+			reads.addAll(frames.subList(0, frames.size() - 1));
+		} else {
+			int chunk = Math.max(1, (total / MESSAGES + 2) / 3); 	// 约三分之一条消息，总长不整除所以边界会错开
+			for (int i = 0; i < total; i += chunk) {
+				reads.add(i);
+			}
+		}
+		int[] offsets = new int[reads.size() + 1];
+		for (int i = 0; i < reads.size(); i++) {
+			offsets[i] = reads.get(i);
+		}
+		offsets[reads.size()] = total;
+		return offsets;
+	}
+
+	private static String text(int length) {
+		StringBuilder sb = new StringBuilder(length);
+		while (sb.length() < length) {
+			sb.append(EXPRESSION);
+		}
+		sb.setLength(length);
+		return sb.toString();
+	}
+
+	public static void main(String[] args) throws Exception {
+		OptionsBuilder builder = new OptionsBuilder();
+		builder.include(FrameDecoderBenchmark.class.getSimpleName()).addProfiler("gc");
+		if (!System.getProperty("java.specification.version").startsWith("1.")) {
+			// JDK9+ 上 JBoss Marshalling 需要反射访问 java.base 的内部类
+			builder.jvmArgsAppend("--add-opens", "java.base/java.io=ALL-UNNAMED", "--add-opens",
+					"java.base/java.lang=ALL-UNNAMED", "--add-opens", "java.base/java.util=ALL-UNNAMED");
+		}
+		new Runner(builder.build()).run();
+	}
+
+}
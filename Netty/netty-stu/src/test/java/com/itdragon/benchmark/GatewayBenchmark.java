@@ -0,0 +1,210 @@
+package com.itdragon.benchmark;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.itdragon.delimiter.ITDragonDelimiterDecoder;
+import com.itdragon.delimiter.ITDragonServerHandler;
+import com.itdragon.http.ITDragonHttpServer;
+import com.itdragon.utils.ITDragonBusinessExecutor;
+import com.itdragon.utils.ITDragonFlushConsolidation;
+import com.itdragon.utils.ITDragonTransport;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.handler.codec.DelimiterBasedFrameDecoder;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpClientCodec;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.util.CharsetUtil;
+import io.netty.util.concurrent.EventExecutorGroup;
+
+/**
+ * HTTP 网关和原始 "_$" 分隔符 TCP 协议的每秒请求数对比，两个服务端绑定在同一组 EventLoopGroup 上，
+ * 和正式服务端一样由 ITDragonBusinessExecutor 的默认线程池计算（-Ditdragon.business.threads=0 时在 EventLoop 中计算）
+ * protocol :
+ *   tcp  : delimiter 包服务端的配置（ITDragonDelimiterDecoder + ITDragonServerHandler），请求 "6*7-3/2_$"
+ *   http : ITDragonHttpServer 的配置，请求 GET /calc?expr=6*7-3/2，keep-alive 连接
+ * requestResponse : 一问一答，每次操作一个请求
+ * pipelined       : 一次写出 DEPTH 个请求再等全部应答（HTTP 流水线 / TCP 合包），得分按请求数计算
+ * 每个测试线程一个连接，吞吐量单位是每秒请求数。
+ * 运行方式：mvn test-compile 后执行 main 方法
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(16)
+@Fork(value = 1, jvmArgsAppend = "-Ditdragon.netty.quiet=true")
+public class GatewayBenchmark {
+
+	private static final int TCP_PORT = 9500;
+	private static final int HTTP_PORT = 9501;
+	private static final int DEPTH = 16;
+	private static final String EXPRESSION = "6*7-3/2";
+	private static final String DELIMITER = "_$";
+	private static final ITDragonTransport TRANSPORT = ITDragonTransport.select();
+
+	@Param({ "tcp", "http" })
+	private String protocol;
+
+	private EventLoopGroup bossGroup;
+	private EventLoopGroup workerGroup;
+	private EventLoopGroup clientGroup;
+	private EventExecutorGroup businessGroup;
+	private Channel[] tcpChannels;
+	private Channel[] httpChannels;
+
+	@Setup(Level.Trial)
+	public void startServer() throws InterruptedException {
+		bossGroup = TRANSPORT.newBossGroup();
+		workerGroup = TRANSPORT.newEventLoopGroup();
+		clientGroup = TRANSPORT.newEventLoopGroup();
+		businessGroup = ITDragonBusinessExecutor.newGroup();
+		ServerBootstrap bootstrap = TRANSPORT.configure(new ServerBootstrap().group(bossGroup, workerGroup))
+				.childHandler(new ChannelInitializer<SocketChannel>() {
+					@Override
+					protected void initChannel(SocketChannel socketChannel) throws Exception {
+						ITDragonFlushConsolidation.add(socketChannel.pipeline(), businessGroup);
+						socketChannel.pipeline().addLast(new ITDragonDelimiterDecoder());
+						ITDragonBusinessExecutor.addLast(socketChannel.pipeline(), businessGroup, "handler", new ITDragonServerHandler());
+					}
+				})
+				.childOption(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT);
+		tcpChannels = TRANSPORT.bind(bootstrap, TCP_PORT);
+		httpChannels = ITDragonHttpServer.bind(TRANSPORT, bossGroup, workerGroup, businessGroup, HTTP_PORT);
+	}
+
+	@TearDown(Level.Trial)
+	public void stopServer() {
+		for (Channel channel : tcpChannels) {
+			channel.close().syncUninterruptibly();
+		}
+		for (Channel channel : httpChannels) {
+			channel.close().syncUninterruptibly();
+		}
+		clientGroup.shutdownGracefully().syncUninterruptibly();
+		ITDragonBusinessExecutor.shutdown(businessGroup);
+		workerGroup.shutdownGracefully().syncUninterruptibly();
+		bossGroup.shutdownGracefully().syncUninterruptibly();
+	}
+
+	/**
+	 * 每个测试线程一个客户端连接，收到的应答内容放入队列
+	 */
+	@State(Scope.Thread)
+	public static class Client {
+
+		private final BlockingQueue<String> responses = new LinkedBlockingQueue<String>();
+		private final ByteBuf request = Unpooled.unreleasableBuffer(Unpooled.directBuffer().writeBytes((EXPRESSION + DELIMITER).getBytes()));
+		private boolean http;
+		private Channel channel;
+
+		@Setup(Level.Trial)
+		public void connect(GatewayBenchmark server) throws InterruptedException {
+			http = "http".equals(server.protocol);
+			Bootstrap bootstrap = TRANSPORT.configure(new Bootstrap().group(server.clientGroup))
+					.handler(new ChannelInitializer<SocketChannel>() {
+						@Override
+						protected void initChannel(SocketChannel socketChannel) throws Exception {
+							if (http) {
+								socketChannel.pipeline().addLast(new HttpClientCodec());
+								socketChannel.pipeline().addLast(new HttpObjectAggregator(1024));
+								socketChannel.pipeline().addLast(new SimpleChannelInboundHandler<FullHttpResponse>() {
+									@Override
+									protected void channelRead0(ChannelHandlerContext ctx, FullHttpResponse msg) {
+										responses.add(msg.content().toString(CharsetUtil.UTF_8));
+									}
+								});
+								return;
+							}
+							ByteBuf delimiter = Unpooled.copiedBuffer(DELIMITER.getBytes());
+							socketChannel.pipeline().addLast(new DelimiterBasedFrameDecoder(128, delimiter));
+							socketChannel.pipeline().addLast(new SimpleChannelInboundHandler<ByteBuf>() {
+								@Override
+								protected void channelRead0(ChannelHandlerContext ctx, ByteBuf msg) {
+									responses.add(msg.toString(CharsetUtil.UTF_8));
+								}
+							});
+						}
+					});
+			channel = bootstrap.connect("127.0.0.1", http ? HTTP_PORT : TCP_PORT).sync().channel();
+		}
+
+		@TearDown(Level.Trial)
+		public void close() {
+			channel.close().syncUninterruptibly();
+		}
+
+		private Object newRequest() {
+			if (!http) {
+				return request.duplicate();
+			}
+			FullHttpRequest request = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/calc?expr=" + EXPRESSION);
+			request.headers().set(HttpHeaderNames.HOST, "127.0.0.1");
+			return request;
+		}
+	}
+
+	@Benchmark
+	public String requestResponse(Client client) throws InterruptedException {
+		client.channel.writeAndFlush(client.newRequest());
+		return client.responses.take();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(DEPTH)
+	public String pipelined(Client client) throws InterruptedException {
+		for (int i = 0; i < DEPTH; i++) {
+			client.channel.write(client.newRequest());
+		}
+		client.channel.flush();
+		String response = null;
+		for (int i = 0; i < DEPTH; i++) {
+			response = client.responses.take();
+		}
+		return response;
+	}
+
+	public static void main(String[] args) throws Exception {
+		Options options = new OptionsBuilder().include(GatewayBenchmark.class.getSimpleName()).build();
+		new Runner(options).run();
+	}
+
+}
@@ -0,0 +1,86 @@
+package com.itdragon.benchmark;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.itdragon.monitoring.ITDragonMetric;
+import com.itdragon.monitoring.ITDragonMetricsStore;
+
+/**
+ * 时序存储的写入和查询耗时
+ * record : 写入一次心跳，看 gc.alloc.rate.norm 一项，应当为 0 B/op
+ * top10Cpu5Minutes : 最近 5 分钟 cpu 最高的 10 台主机
+ * 准备阶段写入 hosts 台主机各 2 小时的心跳（10 秒一个）。
+ * 运行方式：mvn test-compile 后执行 main 方法，main 中已经加上了 GC profiler
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MetricsStoreBenchmark {
+
+	@Param({ "1000", "5000" })
+	private int hosts;
+
+	private ITDragonMetricsStore store;
+	private String[] names;
+	private double[] values = new double[ITDragonMetric.COUNT];
+	private long now;
+	private int next;
+
+	@Setup
+	public void setup() {
+		store = new ITDragonMetricsStore();
+		names = new String[hosts];
+		Random random = new Random(1);
+		now = System.currentTimeMillis();
+		for (int i = 0; i < hosts; i++) {
+			names[i] = "192.168." + (i / 256) + "." + (i % 256);
+		}
+		for (long time = now - 2 * ITDragonMetricsStore.HOUR; time < now; time += 10 * ITDragonMetricsStore.SECOND) {
+			for (String name : names) {
+				for (int metric = 0; metric < values.length; metric++) {
+					values[metric] = random.nextDouble();
+				}
+				store.record(name, time, values);
+			}
+		}
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.NANOSECONDS)
+	public void record() {
+		store.record(names[next++ % hosts], now, values);
+	}
+
+	@Benchmark
+	public List<ITDragonMetricsStore.HostValue> top10Cpu5Minutes() {
+		return store.top(ITDragonMetric.CPU, now - 5 * ITDragonMetricsStore.MINUTE, now, 10);
+	}
+
+	public static void main(String[] args) throws Exception {
+		Options options = new OptionsBuilder().include(MetricsStoreBenchmark.class.getSimpleName())
+				.addProfiler(GCProfiler.class).build();
+		new Runner(options).run();
+	}
+
+}
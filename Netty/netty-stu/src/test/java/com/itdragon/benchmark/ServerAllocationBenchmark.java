@@ -0,0 +1,120 @@
+package com.itdragon.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.itdragon.delimiter.ITDragonDelimiterDecoder;
+import com.itdragon.delimiter.ITDragonServerHandler;
+import com.itdragon.utils.ITDragonUtil;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.DelimiterBasedFrameDecoder;
+import io.netty.handler.codec.string.StringDecoder;
+import io.netty.util.CharsetUtil;
+import io.netty.util.ReferenceCountUtil;
+
+/**
+ * delimiter 服务端每个请求分配的字节数，看 gc.alloc.rate.norm 一项（B/op，即每个请求分配的字节数）
+ * legacy : 原来的写法，StringDecoder + String 拼接 + getBytes() + Unpooled.copiedBuffer
+ * pooled : 现在的 ITDragonDelimiterDecoder + ITDragonServerHandler，按字节查表达式缓存，应答直接写入池化的直接内存
+ * 使用 EmbeddedChannel 驱动 "拆包解码器 -> 处理器" 这段 pipeline，不包括网络IO，两组的 EmbeddedChannel 开销相同。
+ * 运行方式：mvn test-compile 后执行 main 方法，main 中已经加上了 GC profiler
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Ditdragon.netty.quiet=true")
+public class ServerAllocationBenchmark {
+
+	@Param({ "legacy", "pooled" })
+	private String handler;
+
+	@Param({ "6*7-3/2", "(1+2)*3" })
+	private String expression;
+
+	private EmbeddedChannel channel;
+	private ByteBuf request; 	// 每次请求重复使用，发送前 retain 一次，由拆包解码器释放
+
+	@Setup
+	public void setup() {
+		if ("legacy".equals(handler)) {
+			channel = new EmbeddedChannel(new DelimiterBasedFrameDecoder(128, Unpooled.copiedBuffer("_$".getBytes())),
+					new StringDecoder(), new LegacyServerHandler());
+		} else {
+			channel = new EmbeddedChannel(new ITDragonDelimiterDecoder(), new ITDragonServerHandler());
+		}
+		channel.config().setAllocator(PooledByteBufAllocator.DEFAULT);
+		request = PooledByteBufAllocator.DEFAULT.directBuffer().writeBytes((expression + "_$").getBytes(CharsetUtil.UTF_8));
+		String expected = ITDragonUtil.cal(expression) + "_$";
+		String actual = requestResponse().toString(CharsetUtil.UTF_8);
+		if (!expected.equals(actual)) {
+			throw new IllegalStateException("expected " + expected + " but was " + actual);
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		request.release();
+		channel.finishAndReleaseAll();
+	}
+
+	@Benchmark
+	public int request() {
+		ByteBuf response = requestResponse();
+		int size = response.readableBytes();
+		response.release();
+		return size;
+	}
+
+	private ByteBuf requestResponse() {
+		request.retain().readerIndex(0);
+		channel.pipeline().fireChannelRead(request);	// 不用 writeInbound，避免可变参数数组的分配
+		channel.pipeline().fireChannelReadComplete();
+		return (ByteBuf) channel.readOutbound();
+	}
+
+	/**
+	 * 改造之前的 ITDragonServerHandler，作为对比
+	 */
+	private static class LegacyServerHandler extends ChannelInboundHandlerAdapter {
+		@Override
+		public void channelRead(ChannelHandlerContext chc, Object msg) {
+			try {
+				String response = ITDragonUtil.cal(msg.toString()) + "_$";
+				chc.channel().writeAndFlush(Unpooled.copiedBuffer(response.getBytes()));
+			} finally {
+				ReferenceCountUtil.release(msg);
+			}
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		Options options = new OptionsBuilder().include(ServerAllocationBenchmark.class.getSimpleName())
+				.addProfiler(GCProfiler.class).build();
+		new Runner(options).run();
+	}
+
+}
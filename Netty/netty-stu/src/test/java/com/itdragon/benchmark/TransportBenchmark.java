@@ -0,0 +1,140 @@
+package com.itdragon.benchmark;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.itdragon.delimiter.ITDragonDelimiterDecoder;
+import com.itdragon.delimiter.ITDragonServerHandler;
+import com.itdragon.utils.ITDragonTransport;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.handler.codec.DelimiterBasedFrameDecoder;
+import io.netty.util.CharsetUtil;
+
+/**
+ * NIO 和 epoll 传输层的对比，服务端使用 delimiter 包下的 "_$" 分隔符计算器服务
+ * 每个测试线程一个连接，一问一答，吞吐量单位是每秒请求数。客户端和服务端使用同一种传输层。
+ * epoll 需要 Linux x86_64，native 库不可用时 EPOLL 一组会在 Setup 中失败。
+ * 运行方式：mvn test-compile 后执行 main 方法
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(16)
+@Fork(value = 1, jvmArgsAppend = "-Ditdragon.netty.quiet=true")
+public class TransportBenchmark {
+
+	private static final int PORT = 9400;
+	private static final String DELIMITER = "_$";
+
+	@Param({ "NIO", "EPOLL" })
+	private ITDragonTransport transport;
+
+	private EventLoopGroup bossGroup;
+	private EventLoopGroup workerGroup;
+	private EventLoopGroup clientGroup;
+	private Channel[] serverChannels;
+
+	@Setup(Level.Trial)
+	public void startServer() throws InterruptedException {
+		bossGroup = transport.newBossGroup();
+		workerGroup = transport.newEventLoopGroup();
+		clientGroup = transport.newEventLoopGroup();
+		ServerBootstrap bootstrap = transport.configure(new ServerBootstrap().group(bossGroup, workerGroup))
+				.childHandler(new ChannelInitializer<SocketChannel>() {
+					@Override
+					protected void initChannel(SocketChannel socketChannel) throws Exception {
+						socketChannel.pipeline().addLast(new ITDragonDelimiterDecoder());
+						socketChannel.pipeline().addLast(new ITDragonServerHandler());
+					}
+				});
+		serverChannels = transport.bind(bootstrap, PORT);
+	}
+
+	@TearDown(Level.Trial)
+	public void stopServer() {
+		for (Channel channel : serverChannels) {
+			channel.close().syncUninterruptibly();
+		}
+		clientGroup.shutdownGracefully().syncUninterruptibly();
+		workerGroup.shutdownGracefully().syncUninterruptibly();
+		bossGroup.shutdownGracefully().syncUninterruptibly();
+	}
+
+	/**
+	 * 每个测试线程一个客户端连接，收到的应答放入队列
+	 */
+	@State(Scope.Thread)
+	public static class Client {
+
+		private final BlockingQueue<String> responses = new LinkedBlockingQueue<String>();
+		private final ByteBuf request = Unpooled.unreleasableBuffer(Unpooled.directBuffer().writeBytes(("6*7-3/2" + DELIMITER).getBytes()));
+		private Channel channel;
+
+		@Setup(Level.Trial)
+		public void connect(TransportBenchmark server) throws InterruptedException {
+			Bootstrap bootstrap = server.transport.configure(new Bootstrap().group(server.clientGroup))
+					.handler(new ChannelInitializer<SocketChannel>() {
+						@Override
+						protected void initChannel(SocketChannel socketChannel) throws Exception {
+							ByteBuf delimiter = Unpooled.copiedBuffer(DELIMITER.getBytes());
+							socketChannel.pipeline().addLast(new DelimiterBasedFrameDecoder(128, delimiter));
+							socketChannel.pipeline().addLast(new SimpleChannelInboundHandler<ByteBuf>() {
+								@Override
+								protected void channelRead0(ChannelHandlerContext ctx, ByteBuf msg) {
+									responses.add(msg.toString(CharsetUtil.UTF_8));
+								}
+							});
+						}
+					});
+			channel = bootstrap.connect("127.0.0.1", PORT).sync().channel();
+		}
+
+		@TearDown(Level.Trial)
+		public void close() {
+			channel.close().syncUninterruptibly();
+		}
+	}
+
+	@Benchmark
+	public String requestResponse(Client client) throws InterruptedException {
+		client.channel.writeAndFlush(client.request.duplicate());
+		return client.responses.take();
+	}
+
+	public static void main(String[] args) throws Exception {
+		Options options = new OptionsBuilder().include(TransportBenchmark.class.getSimpleName()).build();
+		new Runner(options).run();
+	}
+
+}
@@ -0,0 +1,105 @@
+package com.itdragon.aio;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousSocketChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.charset.StandardCharsets;
+
+import com.itdragon.util.CalculatorUtil;
+
+/**
+ * 一个客户端连接的异步读写状态机
+ * 读完成 -> 计算 -> 写 -> 写完成（没写完则继续写） -> 再读 …… 直到客户端关闭连接（读到 -1）
+ * 每一步都在回调中发起下一步异步操作，不会调用 Future.get() 阻塞通道组的线程。
+ * 读写缓冲区和两个 CompletionHandler 都属于这个连接，整个连接期间重复使用。
+ * 同一时刻一个连接上最多只有一个读或者一个写在进行，所以不需要同步。
+ * @author itdragon
+ *
+ */
+public class ITDragonAIOConnection {
+
+	private static final int BUFFER_SIZE = 1024;
+
+	private final AsynchronousSocketChannel channel;
+	private final ByteBuffer readBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+	private ByteBuffer writeBuffer = ByteBuffer.allocate(BUFFER_SIZE); // 应答超过容量时扩容
+	private final ReadHandler readHandler = new ReadHandler();
+	private final WriteHandler writeHandler = new WriteHandler();
+
+	public ITDragonAIOConnection(AsynchronousSocketChannel channel) {
+		this.channel = channel;
+	}
+
+	public void start() {
+		read();
+	}
+
+	private void read() {
+		readBuffer.clear();
+		channel.read(readBuffer, null, readHandler);
+	}
+
+	private void write(String response) {
+		byte[] bytes = response.getBytes(StandardCharsets.UTF_8);
+		if (bytes.length > writeBuffer.capacity()) {
+			writeBuffer = ByteBuffer.allocate(bytes.length);
+		}
+		writeBuffer.clear();
+		writeBuffer.put(bytes);
+		writeBuffer.flip();
+		channel.write(writeBuffer, null, writeHandler);
+	}
+
+	private void close() {
+		try {
+			channel.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	// 读完成：只解码本次读到的字节，计算后发起写
+	private class ReadHandler implements CompletionHandler<Integer, Void> {
+		@Override
+		public void completed(Integer resultSize, Void attachment) {
+			if (resultSize < 0) {
+				close(); // 客户端关闭了连接
+				return;
+			}
+			readBuffer.flip();
+			String resultData = StandardCharsets.UTF_8.decode(readBuffer).toString().trim();
+			if (resultData.isEmpty()) {
+				read();
+				return;
+			}
+			System.out.println("Server -> " + "收到客户端的数据信息为:" + resultData);
+			write(resultData + " = " + CalculatorUtil.cal(resultData));
+		}
+
+		@Override
+		public void failed(Throwable exc, Void attachment) {
+			exc.printStackTrace();
+			close();
+		}
+	}
+
+	// 写完成：没写完则继续写剩下的字节，写完后继续读下一个请求
+	private class WriteHandler implements CompletionHandler<Integer, Void> {
+		@Override
+		public void completed(Integer resultSize, Void attachment) {
+			if (writeBuffer.hasRemaining()) {
+				channel.write(writeBuffer, null, this);
+			} else {
+				read();
+			}
+		}
+
+		@Override
+		public void failed(Throwable exc, Void attachment) {
+			exc.printStackTrace();
+			close();
+		}
+	}
+
+}
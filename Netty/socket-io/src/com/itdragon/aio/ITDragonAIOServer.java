@@ -3,35 +3,32 @@ package com.itdragon.aio;
 import java.net.InetSocketAddress;
 import java.nio.channels.AsynchronousChannelGroup;
 import java.nio.channels.AsynchronousServerSocketChannel;
-import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
 /**
  * AIO, 也叫 NIO2.0 是一种异步非阻塞的通信方式
  * NIO 通过多路复用器轮询注册的通道，从而实现非阻塞效果，同时也说明了NIO是同步的。既然AIO是非阻塞的，哪它又是如何实现异步非阻塞的呢？
  * AIO 引入了异步通道的概念 AsynchronousServerSocketChannel 和 AsynchronousSocketChannel
+ * 通道组使用固定大小（CPU核数）的线程池：回调中不做阻塞操作，线程数和CPU核数一致即可，不需要无上限的缓存线程池
  * 
  * @author itdragon
  *
  */
 public class ITDragonAIOServer {
 	  
-    private ExecutorService executorService;  		// 线程池
     private AsynchronousChannelGroup threadGroup;  	// 通道组
     public AsynchronousServerSocketChannel asynServerSocketChannel;  // 服务器通道 
       
     public void start(Integer port){  
         try {  
-            // 1.创建一个缓存池  
-            executorService = Executors.newCachedThreadPool();  
-            // 2.创建通道组  
-            threadGroup = AsynchronousChannelGroup.withCachedThreadPool(executorService, 1);  
-            // 3.创建服务器通道  
+            // 1.创建通道组，固定CPU核数个线程  
+            threadGroup = AsynchronousChannelGroup.withFixedThreadPool(Runtime.getRuntime().availableProcessors(), Executors.defaultThreadFactory());  
+            // 2.创建服务器通道  
             asynServerSocketChannel = AsynchronousServerSocketChannel.open(threadGroup);  
-            // 4.进行绑定  
+            // 3.进行绑定  
             asynServerSocketChannel.bind(new InetSocketAddress(port));  
             System.out.println("server start , port : " + port);  
-            // 5.等待客户端请求  
+            // 4.等待客户端请求  
             asynServerSocketChannel.accept(this, new ITDragonAIOServerHandler());  
             // 一直阻塞 不让服务器停止，真实环境是在tomcat下运行，所以不需要这行代码  
             Thread.sleep(Integer.MAX_VALUE);  
@@ -0,0 +1,92 @@
+package com.itdragon.benchmark;
+
+import java.util.Arrays;
+
+/**
+ * 延迟直方图（HDR 风格的对数-线性分桶），单位微秒
+ * 小于 2048 微秒的值每微秒一个桶；更大的值按 2 的幂分段，每段再均分 1024 个桶，相对误差不超过 0.1%。
+ * 记录一个值只是一次数组自增，不分配对象。不是线程安全的，每个压测线程使用自己的直方图，结束后用 add 合并。
+ * @author itdragon
+ *
+ */
+public class ITDragonLatencyHistogram {
+
+	private static final int SUB_BUCKET_BITS = 10;
+	private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS; 	// 每段的桶数
+	private static final int LINEAR_LIMIT = SUB_BUCKET_COUNT << 1; 		// 小于该值时线性分桶
+	private static final int BUCKET_COUNT = (64 - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT + LINEAR_LIMIT;
+
+	private final long[] counts = new long[BUCKET_COUNT];
+	private long totalCount;
+	private long max;
+
+	public void record(long micros) {
+		if (micros < 0) {
+			micros = 0;
+		}
+		counts[indexOf(micros)]++;
+		totalCount++;
+		if (micros > max) {
+			max = micros;
+		}
+	}
+
+	public void add(ITDragonLatencyHistogram other) {
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			counts[i] += other.counts[i];
+		}
+		totalCount += other.totalCount;
+		max = Math.max(max, other.max);
+	}
+
+	public long getTotalCount() {
+		return totalCount;
+	}
+
+	public long getMax() {
+		return max;
+	}
+
+	/**
+	 * @param percentile 0 ~ 100，如 99.9
+	 * @return 对应分位的延迟（桶的上界），没有数据时返回0
+	 */
+	public long percentile(double percentile) {
+		if (0 == totalCount) {
+			return 0;
+		}
+		long target = Math.max(1, (long) Math.ceil(percentile / 100 * totalCount));
+		long cumulative = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			cumulative += counts[i];
+			if (cumulative >= target) {
+				return Math.min(highestValueOf(i), max);
+			}
+		}
+		return max;
+	}
+
+	public void reset() {
+		Arrays.fill(counts, 0);
+		totalCount = 0;
+		max = 0;
+	}
+
+	private static int indexOf(long value) {
+		if (value < LINEAR_LIMIT) {
+			return (int) value;
+		}
+		int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+		return shift * SUB_BUCKET_COUNT + (int) (value >>> shift);
+	}
+
+	private static long highestValueOf(int index) {
+		if (index < LINEAR_LIMIT) {
+			return index;
+		}
+		int shift = index / SUB_BUCKET_COUNT - 1;
+		long sub = index - (long) shift * SUB_BUCKET_COUNT;
+		return ((sub + 1) << shift) - 1;
+	}
+
+}
@@ -0,0 +1,149 @@
+package com.itdragon.benchmark;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 计算器服务压测工具，可以对 BIO、NIO、AIO、Netty 四种服务器做同样的压测，方便横向对比
+ * 多个压测线程，每个线程用一个 Selector 管理一部分连接（见 ITDragonLoadWorker），少量线程就能维持上千个连接。
+ * 输出吞吐量、延迟分布（p50/p99/p999/max，微秒）、错误数，以及压测期间服务器的CPU和堆内存（需要 --jmx）。
+ *
+ * 运行参数（都有默认值）：
+ * --protocol    bio|nio|aio|netty，默认 bio
+ * --host        服务器地址，默认 127.0.0.1
+ * --port        服务器端口，默认 8888
+ * --connections 连接数，默认 1000
+ * --duration    统计时长（秒），默认 30
+ * --warmup      预热时长（秒），预热期间的请求不统计，默认 5
+ * --mode        closed|open，默认 closed。open 模式按 --rate 固定速率发送，延迟包含客户端排队时间
+ * --rate        open 模式下每秒请求数，默认 10000
+ * --mix         请求表达式和权重，如 "1+1:8,(3+4)*5-6/2:2"，默认 "6*7-3/2:1"
+ * --threads     压测线程数，默认CPU核数
+ * --jmx         服务器的JMX地址 host:port，不指定则不采样服务器
+ * 例如：--protocol netty --port 8888 --connections 2000 --mode open --rate 50000 --jmx 127.0.0.1:9999
+ * @author itdragon
+ *
+ */
+public class ITDragonLoadGenerator {
+
+	public static void main(String[] args) throws Exception {
+		Map<String, String> options = parseOptions(args);
+		ITDragonProtocol protocol = ITDragonProtocol.valueOf(option(options, "protocol", "bio").toUpperCase());
+		String host = option(options, "host", "127.0.0.1");
+		int port = Integer.parseInt(option(options, "port", "8888"));
+		int connections = Integer.parseInt(option(options, "connections", "1000"));
+		int duration = Integer.parseInt(option(options, "duration", "30"));
+		int warmup = Integer.parseInt(option(options, "warmup", "5"));
+		boolean open = "open".equalsIgnoreCase(option(options, "mode", "closed"));
+		int rate = Integer.parseInt(option(options, "rate", "10000"));
+		byte[][] requests = parseMix(protocol, option(options, "mix", "6*7-3/2:1"));
+		int threads = Math.min(connections,
+				Integer.parseInt(option(options, "threads", String.valueOf(Runtime.getRuntime().availableProcessors()))));
+		String jmx = options.get("jmx");
+
+		System.out.printf("压测 %s %s:%d 连接数 : %d 线程数 : %d 模式 : %s 预热 : %ds 时长 : %ds%n", protocol, host, port,
+				connections, threads, open ? "open " + rate + " req/s" : "closed", warmup, duration);
+
+		// 所有线程共用同一个起止时间
+		long warmupEnd = System.nanoTime() + TimeUnit.SECONDS.toNanos(warmup);
+		long end = warmupEnd + TimeUnit.SECONDS.toNanos(duration);
+		long intervalNanos = open ? Math.max(1, TimeUnit.SECONDS.toNanos(1) * threads / rate) : 0;
+		InetSocketAddress address = new InetSocketAddress(host, port);
+		List<ITDragonLoadWorker> workers = new ArrayList<ITDragonLoadWorker>();
+		for (int i = 0; i < threads; i++) {
+			workers.add(new ITDragonLoadWorker(protocol, requests, intervalNanos, warmupEnd, end));
+		}
+		for (int i = 0; i < connections; i++) {
+			workers.get(i % threads).connect(address);
+		}
+
+		List<ITDragonServerMonitor> monitors = new ArrayList<ITDragonServerMonitor>();
+		if (null != jmx) {
+			monitors.add(ITDragonServerMonitor.remote(jmx));
+		}
+		monitors.add(ITDragonServerMonitor.local());
+
+		List<Thread> workerThreads = new ArrayList<Thread>();
+		for (int i = 0; i < threads; i++) {
+			Thread thread = new Thread(workers.get(i), "Load-Worker-" + i);
+			thread.start();
+			workerThreads.add(thread);
+		}
+		// 预热结束后才开始采样
+		TimeUnit.NANOSECONDS.sleep(Math.max(0, warmupEnd - System.nanoTime()));
+		List<Thread> monitorThreads = new ArrayList<Thread>();
+		for (ITDragonServerMonitor monitor : monitors) {
+			Thread thread = new Thread(monitor, "Load-Monitor");
+			thread.setDaemon(true);
+			thread.start();
+			monitorThreads.add(thread);
+		}
+		for (Thread thread : workerThreads) {
+			thread.join();
+		}
+		for (ITDragonServerMonitor monitor : monitors) {
+			monitor.stop();
+		}
+		for (Thread thread : monitorThreads) {
+			thread.interrupt();
+			thread.join();
+		}
+
+		ITDragonLatencyHistogram histogram = new ITDragonLatencyHistogram();
+		long completed = 0;
+		long errors = 0;
+		for (ITDragonLoadWorker worker : workers) {
+			histogram.add(worker.histogram);
+			completed += worker.completed;
+			errors += worker.errors;
+		}
+		System.out.printf("完成请求 : %,d 错误 : %,d 吞吐量 : %,d req/s%n", completed, errors, completed / Math.max(1, duration));
+		System.out.printf("延迟(us) p50 : %,d p99 : %,d p999 : %,d max : %,d%n", histogram.percentile(50),
+				histogram.percentile(99), histogram.percentile(99.9), histogram.getMax());
+		if (null == jmx) {
+			System.out.println("服务器 CPU/堆 : n/a（使用 --jmx host:port 开启）");
+		}
+		for (ITDragonServerMonitor monitor : monitors) {
+			System.out.println(monitor.report());
+		}
+	}
+
+	// --name value 形式的参数
+	private static Map<String, String> parseOptions(String[] args) {
+		Map<String, String> options = new HashMap<String, String>();
+		for (int i = 0; i < args.length; i++) {
+			if (!args[i].startsWith("--") || i + 1 >= args.length) {
+				throw new IllegalArgumentException("参数格式错误 : " + args[i]);
+			}
+			options.put(args[i].substring(2), args[++i]);
+		}
+		return options;
+	}
+
+	private static String option(Map<String, String> options, String name, String defaultValue) {
+		String value = options.get(name);
+		return null == value ? defaultValue : value;
+	}
+
+	/**
+	 * 解析 "表达式:权重,表达式:权重"，按权重展开成请求数组，压测线程随机选取即可得到对应的比例
+	 */
+	private static byte[][] parseMix(ITDragonProtocol protocol, String mix) {
+		List<byte[]> requests = new ArrayList<byte[]>();
+		for (String entry : mix.split(",")) {
+			int colon = entry.lastIndexOf(':');
+			String expression = colon < 0 ? entry : entry.substring(0, colon);
+			int weight = colon < 0 ? 1 : Integer.parseInt(entry.substring(colon + 1).trim());
+			byte[] request = protocol.encode(expression.trim());
+			for (int i = 0; i < weight; i++) {
+				requests.add(request);
+			}
+		}
+		return requests.toArray(new byte[requests.size()][]);
+	}
+
+}
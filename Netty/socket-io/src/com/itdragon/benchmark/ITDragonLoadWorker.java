@@ -0,0 +1,225 @@
+package com.itdragon.benchmark;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 压测线程，一个 Selector 管理多个非阻塞客户端连接，每个连接同一时刻只有一个请求在路上
+ * 闭环（closed loop） : 收到应答后立刻发送下一个请求，延迟从实际发送时开始计算
+ * 开环（open loop）   : 按固定速率产生请求，轮流分配给各个连接，连接忙时请求在客户端排队。
+ *                     延迟从请求“应该发送”的时间开始计算，服务器变慢时排队时间也计入延迟，避免协调遗漏（coordinated omission）
+ * 只统计预热结束之后发出的请求。
+ * @author itdragon
+ *
+ */
+public class ITDragonLoadWorker implements Runnable {
+
+	private final Selector selector;
+	private final ITDragonProtocol protocol;
+	private final byte[][] requests; 	// 按权重展开后的请求，随机选择
+	private final long intervalNanos; 	// 开环模式下本线程两个请求的间隔，0 表示闭环
+	private final long warmupEnd; 		// 预热结束时间（System.nanoTime）
+	private final long end; 			// 压测结束时间
+	private final Random random = new Random();
+	private final List<Connection> connections = new ArrayList<Connection>();
+	private int nextConnection;
+
+	final ITDragonLatencyHistogram histogram = new ITDragonLatencyHistogram();
+	long completed; 	// 预热后完成的请求数
+	long errors; 		// 连接失败或者被服务器断开的次数
+
+	public ITDragonLoadWorker(ITDragonProtocol protocol, byte[][] requests, long intervalNanos, long warmupEnd, long end)
+			throws IOException {
+		this.selector = Selector.open();
+		this.protocol = protocol;
+		this.requests = requests;
+		this.intervalNanos = intervalNanos;
+		this.warmupEnd = warmupEnd;
+		this.end = end;
+	}
+
+	// 在 run() 之前由主线程调用
+	public void connect(InetSocketAddress address) throws IOException {
+		SocketChannel channel = SocketChannel.open();
+		channel.configureBlocking(false);
+		channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+		Connection connection = new Connection(channel);
+		connections.add(connection);
+		if (channel.connect(address)) {
+			connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+			connection.connected = true;
+		} else {
+			connection.key = channel.register(selector, SelectionKey.OP_CONNECT, connection);
+		}
+	}
+
+	@Override
+	public void run() {
+		long nextArrival = System.nanoTime();
+		if (0 == intervalNanos) {
+			for (Connection connection : connections) {
+				if (connection.connected) {
+					send(connection, System.nanoTime());
+				}
+			}
+		}
+		long now;
+		while ((now = System.nanoTime()) < end) {
+			try {
+				long timeoutMillis = 100;
+				if (0 != intervalNanos) {
+					// 开环：把到期的请求分配给连接
+					while (nextArrival <= now) {
+						dispatch(nextArrival);
+						nextArrival += intervalNanos;
+					}
+					timeoutMillis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(nextArrival - now));
+				}
+				selector.select(timeoutMillis);
+				Iterator<SelectionKey> iterator = selector.selectedKeys().iterator();
+				while (iterator.hasNext()) {
+					SelectionKey key = iterator.next();
+					iterator.remove();
+					handle(key);
+				}
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+		for (Connection connection : connections) {
+			try {
+				connection.channel.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+		try {
+			selector.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	private void dispatch(long intendedStart) {
+		for (int i = 0; i < connections.size(); i++) {
+			Connection connection = connections.get(nextConnection);
+			nextConnection = (nextConnection + 1) % connections.size();
+			if (connection.channel.isOpen()) {
+				if (connection.connected && !connection.inFlight) {
+					send(connection, intendedStart);
+				} else {
+					connection.pending.add(intendedStart);
+				}
+				return;
+			}
+		}
+		errors++; // 没有可用的连接
+	}
+
+	private void handle(SelectionKey key) {
+		Connection connection = (Connection) key.attachment();
+		try {
+			if (key.isConnectable()) {
+				connection.channel.finishConnect();
+				connection.connected = true;
+				key.interestOps(SelectionKey.OP_READ);
+				if (0 == intervalNanos) {
+					send(connection, System.nanoTime());
+				} else if (!connection.pending.isEmpty()) {
+					send(connection, connection.pending.poll());
+				}
+				return;
+			}
+			if (key.isWritable()) {
+				connection.channel.write(connection.out);
+				if (!connection.out.hasRemaining()) {
+					key.interestOps(SelectionKey.OP_READ);
+				}
+			}
+			if (key.isReadable()) {
+				read(connection);
+			}
+		} catch (IOException e) {
+			close(connection);
+		}
+	}
+
+	private void send(Connection connection, long intendedStart) {
+		connection.out = ByteBuffer.wrap(requests[random.nextInt(requests.length)]);
+		connection.startNanos = intendedStart;
+		connection.inFlight = true;
+		try {
+			connection.channel.write(connection.out);
+			if (connection.out.hasRemaining()) {
+				connection.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+			}
+		} catch (IOException e) {
+			close(connection);
+		}
+	}
+
+	private void read(Connection connection) throws IOException {
+		if (!connection.in.hasRemaining()) {
+			ByteBuffer bigger = ByteBuffer.allocate(connection.in.capacity() * 2);
+			connection.in.flip();
+			bigger.put(connection.in);
+			connection.in = bigger;
+		}
+		if (connection.channel.read(connection.in) < 0) {
+			close(connection);
+			return;
+		}
+		if (!protocol.isComplete(connection.in)) {
+			return;
+		}
+		long now = System.nanoTime();
+		if (connection.startNanos >= warmupEnd && now < end) {
+			histogram.record(TimeUnit.NANOSECONDS.toMicros(now - connection.startNanos));
+			completed++;
+		}
+		connection.in.clear();
+		connection.inFlight = false;
+		if (0 == intervalNanos) {
+			send(connection, now);
+		} else if (!connection.pending.isEmpty()) {
+			send(connection, connection.pending.poll());
+		}
+	}
+
+	private void close(Connection connection) {
+		errors++;
+		connection.key.cancel();
+		try {
+			connection.channel.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	private static final class Connection {
+		private final SocketChannel channel;
+		private final ArrayDeque<Long> pending = new ArrayDeque<Long>(); // 开环模式下排队等待发送的请求的计划发送时间
+		private SelectionKey key;
+		private ByteBuffer out;
+		private ByteBuffer in = ByteBuffer.allocate(256);
+		private long startNanos; 	// 当前请求的计划发送时间
+		private boolean connected;
+		private boolean inFlight;
+
+		Connection(SocketChannel channel) {
+			this.channel = channel;
+		}
+	}
+
+}
@@ -0,0 +1,52 @@
+package com.itdragon.benchmark;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 四种计算器服务使用的协议
+ * BIO   : ITDragonBIOServer，请求和应答都以换行符结尾
+ * NIO   : ITDragonNIODoubleServer，默认拆包方式，请求和应答都以换行符结尾
+ * AIO   : ITDragonAIOServer，没有分隔符，一问一答，读到数据就认为应答完整
+ * NETTY : netty-stu 的 delimiter.ITDragonServer，请求和应答都以 "_$" 结尾
+ * @author itdragon
+ *
+ */
+public enum ITDragonProtocol {
+
+	BIO("\n"), NIO("\n"), AIO(""), NETTY("_$");
+
+	private final byte[] delimiter;
+
+	private ITDragonProtocol(String delimiter) {
+		this.delimiter = delimiter.getBytes(StandardCharsets.UTF_8);
+	}
+
+	public byte[] encode(String expression) {
+		byte[] body = expression.getBytes(StandardCharsets.UTF_8);
+		byte[] request = new byte[body.length + delimiter.length];
+		System.arraycopy(body, 0, request, 0, body.length);
+		System.arraycopy(delimiter, 0, request, body.length, delimiter.length);
+		return request;
+	}
+
+	/**
+	 * 判断 buffer（写模式）中是否已经收到一条完整的应答
+	 */
+	public boolean isComplete(ByteBuffer buffer) {
+		int position = buffer.position();
+		if (0 == delimiter.length) {
+			return position > 0;
+		}
+		if (position < delimiter.length) {
+			return false;
+		}
+		for (int i = 0; i < delimiter.length; i++) {
+			if (buffer.get(position - delimiter.length + i) != delimiter[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+}
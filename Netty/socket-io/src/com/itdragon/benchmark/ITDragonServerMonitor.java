@@ -0,0 +1,107 @@
+package com.itdragon.benchmark;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+
+import javax.management.MBeanServerConnection;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import javax.management.remote.JMXConnector;
+import javax.management.remote.JMXConnectorFactory;
+import javax.management.remote.JMXServiceURL;
+
+/**
+ * 每秒采样一次目标JVM的进程CPU使用率和堆内存使用量
+ * 远程JVM通过JMX连接，服务器启动时需要加上：
+ * -Dcom.sun.management.jmxremote.port=9999 -Dcom.sun.management.jmxremote.rmi.port=9999 -Djava.rmi.server.hostname=服务器IP
+ * -Dcom.sun.management.jmxremote.authenticate=false -Dcom.sun.management.jmxremote.ssl=false
+ * @author itdragon
+ *
+ */
+public class ITDragonServerMonitor implements Runnable {
+
+	private static final long SAMPLE_INTERVAL_MILLIS = 1000;
+
+	private final String name;
+	private final MBeanServerConnection connection;
+	private final JMXConnector connector; 	// 监控本进程时为 null
+	private final ObjectName operatingSystem;
+	private final ObjectName memory;
+	private volatile boolean started = true;
+
+	private double cpuSum; 	// 采样的CPU使用率之和
+	private double cpuMax;
+	private int samples;
+	private long heapMax; 	// 采样到的最大堆使用量
+	private long heapCommitted;
+
+	private ITDragonServerMonitor(String name, MBeanServerConnection connection, JMXConnector connector) throws IOException {
+		this.name = name;
+		this.connection = connection;
+		this.connector = connector;
+		try {
+			this.operatingSystem = new ObjectName(ManagementFactory.OPERATING_SYSTEM_MXBEAN_NAME);
+			this.memory = new ObjectName(ManagementFactory.MEMORY_MXBEAN_NAME);
+		} catch (Exception e) {
+			throw new IOException(e);
+		}
+	}
+
+	// 监控压测程序自己
+	public static ITDragonServerMonitor local() throws IOException {
+		return new ITDragonServerMonitor("压测客户端", ManagementFactory.getPlatformMBeanServer(), null);
+	}
+
+	// 通过JMX监控服务器，hostPort 如 127.0.0.1:9999
+	public static ITDragonServerMonitor remote(String hostPort) throws IOException {
+		JMXServiceURL url = new JMXServiceURL("service:jmx:rmi:///jndi/rmi://" + hostPort + "/jmxrmi");
+		JMXConnector connector = JMXConnectorFactory.connect(url);
+		return new ITDragonServerMonitor("服务器", connector.getMBeanServerConnection(), connector);
+	}
+
+	public void stop() {
+		started = false;
+	}
+
+	@Override
+	public void run() {
+		while (started) {
+			try {
+				sample();
+				Thread.sleep(SAMPLE_INTERVAL_MILLIS);
+			} catch (InterruptedException e) {
+				return;
+			} catch (Exception e) {
+				e.printStackTrace();
+				return;
+			}
+		}
+		if (null != connector) {
+			try {
+				connector.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	private void sample() throws Exception {
+		Object cpu = connection.getAttribute(operatingSystem, "ProcessCpuLoad");
+		if (cpu instanceof Double && (Double) cpu >= 0) {
+			cpuSum += (Double) cpu;
+			cpuMax = Math.max(cpuMax, (Double) cpu);
+			samples++;
+		}
+		MemoryUsage heap = MemoryUsage.from((CompositeData) connection.getAttribute(memory, "HeapMemoryUsage"));
+		heapMax = Math.max(heapMax, heap.getUsed());
+		heapCommitted = heap.getCommitted();
+	}
+
+	// stop() 并且采样线程结束后调用
+	public String report() {
+		return String.format("%s CPU平均 : %.1f%% CPU最高 : %.1f%% 堆使用最高 : %,d KB 堆已提交 : %,d KB", name,
+				0 == samples ? 0 : cpuSum * 100 / samples, cpuMax * 100, heapMax / 1024, heapCommitted / 1024);
+	}
+
+}
@@ -0,0 +1,127 @@
+package com.itdragon.bio;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 线程池模式 和 虚拟线程模式 的对比
+ * 每轮同时建立 N 个阻塞客户端连接（默认 1000 和 10000），所有连接建立后一起开始，每个连接一问一答发送 REQUESTS 次表达式。
+ * 统计成功的连接数、失败的连接数（被线程池拒绝或超时）、耗时和每秒请求数。
+ * 运行参数：[客户端个数列表，逗号分隔，默认 1000,10000]
+ * 注意：客户端和服务器在同一个进程中，10000 个连接需要 2 万个以上的文件句柄（ulimit -n），虚拟线程模式需要 JDK21+。
+ * @author itdragon
+ *
+ */
+public class ITDragonBIOBenchmark {
+
+	private static final String IP_ADDRESS = "127.0.0.1";
+	private static final int BASE_PORT = 9200;
+	private static final int REQUESTS = 10; 				// 每个连接发送的请求数
+	private static final int SO_TIMEOUT = 30 * 1000; 		// 客户端读超时，避免排队的连接一直等待
+
+	public static void main(String[] args) throws Exception {
+		String[] clientCounts = (args.length > 0 ? args[0] : "1000,10000").split(",");
+		System.setProperty("itdragon.bio.quiet", "true"); // 关闭服务器的控制台打印
+		int port = BASE_PORT;
+		for (ITDragonBIOServer.Mode mode : ITDragonBIOServer.Mode.values()) {
+			for (String clientCount : clientCounts) {
+				run(mode, Integer.parseInt(clientCount.trim()), port++);
+			}
+		}
+	}
+
+	private static void run(ITDragonBIOServer.Mode mode, int clients, int port) throws Exception {
+		final ExecutorService executor;
+		try {
+			executor = mode.newExecutor();
+		} catch (UnsupportedOperationException e) {
+			System.out.println(mode + " 模式跳过 : " + e.getMessage());
+			return;
+		}
+		final ServerSocket server = new ServerSocket(port, clients);
+		Thread acceptor = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					ITDragonBIOServer.serve(server, executor, 0);
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+		}, "BIO-Acceptor");
+		acceptor.start();
+
+		final AtomicLong succeeded = new AtomicLong();
+		final AtomicLong failed = new AtomicLong();
+		final CountDownLatch connected = new CountDownLatch(clients);
+		final CountDownLatch start = new CountDownLatch(1);
+		final CountDownLatch done = new CountDownLatch(clients);
+		for (int i = 0; i < clients; i++) {
+			final int index = i;
+			Thread client = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					clientReq(index, server.getLocalPort(), connected, start, succeeded, failed);
+					done.countDown();
+				}
+			}, "BIO-Client-" + i);
+			client.setDaemon(true);
+			client.start();
+		}
+		connected.await();
+		long begin = System.nanoTime();
+		start.countDown();
+		done.await();
+		long elapsed = System.nanoTime() - begin;
+
+		server.close();
+		acceptor.join();
+		executor.shutdownNow();
+		executor.awaitTermination(10, TimeUnit.SECONDS);
+		System.out.printf("模式 : %-8s 客户端 : %-6d 成功 : %-6d 失败 : %-6d 耗时 : %,d ms 吞吐量 : %,d req/s%n", mode, clients,
+				succeeded.get(), failed.get(), TimeUnit.NANOSECONDS.toMillis(elapsed),
+				succeeded.get() * REQUESTS * 1000000000L / Math.max(1, elapsed));
+	}
+
+	private static void clientReq(int index, int port, CountDownLatch connected, CountDownLatch start, AtomicLong succeeded,
+			AtomicLong failed) {
+		Socket socket = null;
+		try {
+			try {
+				socket = new Socket(IP_ADDRESS, port);
+				socket.setSoTimeout(SO_TIMEOUT);
+			} finally {
+				connected.countDown();
+			}
+			BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+			PrintWriter writer = new PrintWriter(socket.getOutputStream(), true);
+			start.await();
+			for (int i = 0; i < REQUESTS; i++) {
+				writer.println(index % 10 + "*" + (i + 1));
+				if (null == reader.readLine()) {
+					throw new IOException("connection closed by server");
+				}
+			}
+			succeeded.incrementAndGet();
+		} catch (Exception e) {
+			failed.incrementAndGet();
+		} finally {
+			if (null != socket) {
+				try {
+					socket.close();
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+		}
+	}
+
+}
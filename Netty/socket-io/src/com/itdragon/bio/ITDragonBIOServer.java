@@ -4,6 +4,10 @@ import java.io.IOException;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
@@ -16,53 +20,122 @@ import java.util.concurrent.TimeUnit;
  * 第一步：server端服务器启动
  * 第二步：server端服务器阻塞监听client请求
  * 第三步：server端服务器接收请求，创建线程实现任务
+ *
+ * 执行模式（启动参数：[pool|virtual] [最大并发连接数，0表示不限制]）：
+ * POOL    : 线程池（伪异步IO），最多 100 个线程加 50 个排队，并发连接再多就会被拒绝并断开
+ * VIRTUAL : 每个连接一个虚拟线程（JDK21+），阻塞时虚拟线程让出载体线程，上万个阻塞连接也只占用少量系统线程
+ * 最大并发连接数大于0时用信号量限流，达到上限后 accept 循环等待有连接结束，新连接在 backlog 中排队而不是被拒绝
  * @author itdragon
- * 
+ *
  */
 public class ITDragonBIOServer {
-	
-	private static final Integer PORT = 8888; // 服务器对外的端口号  
-    
-    public static void main(String[] args) {  
-        ServerSocket server = null;  
-        Socket socket = null;  
-        ThreadPoolExecutor executor = null;  
-        try {  
-            server = new ServerSocket(PORT); // ServerSocket 启动监听端口  
-            System.out.println("BIO Server 服务器启动.........");  
+
+	private static final Integer PORT = 8888; // 服务器对外的端口号
+
+	public enum Mode {
+		POOL {
+			@Override
+			public ExecutorService newExecutor() {
+				return new ThreadPoolExecutor(10, 100, 1000, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(50));
+			}
+		},
+		VIRTUAL {
+			@Override
+			public ExecutorService newExecutor() {
+				// 通过反射调用 Executors.newVirtualThreadPerTaskExecutor()，低版本JDK也能编译
+				try {
+					return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+				} catch (NoSuchMethodException e) {
+					throw new UnsupportedOperationException("虚拟线程需要 JDK21 及以上版本", e);
+				} catch (ReflectiveOperationException e) {
+					throw new IllegalStateException(e);
+				}
+			}
+		};
+
+		public abstract ExecutorService newExecutor();
+	}
+
+    public static void main(String[] args) {
+        Mode mode = args.length > 0 ? Mode.valueOf(args[0].toUpperCase()) : Mode.POOL;
+        int maxConnections = args.length > 1 ? Integer.parseInt(args[1]) : 0;
+        ServerSocket server = null;
+        ExecutorService executor = null;
+        try {
+            server = new ServerSocket(PORT); // ServerSocket 启动监听端口
+            System.out.println("BIO Server 服务器启动......... 模式 : " + mode);
             /*--------------传统的新增线程处理----------------*/
-            /*while (true) { 
-                // 服务器监听：阻塞，等待Client请求 
-                socket = server.accept(); 
-                System.out.println("server 服务器确认请求 : " + socket); 
+            /*while (true) {
+                // 服务器监听：阻塞，等待Client请求
+                socket = server.accept();
+                System.out.println("server 服务器确认请求 : " + socket);
                 // 服务器连接确认：确认Client请求后，创建线程执行任务  。很明显的问题，若每接收一次请求就要创建一个线程，显然是不合理的。
-                new Thread(new ITDragonBIOServerHandler(socket)).start(); 
+                new Thread(new ITDragonBIOServerHandler(socket)).start();
             } */
-            /*--------------通过线程池处理缓解高并发给程序带来的压力（伪异步IO编程）----------------*/  
-            executor = new ThreadPoolExecutor(10, 100, 1000, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(50));  
-            while (true) {  
-                socket = server.accept();  // 服务器监听：阻塞，等待Client请求 
-                ITDragonBIOServerHandler serverHandler = new ITDragonBIOServerHandler(socket);  
-                executor.execute(serverHandler);  
-            }  
-        } catch (IOException e) {  
-            e.printStackTrace();  
-        } finally {  
-            try {  
-                if (null != socket) {  
-                  socket.close(); 
-                  socket = null;
-                }  
-                if (null != server) {  
-                    server.close();  
-                    server = null;  
-                    System.out.println("BIO Server 服务器关闭了！！！！");  
-                }  
-                executor.shutdown();  
-            } catch (IOException e) {  
-                e.printStackTrace();  
-            }  
-        }  
-    }  
+            /*--------------通过线程池处理缓解高并发给程序带来的压力（伪异步IO编程）, 或者每个连接一个虚拟线程----------------*/
+            executor = mode.newExecutor();
+            serve(server, executor, maxConnections);
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            try {
+                if (null != server) {
+                    server.close();
+                    server = null;
+                    System.out.println("BIO Server 服务器关闭了！！！！");
+                }
+                if (null != executor) {
+                    executor.shutdown();
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * accept 循环，直到 server 被关闭
+     * @param maxConnections 最大并发连接数，0表示不限制
+     */
+    public static void serve(ServerSocket server, ExecutorService executor, int maxConnections) throws IOException {
+        final Semaphore permits = maxConnections > 0 ? new Semaphore(maxConnections) : null;
+        while (!server.isClosed()) {
+            if (null != permits) {
+                permits.acquireUninterruptibly(); // 达到并发上限时等待，新连接留在 backlog 中
+            }
+            final Socket socket;
+            try {
+                socket = server.accept();  // 服务器监听：阻塞，等待Client请求
+            } catch (IOException e) {
+                if (null != permits) {
+                    permits.release();
+                }
+                if (server.isClosed()) {
+                    return;
+                }
+                throw e;
+            }
+            final ITDragonBIOServerHandler serverHandler = new ITDragonBIOServerHandler(socket);
+            try {
+                executor.execute(null == permits ? serverHandler : new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            serverHandler.run();
+                        } finally {
+                            permits.release();
+                        }
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // 线程池已满，拒绝这个连接，服务器继续运行
+                System.out.println("BIO Server 线程池已满，拒绝连接 : " + socket);
+                if (null != permits) {
+                    permits.release();
+                }
+                socket.close();
+            }
+        }
+    }
 
 }
@@ -15,6 +15,7 @@ import com.itdragon.util.CalculatorUtil;
  */
 public class ITDragonBIOServerHandler implements Runnable{  
     
+  private static final boolean QUIET = Boolean.getBoolean("itdragon.bio.quiet"); // 压测时关闭控制台打印  
   private Socket socket;  
     
   public ITDragonBIOServerHandler(Socket socket) {  
@@ -35,7 +36,9 @@ public class ITDragonBIOServerHandler implements Runnable{
               if (null == body) {  
                   break;  
               }  
-              System.out.println("server服务端接收参数 : " + body);  
+              if (!QUIET) {  
+                  System.out.println("server服务端接收参数 : " + body);  
+              }  
               writer.println(body + " = " + CalculatorUtil.cal(body).toString());
           }  
       } catch (IOException e) {  
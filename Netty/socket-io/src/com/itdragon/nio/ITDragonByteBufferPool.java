@@ -0,0 +1,55 @@
+package com.itdragon.nio;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 直接缓冲区池
+ * 直接缓冲区（DirectByteBuffer）写入通道时不需要再拷贝一次到堆外，但申请和回收的代价比堆缓冲区高得多，
+ * 所以申请后不释放，用完放回池中重复使用。池中最多保留 maxPooled 个缓冲区，超出的部分交给GC回收。
+ * 多个 worker 线程共享同一个池，因此用无锁队列实现。
+ * @author itdragon
+ *
+ */
+public class ITDragonByteBufferPool {
+
+	private final int bufferSize; 	// 每个缓冲区的大小
+	private final int maxPooled; 	// 池中最多保留的缓冲区个数
+	private final Queue<ByteBuffer> pool = new ConcurrentLinkedQueue<ByteBuffer>();
+	private final AtomicInteger pooled = new AtomicInteger();
+
+	public ITDragonByteBufferPool(int bufferSize, int maxPooled) {
+		this.bufferSize = bufferSize;
+		this.maxPooled = maxPooled;
+	}
+
+	public int getBufferSize() {
+		return bufferSize;
+	}
+
+	// 获取一个清空后的缓冲区，池中没有时新申请一个
+	public ByteBuffer acquire() {
+		ByteBuffer buffer = pool.poll();
+		if (null == buffer) {
+			return ByteBuffer.allocateDirect(bufferSize);
+		}
+		pooled.decrementAndGet();
+		buffer.clear();
+		return buffer;
+	}
+
+	// 归还缓冲区，归还之后调用方不能再使用它
+	public void release(ByteBuffer buffer) {
+		if (!buffer.isDirect() || buffer.capacity() != bufferSize) {
+			return;
+		}
+		if (pooled.incrementAndGet() > maxPooled) {
+			pooled.decrementAndGet();
+			return;
+		}
+		pool.offer(buffer);
+	}
+
+}
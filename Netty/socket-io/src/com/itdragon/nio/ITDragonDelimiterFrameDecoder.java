@@ -0,0 +1,63 @@
+package com.itdragon.nio;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+
+/**
+ * 分隔符拆包：以指定的分隔符（如换行符）作为消息结束标志，交给 handler 的消息不包含分隔符
+ * 没有找到分隔符时记住已经扫描过的位置，下次读取后从该位置继续扫描，同一个字节不会被重复扫描。
+ * @author itdragon
+ *
+ */
+public class ITDragonDelimiterFrameDecoder extends ITDragonFrameDecoder {
+
+	private final byte[] delimiter;
+	private int scanned; // 当前消息已经扫描过、确定不是分隔符开头的字节数
+
+	public ITDragonDelimiterFrameDecoder(byte[] delimiter, int maxFrameLength) {
+		super(maxFrameLength, checkDelimiter(delimiter).length);
+		this.delimiter = delimiter.clone();
+	}
+
+	@Override
+	protected boolean decodeFrame(ByteBuffer in, SelectionKey key, ITDragonFrameHandler handler) throws IOException {
+		int start = in.position();
+		int last = in.limit() - delimiter.length; // 分隔符可能出现的最后一个位置
+		for (int i = start + scanned; i <= last; i++) {
+			if (matches(in, i)) {
+				int frameLength = i - start;
+				if (frameLength > maxFrameLength) {
+					throw tooLongFrame(frameLength);
+				}
+				scanned = 0;
+				in.position(i + delimiter.length);
+				handler.handleFrame(key, frame(in, start, frameLength));
+				return true;
+			}
+		}
+		// 没有找到分隔符，末尾不足一个分隔符长度的字节下次还要重新比较
+		scanned = Math.max(0, last + 1 - start);
+		if (scanned > maxFrameLength) {
+			throw tooLongFrame(scanned);
+		}
+		return false;
+	}
+
+	private static byte[] checkDelimiter(byte[] delimiter) {
+		if (null == delimiter || 0 == delimiter.length) {
+			throw new IllegalArgumentException("delimiter is empty");
+		}
+		return delimiter;
+	}
+
+	private boolean matches(ByteBuffer in, int index) {
+		for (int i = 0; i < delimiter.length; i++) {
+			if (in.get(index + i) != delimiter[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+}
@@ -0,0 +1,91 @@
+package com.itdragon.nio;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+
+/**
+ * 拆包解码器，解决 TCP 粘包和拆包问题
+ * TCP 是字节流，一次 read() 可能读到半条消息（拆包），也可能读到好几条消息（粘包），不能把一次 read() 当成一条消息。
+ * 每个连接拥有一个解码器实例（作为 SelectionKey 的附件），解码器拥有该连接独立的累积缓冲区：
+ * 第一步：通道的数据直接读入累积缓冲区
+ * 第二步：从累积缓冲区中找出所有完整的消息，以零拷贝视图的方式交给 ITDragonFrameHandler
+ * 第三步：把剩下的半条消息移动到缓冲区开头，等待下次读取
+ * 累积缓冲区从1K开始，放不下一条消息时成倍扩容，超过 maxFrameLength 则认为是非法消息，抛出异常后关闭连接。
+ * @author itdragon
+ *
+ */
+public abstract class ITDragonFrameDecoder {
+
+	private static final int INITIAL_CAPACITY = 1024; // 累积缓冲区的初始大小
+
+	protected final int maxFrameLength; 	// 单条消息最大长度（不包括长度字段和分隔符）
+	private final int frameOverhead; 		// 每条消息除内容以外额外占用的字节数，如长度字段或分隔符的长度
+	private ByteBuffer cumulation; 			// 累积缓冲区，两次读取之间处于写模式
+
+	protected ITDragonFrameDecoder(int maxFrameLength, int frameOverhead) {
+		if (maxFrameLength <= 0) {
+			throw new IllegalArgumentException("maxFrameLength must be positive : " + maxFrameLength);
+		}
+		this.maxFrameLength = maxFrameLength;
+		this.frameOverhead = frameOverhead;
+		this.cumulation = ByteBuffer.allocate(Math.min(INITIAL_CAPACITY, maxFrameLength + frameOverhead));
+	}
+
+	/**
+	 * 从通道读取数据，并把所有完整的消息交给 handler
+	 * @return 读取到的字节数，-1 表示客户端已关闭连接
+	 * @throws IOException 读取失败或消息超过最大长度
+	 */
+	public int readFrom(SocketChannel channel, SelectionKey key, ITDragonFrameHandler handler) throws IOException {
+		if (!cumulation.hasRemaining()) {
+			grow();
+		}
+		int readBytes = channel.read(cumulation);
+		if (0 < readBytes) {
+			cumulation.flip();
+			try {
+				while (cumulation.hasRemaining() && decodeFrame(cumulation, key, handler)) {
+					// 继续解码下一条消息，处理粘包
+				}
+			} finally {
+				cumulation.compact();
+			}
+		}
+		return readBytes;
+	}
+
+	/**
+	 * 尝试从 in 的当前位置解码一条完整的消息。
+	 * 找到时调用 handler，把 in 的 position 移动到消息之后并返回 true；消息不完整时不改变 position 并返回 false。
+	 */
+	protected abstract boolean decodeFrame(ByteBuffer in, SelectionKey key, ITDragonFrameHandler handler) throws IOException;
+
+	/**
+	 * 返回 in 中 [start, start + length) 的零拷贝视图
+	 */
+	protected static ByteBuffer frame(ByteBuffer in, int start, int length) {
+		ByteBuffer frame = in.duplicate();
+		frame.limit(start + length);
+		frame.position(start);
+		return frame.slice();
+	}
+
+	protected IOException tooLongFrame(long frameLength) {
+		return new IOException("frame length " + frameLength + " exceeds " + maxFrameLength);
+	}
+
+	// 累积缓冲区已满但还没有完整的消息，成倍扩容
+	private void grow() throws IOException {
+		int maxCapacity = maxFrameLength + frameOverhead;
+		if (cumulation.capacity() >= maxCapacity) {
+			throw tooLongFrame(cumulation.capacity());
+		}
+		ByteBuffer newCumulation = ByteBuffer.allocate((int) Math.min((long) cumulation.capacity() * 2, maxCapacity));
+		cumulation.flip();
+		newCumulation.put(cumulation);
+		cumulation = newCumulation;
+	}
+
+}
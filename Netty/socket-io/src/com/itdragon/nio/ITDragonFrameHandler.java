@@ -0,0 +1,19 @@
+package com.itdragon.nio;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+
+/**
+ * 处理 ITDragonFrameDecoder 拆分出来的完整消息
+ * @author itdragon
+ *
+ */
+public interface ITDragonFrameHandler {
+
+	/**
+	 * frame 是连接累积缓冲区上的一个视图（零拷贝），只在本方法执行期间有效，需要保留数据时自行拷贝
+	 */
+	void handleFrame(SelectionKey key, ByteBuffer frame) throws IOException;
+
+}
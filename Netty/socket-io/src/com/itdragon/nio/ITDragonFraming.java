@@ -0,0 +1,52 @@
+package com.itdragon.nio;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 拆包方式，服务端和客户端要使用同一种方式
+ * LENGTH_FIELD : 4个字节的长度字段 + 消息内容
+ * DELIMITER    : 消息内容 + 换行符
+ * @author itdragon
+ *
+ */
+public enum ITDragonFraming {
+
+	LENGTH_FIELD {
+		@Override
+		public ITDragonFrameDecoder newDecoder(int maxFrameLength) {
+			return new ITDragonLengthFieldFrameDecoder(maxFrameLength);
+		}
+
+		@Override
+		public ByteBuffer encode(byte[] payload) {
+			ByteBuffer buffer = ByteBuffer.allocate(ITDragonLengthFieldFrameDecoder.LENGTH_FIELD_LENGTH + payload.length);
+			buffer.putInt(payload.length).put(payload);
+			buffer.flip();
+			return buffer;
+		}
+	},
+
+	DELIMITER {
+		@Override
+		public ITDragonFrameDecoder newDecoder(int maxFrameLength) {
+			return new ITDragonDelimiterFrameDecoder(LINE_DELIMITER, maxFrameLength);
+		}
+
+		@Override
+		public ByteBuffer encode(byte[] payload) {
+			ByteBuffer buffer = ByteBuffer.allocate(payload.length + LINE_DELIMITER.length);
+			buffer.put(payload).put(LINE_DELIMITER);
+			buffer.flip();
+			return buffer;
+		}
+	};
+
+	private static final byte[] LINE_DELIMITER = { '\n' };
+
+	// 每个连接创建一个解码器
+	public abstract ITDragonFrameDecoder newDecoder(int maxFrameLength);
+
+	// 把消息内容编码成一帧，返回读模式的缓冲区
+	public abstract ByteBuffer encode(byte[] payload);
+
+}
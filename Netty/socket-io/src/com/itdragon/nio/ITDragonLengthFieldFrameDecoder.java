@@ -0,0 +1,39 @@
+package com.itdragon.nio;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+
+/**
+ * 长度字段拆包：每条消息前面是4个字节（大端）的消息长度，后面是消息内容
+ * 不需要扫描消息内容，消息中可以包含任意字节
+ * @author itdragon
+ *
+ */
+public class ITDragonLengthFieldFrameDecoder extends ITDragonFrameDecoder {
+
+	static final int LENGTH_FIELD_LENGTH = 4; // 长度字段占用的字节数
+
+	public ITDragonLengthFieldFrameDecoder(int maxFrameLength) {
+		super(maxFrameLength, LENGTH_FIELD_LENGTH);
+	}
+
+	@Override
+	protected boolean decodeFrame(ByteBuffer in, SelectionKey key, ITDragonFrameHandler handler) throws IOException {
+		if (in.remaining() < LENGTH_FIELD_LENGTH) {
+			return false;
+		}
+		int start = in.position();
+		int frameLength = in.getInt(start);
+		if (frameLength < 0 || frameLength > maxFrameLength) {
+			throw tooLongFrame(frameLength & 0xFFFFFFFFL);
+		}
+		if (in.remaining() < LENGTH_FIELD_LENGTH + frameLength) {
+			return false;
+		}
+		in.position(start + LENGTH_FIELD_LENGTH + frameLength);
+		handler.handleFrame(key, frame(in, start + LENGTH_FIELD_LENGTH, frameLength));
+		return true;
+	}
+
+}
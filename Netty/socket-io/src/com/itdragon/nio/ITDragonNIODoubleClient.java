@@ -1,5 +1,7 @@
 package com.itdragon.nio;
 
+import java.util.concurrent.CompletableFuture;
+
 public class ITDragonNIODoubleClient {
 	
 	private static String DEFAULT_HOST = "127.0.0.1";
@@ -25,4 +27,9 @@ public class ITDragonNIODoubleClient {
 		clientHandle.sendMsg(msg);
 		return true;
 	}
+
+	// 异步发送，不用等上一个应答，返回计算结果的 future
+	public static CompletableFuture<String> send(String expression) {
+		return clientHandle.send(expression);
+	}
 }
@@ -6,19 +6,53 @@ import java.nio.ByteBuffer;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
 import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
 
-public class ITDragonNIODoubleClientHandler implements Runnable {
+/**
+ * NIO 客户端，支持 pipelining：一个连接上可以有任意多个请求在路上，不用等上一个应答回来再发下一个请求
+ * send() 可以在任意线程调用，请求放入无锁队列后唤醒 Selector 线程，立即返回 CompletableFuture。
+ * Selector 线程一次取出队列中所有请求，编码成帧后放进同一个写缓冲区，一次 channel.write() 发出去（批量发送）。
+ * 服务器按请求的顺序返回应答，所以发出去的请求按顺序放进 inFlight 队列，每拆出一条应答就完成队头的 future。
+ * 注意：future 在 Selector 线程中完成，回调里不要做阻塞操作，需要时使用 thenApplyAsync 等方法切换线程。
+ * @author itdragon
+ *
+ */
+public class ITDragonNIODoubleClientHandler implements Runnable, ITDragonFrameHandler {
+
+	private static final int MAX_FRAME_LENGTH = 64 * 1024; 	// 单条消息最大长度
+	private static final int WRITE_BUFFER_SIZE = 64 * 1024; // 写缓冲区大小，一次最多批量发送这么多字节
 
 	private String host;
 	private Integer port;
 	private Selector selector;
 	private SocketChannel socketChannel;
+	private SelectionKey key;
 	private volatile boolean started;
+	private final ITDragonFraming framing; 	// 和服务端的拆包方式保持一致
+	private final ITDragonFrameDecoder decoder;
+	private final Queue<Request> submitted = new ConcurrentLinkedQueue<Request>(); 	// 其他线程提交，还没有发送的请求
+	private final AtomicBoolean wakeupPending = new AtomicBoolean(); 				// 避免每次提交都调用 wakeup
+	private final ArrayDeque<CompletableFuture<String>> inFlight = new ArrayDeque<CompletableFuture<String>>(); // 已发送等待应答，只在 Selector 线程中访问
+	private final ByteBuffer writeBuffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE); // 读模式，只在 Selector 线程中访问
+	private boolean connected;
 
 	public ITDragonNIODoubleClientHandler(String ip, Integer port) {
+		this(ip, port, ITDragonFraming.DELIMITER);
+	}
+
+	public ITDragonNIODoubleClientHandler(String ip, Integer port, ITDragonFraming framing) {
 		this.host = ip;
 		this.port = port;
+		this.framing = framing;
+		this.decoder = framing.newDecoder(MAX_FRAME_LENGTH);
+		this.writeBuffer.flip();
 		try {
 			selector = Selector.open();
 			socketChannel = SocketChannel.open();
@@ -32,6 +66,7 @@ public class ITDragonNIODoubleClientHandler implements Runnable {
 
 	public void stop() {
 		started = false;
+		selector.wakeup();
 	}
 
 	@Override
@@ -40,6 +75,7 @@ public class ITDragonNIODoubleClientHandler implements Runnable {
 		while (started) {
 			try {
 				selector.select();
+				wakeupPending.set(false);
 				Iterator<SelectionKey> iterator = selector.selectedKeys().iterator();
 				SelectionKey key = null;
 				while (iterator.hasNext()) {
@@ -47,10 +83,15 @@ public class ITDragonNIODoubleClientHandler implements Runnable {
 					iterator.remove();
 					handleInput(key);
 				}
-			} catch (Exception e) {
+				if (connected && socketChannel.isOpen()) {
+					doWrite();
+				}
+			} catch (IOException e) {
 				e.printStackTrace();
+				close(e);
 			}
 		}
+		close(new IOException("client stopped"));
 		if (null != selector) {
 			try {
 				selector.close();
@@ -67,45 +108,152 @@ public class ITDragonNIODoubleClientHandler implements Runnable {
 				if (!socketChannel.finishConnect()) {
 					System.exit(1);
 				}
+				connected = true;
+				key.interestOps(SelectionKey.OP_READ);
 			}
 			if (key.isReadable()) {
-				ByteBuffer buffer = ByteBuffer.allocate(1024);
-				int readBytes = socketChannel.read(buffer);
-				if (0 < readBytes) {
-					buffer.flip();
-					byte[] bytes = new byte[buffer.remaining()];
-					buffer.get(bytes);
-					String result = new String(bytes, "UTF-8");
-					System.out.println("客户端收到消息：" + result);
-				} else if (0 > readBytes) {
-					key.cancel();
-					socketChannel.close();
+				// 每拆出一条应答回调一次 handleFrame
+				if (0 > decoder.readFrom(socketChannel, key, this)) {
+					close(new IOException("connection closed by server"));
+				}
+			}
+		}
+	}
+
+	// 应答和请求按顺序一一对应
+	@Override
+	public void handleFrame(SelectionKey key, ByteBuffer frame) throws IOException {
+		CompletableFuture<String> future = inFlight.poll();
+		if (null == future) {
+			throw new IOException("unexpected response");
+		}
+		future.complete(StandardCharsets.UTF_8.decode(frame).toString());
+	}
+
+	/**
+	 * 把提交的请求尽量多地编码到写缓冲区，然后发送。
+	 * 写缓冲区上次没有发完（socket 发送缓冲区满了）时先关注 OP_WRITE，发完再继续取新的请求。
+	 */
+	private void doWrite() throws IOException {
+		while (true) {
+			if (!writeBuffer.hasRemaining()) {
+				fillWriteBuffer();
+				if (!writeBuffer.hasRemaining()) {
+					break; // 没有待发送的请求
 				}
 			}
+			socketChannel.write(writeBuffer);
+			if (writeBuffer.hasRemaining()) {
+				break; // 部分写
+			}
+		}
+		int ops = writeBuffer.hasRemaining() ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ;
+		if (key.interestOps() != ops) {
+			key.interestOps(ops);
 		}
 	}
 
-	private void doWrite(SocketChannel channel, String request) throws IOException {
-		byte[] bytes = request.getBytes();
-		ByteBuffer writeBuffer = ByteBuffer.allocate(bytes.length);
-		writeBuffer.put(bytes);
+	private void fillWriteBuffer() {
+		writeBuffer.clear();
+		Request request = null;
+		while (null != (request = submitted.peek()) && request.frame.remaining() <= writeBuffer.remaining()) {
+			submitted.poll();
+			writeBuffer.put(request.frame);
+			inFlight.add(request.future);
+		}
 		writeBuffer.flip();
-		channel.write(writeBuffer);
 	}
 
 	private void doConnect() {
 		try {
-			if (!socketChannel.connect(new InetSocketAddress(host, port))) {
-				socketChannel.register(selector, SelectionKey.OP_CONNECT);
+			if (socketChannel.connect(new InetSocketAddress(host, port))) {
+				connected = true;
+				key = socketChannel.register(selector, SelectionKey.OP_READ);
+			} else {
+				key = socketChannel.register(selector, SelectionKey.OP_CONNECT);
 			}
-		} catch (Exception e) {
+		} catch (IOException e) {
 			e.printStackTrace();
+			close(e);
 		}
 	}
 
+	// 连接断开后，还没有应答的请求全部以异常结束
+	// 先把 started 置为 false，之后 send() 提交的请求由 send() 自己检查并以异常结束，不会漏在队列里
+	private void close(IOException cause) {
+		started = false;
+		if (null != key) {
+			key.cancel();
+		}
+		try {
+			socketChannel.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		CompletableFuture<String> future = null;
+		while (null != (future = inFlight.poll())) {
+			future.completeExceptionally(cause);
+		}
+		Request request = null;
+		while (null != (request = submitted.poll())) {
+			request.future.completeExceptionally(cause);
+		}
+	}
+
+	/**
+	 * 异步发送一个表达式，返回计算结果的 future，可以在任意线程调用
+	 * 编码后的一帧（消息加上换行符或长度字段）必须能放进写缓冲区，否则永远发不出去，会堵住后面的请求，直接以异常结束
+	 */
+	public CompletableFuture<String> send(String expression) {
+		CompletableFuture<String> future = new CompletableFuture<String>();
+		byte[] payload = expression.getBytes(StandardCharsets.UTF_8);
+		if (payload.length > MAX_FRAME_LENGTH) {
+			future.completeExceptionally(new IllegalArgumentException("expression too long : " + payload.length));
+			return future;
+		}
+		ByteBuffer frame = framing.encode(payload);
+		if (frame.remaining() > WRITE_BUFFER_SIZE) {
+			future.completeExceptionally(new IllegalArgumentException("frame too long : " + frame.remaining()));
+			return future;
+		}
+		if (!started) {
+			future.completeExceptionally(new IOException("client stopped"));
+			return future;
+		}
+		Request request = new Request(frame, future);
+		submitted.offer(request);
+		// close() 可能在上面的检查之后清空了队列，这时请求还在队列中就自己取出来结束；已经被 close() 取走的由 close() 结束
+		if (!started && submitted.remove(request)) {
+			future.completeExceptionally(new IOException("client stopped"));
+			return future;
+		}
+		if (wakeupPending.compareAndSet(false, true)) {
+			selector.wakeup();
+		}
+		return future;
+	}
+
 	public void sendMsg(String msg) throws Exception {
-		socketChannel.register(selector, SelectionKey.OP_READ);
-		doWrite(socketChannel, msg);
+		send(msg).whenComplete(new BiConsumer<String, Throwable>() {
+			@Override
+			public void accept(String result, Throwable e) {
+				if (null != e) {
+					e.printStackTrace();
+				} else {
+					System.out.println("客户端收到消息：" + result);
+				}
+			}
+		});
+	}
+
+	private static final class Request {
+		private final ByteBuffer frame; 	// 编码好的一帧，读模式
+		private final CompletableFuture<String> future;
+
+		Request(ByteBuffer frame, CompletableFuture<String> future) {
+			this.frame = frame;
+			this.future = future;
+		}
 	}
 
 }
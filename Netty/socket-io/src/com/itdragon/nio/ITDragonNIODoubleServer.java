@@ -3,17 +3,34 @@ package com.itdragon.nio;
 public class ITDragonNIODoubleServer {
 	
 	private static Integer DEFAULT_PORT = 8888;
+	private static Integer DEFAULT_WORKER_COUNT = Runtime.getRuntime().availableProcessors(); // 多Reactor默认worker个数为CPU核数
 	private static ITDragonNIODoubleServerHandler serverHandle;
 
 	public static void start() {
 		start(DEFAULT_PORT);
 	}
 
-	public static synchronized void start(Integer port) {
+	public static void start(Integer port) {
+		start(port, 0);
+	}
+
+	// 多Reactor模式：一个boss线程负责accept，CPU核数个worker线程负责读写
+	public static void startMultiReactor() {
+		start(DEFAULT_PORT, DEFAULT_WORKER_COUNT);
+	}
+
+	public static synchronized void start(Integer port, int workerCount) {
 		if (serverHandle != null) {
 			serverHandle.stop();
 		}
-		serverHandle = new ITDragonNIODoubleServerHandler(port);
+		serverHandle = new ITDragonNIODoubleServerHandler(port, workerCount);
 		new Thread(serverHandle, "Server").start();
 	}
+
+	public static synchronized void stop() {
+		if (serverHandle != null) {
+			serverHandle.stop();
+			serverHandle = null;
+		}
+	}
 }
@@ -2,22 +2,41 @@ package com.itdragon.nio;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
-import java.nio.ByteBuffer;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
 import java.util.Iterator;
-import com.itdragon.util.CalculatorUtil;
 
+/**
+ * NIO 服务端
+ * 单Reactor : workerCount 为0，一个Selector线程负责所有连接的接入、读取、计算和应答，最多只能用满一个CPU核。
+ * 多Reactor : 当前线程（boss）只负责accept，新连接轮询分配给 workerCount 个 ITDragonNIOWorker，
+ *            每个 worker 线程拥有自己的Selector，负责名下连接的读写，吞吐量可以随 worker 个数增长。
+ * 两种模式的读写都由 ITDragonNIOWorker 完成，写数据时支持部分写和 OP_WRITE，慢客户端会被暂停读取。
+ * 请求和应答都按 ITDragonFraming 拆包（默认每条消息以换行符结尾），客户端可以连续发送多个请求，应答按请求的顺序返回。
+ * @author itdragon
+ *
+ */
 public class ITDragonNIODoubleServerHandler implements Runnable{  
 	
     private Selector selector;  				// 多路复用选择器
     private ServerSocketChannel serverChannel;  // 服务器通道
     private volatile boolean started;  			// 服务器状态，避免服务器关闭后还继续循环
-    private final int BUFFER_SIZE = 1024; 		// 缓冲区大小  
+    private ITDragonNIOWorker[] workers; 		// 多Reactor模式下的worker，单Reactor模式下长度为0
+    private ITDragonNIOWorker inlineWorker;		// 单Reactor模式下在当前线程处理读写
+    private int nextWorker;  					// 下一个分配连接的worker，只在boss线程中使用
+    private final ITDragonByteBufferPool bufferPool = new ITDragonByteBufferPool(4 * 1024, 1024); // 所有worker共享的写缓冲区池
     
 	public ITDragonNIODoubleServerHandler(int port) {
+		this(port, 0);
+	}
+
+	public ITDragonNIODoubleServerHandler(int port, int workerCount) {
+		this(port, workerCount, ITDragonFraming.DELIMITER);
+	}
+
+	public ITDragonNIODoubleServerHandler(int port, int workerCount, ITDragonFraming framing) {
 		try {
 			// 创建多路复用器
 			selector = Selector.open();
@@ -29,9 +48,17 @@ public class ITDragonNIODoubleServerHandler implements Runnable{
 			serverChannel.socket().bind(new InetSocketAddress(port));
 			// 通道注册到多路复用器上，并监听阻塞事件
 			serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+			// 单Reactor模式使用当前的多路复用器处理读写
+			inlineWorker = new ITDragonNIOWorker(selector, bufferPool, framing);
+			// 多Reactor模式启动worker线程
+			workers = new ITDragonNIOWorker[Math.max(0, workerCount)];
+			for (int i = 0; i < workers.length; i++) {
+				workers[i] = new ITDragonNIOWorker(bufferPool, framing);
+				new Thread(workers[i], "NIO-Worker-" + i).start();
+			}
 			// 标记服务器已开启
 			started = true;
-			System.out.println("服务器已启动 >>>>>>>> 端口号：" + port);
+			System.out.println("服务器已启动 >>>>>>>> 端口号：" + port + " worker个数：" + workers.length);
 		} catch (IOException e) {
 			e.printStackTrace();
 			System.exit(1); // 非正常退出程序
@@ -40,6 +67,10 @@ public class ITDragonNIODoubleServerHandler implements Runnable{
     
     public void stop(){  
         started = false;  
+        selector.wakeup();
+        for (ITDragonNIOWorker worker : workers) {
+        	worker.stop();
+        }
     }  
     
     /** 
@@ -68,6 +99,9 @@ public class ITDragonNIODoubleServerHandler implements Runnable{
 		}
 		if (null != selector) {	// 释放资源
 			try {
+				for (SelectionKey key : selector.keys()) {
+					key.channel().close();
+				}
 				selector.close();
 			} catch (Exception e) {
 				e.printStackTrace();
@@ -85,51 +119,23 @@ public class ITDragonNIODoubleServerHandler implements Runnable{
 			ServerSocketChannel serverSocketChannel = (ServerSocketChannel) key.channel();
 			// 通过ServerSocketChannel的accept创建SocketChannel实例
 			SocketChannel socketChannel = serverSocketChannel.accept();
+			if (null == socketChannel) {
+				return;
+			}
 			// 设置服务器通道为非阻塞模式，true为阻塞，false为非阻塞
 			socketChannel.configureBlocking(false);
-			// 把通道注册到多路复用器上，并设置读取标识
-			socketChannel.register(selector, SelectionKey.OP_READ);
-		}
-		// 可读状态消息
-		if (key.isReadable()) {
-			SocketChannel sc = (SocketChannel) key.channel();
-			// 创建ByteBuffer，并开辟一个1M的缓冲区
-			ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
-			// 读取请求码流，返回读取到的字节数
-			int readBytes = sc.read(buffer);
-			// 读取到字节，对字节进行编解码
-			if (0 < readBytes) {
-				// 将缓冲区数据复位
-				buffer.flip();
-				// 根据缓冲区可读字节数创建字节数组
-				byte[] bytes = new byte[buffer.remaining()];
-				// 将缓冲区可读字节数组复制到新建的数组中
-				buffer.get(bytes);
-				String expression = new String(bytes, "UTF-8");
-				System.out.println("服务器收到消息：" + expression);
-				// 处理数据
-				String result = CalculatorUtil.cal(expression).toString();
-				// 返回数据消息
-				doWrite(sc, result);
-			} else if (0 > readBytes) {
-				key.cancel();
-				sc.close();
+			if (0 == workers.length) {
+				// 单Reactor：把通道注册到当前多路复用器上，并设置读取标识和待发送队列
+				inlineWorker.registerNow(socketChannel);
+			} else {
+				// 多Reactor：轮询选择一个worker，由worker线程完成注册和后续的读写
+				workers[nextWorker].register(socketChannel);
+				nextWorker = (nextWorker + 1) % workers.length;
 			}
+			return;
 		}
-    }  
-    
-    // 异步发送应答消息  
-    private void doWrite(SocketChannel channel, String response) throws IOException{  
-		// 将消息编码为字节数组
-		byte[] bytes = response.getBytes();
-		// 根据数组容量创建ByteBuffer
-		ByteBuffer writeBuffer = ByteBuffer.allocate(bytes.length);
-		// 将字节数组复制到缓冲区
-		writeBuffer.put(bytes);
-		// 将缓冲区数据复位
-		writeBuffer.flip();
-		// 发送缓冲区的字节数组
-		channel.write(writeBuffer);
+		// 单Reactor模式下可读状态消息由当前线程处理
+		inlineWorker.handleInput(key);
     }  
 
-}
+}
\ No newline at end of file
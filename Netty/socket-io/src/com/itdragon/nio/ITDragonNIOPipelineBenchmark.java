@@ -0,0 +1,74 @@
+package com.itdragon.nio;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+/**
+ * 单连接 pipelining 吞吐量测试
+ * 只建立一个 ITDragonNIODoubleClientHandler 连接，用信号量控制同时在路上的请求数（pipeline 深度），
+ * 深度为1时相当于一问一答，深度越大每次 write/read 系统调用携带的请求越多。
+ * 运行参数：[pipeline深度列表，逗号分隔，默认 1,16,256,1024] [每轮测量秒数，默认5]
+ * @author itdragon
+ *
+ */
+public class ITDragonNIOPipelineBenchmark {
+
+	private static final String IP_ADDRESS = "127.0.0.1";
+	private static final int BASE_PORT = 9300;
+	private static final int WARMUP_SECONDS = 2;
+
+	public static void main(String[] args) throws Exception {
+		String[] depths = (args.length > 0 ? args[0] : "1,16,256,1024").split(",");
+		int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+		System.setProperty("itdragon.nio.quiet", "true"); // 关闭服务器的控制台打印
+		int port = BASE_PORT;
+		for (String depth : depths) {
+			ITDragonNIODoubleServerHandler server = new ITDragonNIODoubleServerHandler(port, 1);
+			Thread serverThread = new Thread(server, "Server");
+			serverThread.start();
+			ITDragonNIODoubleClientHandler client = new ITDragonNIODoubleClientHandler(IP_ADDRESS, port);
+			Thread clientThread = new Thread(client, "Client");
+			clientThread.start();
+			long requests = run(client, Integer.parseInt(depth.trim()), seconds);
+			client.stop();
+			clientThread.join();
+			server.stop();
+			serverThread.join();
+			System.out.printf("pipeline深度 : %-5s 吞吐量 : %,d req/s%n", depth.trim(), requests / seconds);
+			port++;
+		}
+	}
+
+	private static long run(ITDragonNIODoubleClientHandler client, int depth, int seconds) throws InterruptedException {
+		final Semaphore window = new Semaphore(depth);
+		final AtomicLong counter = new AtomicLong();
+		final AtomicLong errors = new AtomicLong();
+		final long warmupEnd = System.nanoTime() + TimeUnit.SECONDS.toNanos(WARMUP_SECONDS);
+		final long end = warmupEnd + TimeUnit.SECONDS.toNanos(seconds);
+		BiConsumer<String, Throwable> callback = new BiConsumer<String, Throwable>() {
+			@Override
+			public void accept(String result, Throwable e) {
+				window.release();
+				if (null != e) {
+					errors.incrementAndGet();
+				} else if (System.nanoTime() > warmupEnd) {
+					counter.incrementAndGet();
+				}
+			}
+		};
+		while (System.nanoTime() < end) {
+			window.acquire();
+			CompletableFuture<String> future = client.send("6*7-3/2");
+			future.whenComplete(callback);
+		}
+		window.acquire(depth); // 等待还在路上的请求
+		if (0 < errors.get()) {
+			System.out.println("失败的请求数 : " + errors.get());
+		}
+		return counter.get();
+	}
+
+}
@@ -0,0 +1,104 @@
+package com.itdragon.nio;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 单Reactor 和 多Reactor 的吞吐量对比
+ * 依次用 0（单Reactor）、1、2、4 ... CPU核数 个 worker 启动 ITDragonNIODoubleServerHandler，
+ * 每轮启动 connections 个阻塞客户端线程，每个客户端一问一答地发送表达式，统计每秒完成的请求数。
+ * 运行参数：[连接数，默认64] [每轮测量秒数，默认5]
+ * 注意：客户端和服务器在同一台机器上争抢CPU，得到的是相对值，用来观察吞吐量随 worker 个数的变化趋势。
+ * @author itdragon
+ *
+ */
+public class ITDragonNIOReactorBenchmark {
+
+	private static final String IP_ADDRESS = "127.0.0.1";
+	private static final int BASE_PORT = 9100;
+	private static final int WARMUP_SECONDS = 2;
+
+	public static void main(String[] args) throws Exception {
+		int connections = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+		int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+		System.setProperty("itdragon.nio.quiet", "true"); // 关闭服务器的控制台打印，否则测到的是 System.out 的吞吐量
+		int cores = Runtime.getRuntime().availableProcessors();
+		int port = BASE_PORT;
+		List<Integer> workerCounts = new ArrayList<Integer>();
+		workerCounts.add(0);
+		for (int i = 1; i < cores; i *= 2) {
+			workerCounts.add(i);
+		}
+		workerCounts.add(cores);
+		for (int workerCount : workerCounts) {
+			ITDragonNIODoubleServerHandler server = new ITDragonNIODoubleServerHandler(port, workerCount);
+			Thread serverThread = new Thread(server, "Server");
+			serverThread.start();
+			long requests = runClients(port, connections, seconds);
+			server.stop();
+			serverThread.join();
+			System.out.printf("worker个数 : %-3d 连接数 : %-5d 吞吐量 : %,d req/s%n", workerCount, connections, requests / seconds);
+			port++;
+		}
+	}
+
+	private static long runClients(int port, int connections, int seconds) throws Exception {
+		final AtomicLong counter = new AtomicLong();
+		final CountDownLatch done = new CountDownLatch(connections);
+		final long warmupEnd = System.nanoTime() + WARMUP_SECONDS * 1000000000L;
+		final long end = warmupEnd + seconds * 1000000000L;
+		final InetSocketAddress address = new InetSocketAddress(IP_ADDRESS, port);
+		for (int i = 0; i < connections; i++) {
+			new Thread(new Runnable() {
+				@Override
+				public void run() {
+					SocketChannel channel = null;
+					try {
+						channel = SocketChannel.open(address);
+						ByteBuffer request = ITDragonFraming.DELIMITER.encode("6*7-3/2".getBytes());
+						ByteBuffer response = ByteBuffer.allocate(64);
+						long count = 0;
+						long now;
+						while ((now = System.nanoTime()) < end) {
+							request.rewind();
+							while (request.hasRemaining()) {
+								channel.write(request);
+							}
+							// 读到换行符为止，一问一答所以不会读到下一条应答
+							response.clear();
+							while (0 == response.position() || '\n' != response.get(response.position() - 1)) {
+								if (channel.read(response) < 0) {
+									throw new IOException("connection closed by server");
+								}
+							}
+							if (now > warmupEnd) {
+								count++;
+							}
+						}
+						counter.addAndGet(count);
+					} catch (IOException e) {
+						e.printStackTrace();
+					} finally {
+						if (null != channel) {
+							try {
+								channel.close();
+							} catch (IOException e) {
+								e.printStackTrace();
+							}
+						}
+						done.countDown();
+					}
+				}
+			}, "Client-" + i).start();
+		}
+		done.await();
+		return counter.get();
+	}
+
+}
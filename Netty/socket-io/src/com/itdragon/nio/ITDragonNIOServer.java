@@ -7,6 +7,7 @@ import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
 import java.util.Iterator;
 
 /**
@@ -20,18 +21,27 @@ import java.util.Iterator;
  * 客户端和服务器通过Channel连接，而这些Channel都要注册在Selector。Selector通过一个线程不停的轮询这些Channel。找出已经准备就绪的Channel执行IO操作。
  * NIO通过一个线程轮询，实现千万个客户端的请求，这就是非阻塞NIO的特点。
  * 
+ * 拆包：
+ * 一次read()读到的不一定是一条完整的消息，每个连接有自己的 ITDragonFrameDecoder（SelectionKey的附件），
+ * 按 ITDragonFraming 指定的方式（长度字段或分隔符）把字节流拆成一条条消息，再交给 handleFrame 处理。
+ * 
  * @author itdragon
  *
  */
-public class ITDragonNIOServer implements Runnable{  
+public class ITDragonNIOServer implements Runnable, ITDragonFrameHandler{  
     
-  private final int BUFFER_SIZE = 1024; // 缓冲区大小  
+  private final int MAX_FRAME_LENGTH = 64 * 1024; // 单条消息最大长度  
   private final int PORT = 8888; 		// 监听的端口  
   private Selector selector;  			// 多路复用器，NIO编程的基础，负责管理通道Channel 
-  // 缓冲区Buffer，和BIO的一个重要区别（NIO读写数据是在缓冲区中进行，而BIO是通过流的形式）  
-  private ByteBuffer readBuffer = ByteBuffer.allocate(BUFFER_SIZE);  
+  // 拆包方式。缓冲区Buffer是和BIO的一个重要区别（NIO读写数据是在缓冲区中进行，而BIO是通过流的形式），每个连接的缓冲区由解码器管理  
+  private final ITDragonFraming framing;  
     
   public ITDragonNIOServer() {  
+      this(ITDragonFraming.DELIMITER);  
+  }  
+    
+  public ITDragonNIOServer(ITDragonFraming framing) {  
+      this.framing = framing;  
       startServer();  
   }  
 
@@ -108,35 +118,41 @@ public class ITDragonNIOServer implements Runnable{
           SocketChannel socketChannel = serverSocketChannel.accept();  
           // 3.设置服务器通道为非阻塞模式，true为阻塞，false为非阻塞  
           socketChannel.configureBlocking(false);  
-          // 4.把通道注册到多路复用器上，并设置读取标识  
-          socketChannel.register(selector, SelectionKey.OP_READ);  
+          // 4.把通道注册到多路复用器上，并设置读取标识，附件是这个连接独有的拆包解码器  
+          socketChannel.register(selector, SelectionKey.OP_READ, framing.newDecoder(MAX_FRAME_LENGTH));  
       } catch (IOException e) {  
           e.printStackTrace();  
       }  
   }  
     
   private void read(SelectionKey selectionKey) {  
+      // 1.获取在多路复用器上注册的通道和它的拆包解码器  
+      SocketChannel socketChannel = (SocketChannel) selectionKey.channel();  
+      ITDragonFrameDecoder decoder = (ITDragonFrameDecoder) selectionKey.attachment();  
       try {  
-          // 1.清空缓冲区数据  
-          readBuffer.clear();  
-          // 2.获取在多路复用器上注册的通道  
-          SocketChannel socketChannel = (SocketChannel) selectionKey.channel();  
-          // 3.读取数据，返回  
-          int count = socketChannel.read(readBuffer);  
-          // 4.返回内容为-1 表示没有数据  
+          // 2.读取数据到连接自己的累积缓冲区，每拆出一条完整的消息就回调一次 handleFrame  
+          int count = decoder.readFrom(socketChannel, selectionKey, this);  
+          // 3.返回内容为-1 表示客户端关闭了连接  
           if (-1 == count) {  
-              selectionKey.channel().close();  
-              selectionKey.cancel();  
-              return ;  
+              close(selectionKey);  
           }  
-          // 5.有数据则在读取数据前进行复位操作  
-          readBuffer.flip();  
-          // 6.根据缓冲区大小创建一个相应大小的bytes数组，用来获取值  
-          byte[] bytes = new byte[readBuffer.remaining()];  
-          // 7.接收缓冲区数据  
-          readBuffer.get(bytes);  
-          // 8.打印获取到的数据  
-          System.out.println("NIO Server : " + new String(bytes)); // 不能用bytes.toString()  
+      } catch (IOException e) {  
+          // 读取失败或者消息超长，关闭这个连接  
+          e.printStackTrace();  
+          close(selectionKey);  
+      }  
+  }  
+    
+  // 处理一条完整的消息，frame 是累积缓冲区的零拷贝视图  
+  @Override  
+  public void handleFrame(SelectionKey key, ByteBuffer frame) {  
+      System.out.println("NIO Server : " + StandardCharsets.UTF_8.decode(frame)); // 不能用bytes.toString()  
+  }  
+    
+  private void close(SelectionKey selectionKey) {  
+      selectionKey.cancel();  
+      try {  
+          selectionKey.channel().close();  
       } catch (IOException e) {  
           e.printStackTrace();  
       }  
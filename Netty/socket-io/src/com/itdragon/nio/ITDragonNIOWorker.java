@@ -0,0 +1,277 @@
+package com.itdragon.nio;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import com.itdragon.util.CalculatorUtil;
+
+/**
+ * 多Reactor模式中的 worker 线程（从Reactor）
+ * 每个 worker 拥有自己的 Selector，负责分配给它的连接的读取、计算和应答，连接只会在这一个线程上处理。
+ * boss 线程 accept 之后调用 register() 把 SocketChannel 放入无锁队列，然后 wakeup 这个 worker 的 Selector，
+ * 真正的 channel.register() 在 worker 线程中完成。因为 register 会和正在阻塞的 select() 竞争同一把锁，
+ * 如果在 boss 线程中直接 register 则可能一直阻塞到 worker 的 select() 返回。
+ *
+ * 读数据：
+ * 请求按 ITDragonFraming 拆包，每个连接有自己的解码器，客户端可以不等应答连续发送多个请求（pipelining）。
+ * 同一个连接的请求在同一个线程上按顺序处理，应答的顺序和请求的顺序一致，客户端按顺序就能把应答和请求对应起来。
+ *
+ * 写数据：
+ * 每个连接有一个待发送队列（Connection，作为 SelectionKey 的附件），应答编码成帧后追加到直接缓冲区池中的缓冲区，
+ * 多个小应答会挤在同一个缓冲区里。一次读取中拆出的所有请求都处理完之后才 flush，一次 channel.write() 发出多条应答。
+ * channel.write() 一次没有写完（socket 发送缓冲区满了），就关注 OP_WRITE，等通道可写时继续发送，发送完再取消关注。
+ * 客户端读得慢导致待发送字节数超过高水位时，暂停读取该客户端（取消 OP_READ），降到低水位以下再恢复。
+ * @author itdragon
+ *
+ */
+public class ITDragonNIOWorker implements Runnable, ITDragonFrameHandler {
+
+	private static final int HIGH_WATER_MARK = 64 * 1024; 	// 待发送字节数超过高水位，暂停读取
+	private static final int LOW_WATER_MARK = 32 * 1024; 	// 待发送字节数低于低水位，恢复读取
+	private static final int MAX_FRAME_LENGTH = 64 * 1024; 	// 单条请求最大长度
+
+	private final Selector selector; 		// 当前 worker 独占的多路复用器
+	private final Queue<SocketChannel> pendingChannels = new ConcurrentLinkedQueue<SocketChannel>(); // 等待注册的连接
+	private final ITDragonByteBufferPool bufferPool; // 写缓冲区池，所有 worker 共享
+	private final ITDragonFraming framing; 	// 拆包方式，和客户端保持一致
+	private volatile boolean started;
+	private final boolean quiet; 			// 压测时关闭控制台打印，-Ditdragon.nio.quiet=true
+
+	public ITDragonNIOWorker(ITDragonByteBufferPool bufferPool, ITDragonFraming framing) throws IOException {
+		this(Selector.open(), bufferPool, framing);
+	}
+
+	/**
+	 * 单Reactor模式下 boss 线程把自己的 Selector 传进来，不需要单独启动 worker 线程，直接调用 handleInput
+	 */
+	ITDragonNIOWorker(Selector selector, ITDragonByteBufferPool bufferPool, ITDragonFraming framing) {
+		this.selector = selector;
+		this.bufferPool = bufferPool;
+		this.framing = framing;
+		this.quiet = Boolean.getBoolean("itdragon.nio.quiet");
+		this.started = true;
+	}
+
+	// 由 boss 线程调用，把新连接交给当前 worker
+	public void register(SocketChannel socketChannel) {
+		pendingChannels.offer(socketChannel);
+		selector.wakeup();
+	}
+
+	public void stop() {
+		started = false;
+		selector.wakeup();
+	}
+
+	@Override
+	public void run() {
+		while (started) {
+			try {
+				selector.select();
+				registerPendingChannels();
+				Iterator<SelectionKey> iterator = selector.selectedKeys().iterator();
+				while (iterator.hasNext()) {
+					SelectionKey key = iterator.next();
+					iterator.remove();
+					handleInput(key);
+				}
+			} catch (Throwable t) {
+				t.printStackTrace();
+			}
+		}
+		// 释放资源，关闭 worker 名下的所有连接
+		for (SelectionKey key : selector.keys()) {
+			closeQuietly(key);
+		}
+		try {
+			selector.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	private void registerPendingChannels() {
+		SocketChannel socketChannel = null;
+		while (null != (socketChannel = pendingChannels.poll())) {
+			try {
+				registerNow(socketChannel);
+			} catch (IOException e) {
+				e.printStackTrace();
+				try {
+					socketChannel.close();
+				} catch (IOException ignore) {
+				}
+			}
+		}
+	}
+
+	// 只能在拥有 selector 的线程中调用
+	void registerNow(SocketChannel socketChannel) throws IOException {
+		socketChannel.register(selector, SelectionKey.OP_READ, new Connection(framing.newDecoder(MAX_FRAME_LENGTH)));
+	}
+
+	/**
+	 * 处理一个就绪的连接，出现IO异常（如客户端强制断开）时关闭该连接，不影响同一个 Selector 上的其他连接
+	 */
+	void handleInput(SelectionKey key) {
+		if (!key.isValid()) {
+			return;
+		}
+		try {
+			if (key.isWritable()) {
+				flush(key);
+			}
+			if (key.isValid() && key.isReadable()) {
+				doRead(key);
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+			closeQuietly(key);
+		}
+	}
+
+	private void doRead(SelectionKey key) throws IOException {
+		SocketChannel sc = (SocketChannel) key.channel();
+		Connection connection = (Connection) key.attachment();
+		// 读取请求码流到连接的累积缓冲区，每拆出一条完整的请求就回调一次 handleFrame
+		int readBytes = connection.decoder.readFrom(sc, key, this);
+		if (0 > readBytes) {
+			closeQuietly(key);
+		} else if (connection.hasPending()) {
+			// 这次读到的请求都处理完了，一起发送
+			flush(key);
+		}
+	}
+
+	// 处理一条完整的请求，frame 是累积缓冲区的零拷贝视图
+	@Override
+	public void handleFrame(SelectionKey key, ByteBuffer frame) {
+		String expression = StandardCharsets.UTF_8.decode(frame).toString();
+		if (!quiet) {
+			System.out.println(Thread.currentThread().getName() + " 服务器收到消息：" + expression);
+		}
+		// 处理数据
+		String result = String.valueOf(CalculatorUtil.cal(expression));
+		// 应答放入待发送队列，等 doRead 统一 flush
+		doWrite(key, result);
+	}
+
+	/**
+	 * 把应答编码成一帧，追加到连接的待发送缓冲区。缓冲区写满时放入待发送队列，再从池中取一个新的
+	 */
+	private void doWrite(SelectionKey key, String response) {
+		Connection connection = (Connection) key.attachment();
+		ByteBuffer frame = framing.encode(response.getBytes(StandardCharsets.UTF_8));
+		connection.pendingBytes += frame.remaining();
+		while (frame.hasRemaining()) {
+			if (null == connection.tail) {
+				connection.tail = bufferPool.acquire();
+			}
+			ByteBuffer tail = connection.tail;
+			if (frame.remaining() <= tail.remaining()) {
+				tail.put(frame);
+			} else {
+				// 应答比缓冲区剩余空间大时拆到多个缓冲区
+				ByteBuffer part = frame.duplicate();
+				part.limit(part.position() + tail.remaining());
+				tail.put(part);
+				frame.position(part.position());
+			}
+			if (!tail.hasRemaining()) {
+				connection.queueTail();
+			}
+		}
+	}
+
+	// 按顺序发送待发送队列，直到发完或者 socket 发送缓冲区写满
+	private void flush(SelectionKey key) throws IOException {
+		SocketChannel channel = (SocketChannel) key.channel();
+		Connection connection = (Connection) key.attachment();
+		connection.queueTail();
+		ByteBuffer buffer = null;
+		while (null != (buffer = connection.queue.peek())) {
+			connection.pendingBytes -= channel.write(buffer);
+			if (buffer.hasRemaining()) {
+				break; // 部分写：发送缓冲区已满，等 OP_WRITE
+			}
+			connection.queue.poll();
+			bufferPool.release(buffer);
+		}
+		updateInterest(key, connection);
+	}
+
+	// 根据待发送队列调整关注的事件：有数据没发完关注 OP_WRITE，超过高水位暂停 OP_READ，低于低水位恢复 OP_READ
+	private void updateInterest(SelectionKey key, Connection connection) {
+		if (connection.pendingBytes > HIGH_WATER_MARK) {
+			connection.readSuspended = true;
+		} else if (connection.pendingBytes < LOW_WATER_MARK) {
+			connection.readSuspended = false;
+		}
+		int ops = 0;
+		if (!connection.queue.isEmpty()) {
+			ops |= SelectionKey.OP_WRITE;
+		}
+		if (!connection.readSuspended) {
+			ops |= SelectionKey.OP_READ;
+		}
+		if (key.interestOps() != ops) {
+			key.interestOps(ops);
+		}
+	}
+
+	private void closeQuietly(SelectionKey key) {
+		key.cancel();
+		Object attachment = key.attach(null);
+		if (attachment instanceof Connection) {
+			// 连接关闭后归还还没发送的缓冲区
+			Connection connection = (Connection) attachment;
+			connection.queueTail();
+			ByteBuffer buffer = null;
+			while (null != (buffer = connection.queue.poll())) {
+				bufferPool.release(buffer);
+			}
+		}
+		try {
+			key.channel().close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * 连接的拆包解码器和待发送队列，只在所属 worker 线程中访问
+	 */
+	private static final class Connection {
+		private final ITDragonFrameDecoder decoder;
+		private final ArrayDeque<ByteBuffer> queue = new ArrayDeque<ByteBuffer>(); // 读模式，等待发送
+		private ByteBuffer tail; 		// 正在追加应答的缓冲区（写模式），还没有放入队列
+		private int pendingBytes; 		// 还没发送的字节数，包括 tail 中的
+		private boolean readSuspended; 	// 是否因为超过高水位暂停了读取
+
+		Connection(ITDragonFrameDecoder decoder) {
+			this.decoder = decoder;
+		}
+
+		boolean hasPending() {
+			return null != tail || !queue.isEmpty();
+		}
+
+		// 把正在追加的缓冲区放入待发送队列
+		void queueTail() {
+			if (null != tail) {
+				tail.flip();
+				queue.add(tail);
+				tail = null;
+			}
+		}
+	}
+
+}
@@ -1,16 +1,16 @@
 package com.itdragon.util;
 
-import javax.script.ScriptEngine;
-import javax.script.ScriptEngineManager;
-import javax.script.ScriptException;
-
+/**
+ * 计算 + - * / 表达式
+ * 之前使用的是 ScriptEngine，每次计算都要解析脚本且引擎不是线程安全的，现在交给 CalculatorCompiler 编译并缓存
+ */
 public class CalculatorUtil {
-	
-	private final static ScriptEngine jse = new ScriptEngineManager().getEngineByName("JavaScript");
+
+	private final static CalculatorCompiler compiler = new CalculatorCompiler();
     public static Object cal(String expression){
         try {
-			return jse.eval(expression);
-		} catch (ScriptException e) {
+			return CalculatorCompiler.toNumber(compiler.compile(expression).evaluate());
+		} catch (IllegalArgumentException e) {
 			e.printStackTrace();
 		}
         return null;